@@ -15,4 +15,11 @@
 package com.scratchdisk.script;
 
 public class ScriptCanceledException extends RuntimeException {
+
+	public ScriptCanceledException() {
+	}
+
+	public ScriptCanceledException(String message) {
+		super(message);
+	}
 }
@@ -50,9 +50,9 @@ public abstract class ScriptEngine {
 
 	public static void loadEngines() {
 		// Do not call loadEngines immediately, as we want the scripting engines
-		// to be instantiated in the same thread as from where they are used...
-		// TODO: Move to a multi threaded scenario, where RhinoEngine creates
-		// Contexts for reach script call...
+		// to be instantiated in the same thread as from where they are used.
+		// Engines that support it can execute scripts on worker threads of
+		// their own, see RhinoEngine#submit.
 		String[] lines = ClassUtils.getServiceInformation(ScriptEngine.class);
 		if (lines != null) {
 			for (int i = 0; i < lines.length; i++) {
@@ -139,7 +139,7 @@ public abstract class ScriptEngine {
 	 * @throws IOException 
 	 * @throws ScriptException 
 	 */
-	public Script compile(File file)
+	public synchronized Script compile(File file)
 			throws ScriptException, IOException {
 		Script script = scriptCache.get(file);
 		if (script == null || script.hasChanged()) {
@@ -39,6 +39,10 @@ public class ExtendedJavaClass extends NativeJavaClass {
 	// A lookup for the associated ExtendedJavaClass wrappers
 	private static IdentityHashMap<Class, ExtendedJavaClass> classes =
 			new IdentityHashMap<Class, ExtendedJavaClass>();
+	// Wrappers are created and looked up under one lock, as creating one may
+	// create the wrappers of its superclasses, through the global scope and
+	// the packages. See TopLevel#getExposedClass and ExtendedJavaPackage.
+	static final Object lock = new Object();
 
 	public ExtendedJavaClass(Scriptable scope, Class cls, boolean unsealed) {
 		super(scope, cls);
@@ -51,7 +55,9 @@ public class ExtendedJavaClass extends NativeJavaClass {
 		className = cls.getSimpleName();
 		properties = unsealed ? new HashMap<String, Object>() : null;
 		// put it in the class wrapper table
-		classes.put(cls, this);
+		synchronized (lock) {
+			classes.put(cls, this);
+		}
 	}
 
 	public Scriptable construct(Context cx, Scriptable scope, Object[] args) {
@@ -224,6 +230,12 @@ public class ExtendedJavaClass extends NativeJavaClass {
 	}
 
 	public Scriptable getInstancePrototype() {
+		synchronized (lock) {
+			return getInstancePrototypeLocked();
+		}
+	}
+
+	private Scriptable getInstancePrototypeLocked() {
 		if (instanceProto == null) {
 			instanceProto = new NativeObject();
 			// Set the prototype chain correctly for this prototype object, 
@@ -251,8 +263,31 @@ public class ExtendedJavaClass extends NativeJavaClass {
 		return "[" + className + "]";
 	}
 	
+	/**
+	 * Returns the wrapper that was already created for the given class, or the
+	 * one of the class exposed under its simple name in the global scope. The
+	 * latter resolves classes exposed lazily by TopLevel, so there is only
+	 * ever one wrapper for them, no matter how they are reached first.
+	 */
+	static ExtendedJavaClass getExistingClassWrapper(Scriptable scope,
+			Class javaClass) {
+		ExtendedJavaClass cls;
+		synchronized (lock) {
+			cls = classes.get(javaClass);
+		}
+		if (cls == null) {
+			Object global = ScriptableObject.getProperty(
+					ScriptableObject.getTopLevelScope(scope),
+					javaClass.getSimpleName());
+			if (global instanceof ExtendedJavaClass && ((ExtendedJavaClass)
+					global).getClassObject() == javaClass)
+				cls = (ExtendedJavaClass) global;
+		}
+		return cls;
+	}
+
 	protected static ExtendedJavaClass getClassWrapper(Scriptable scope, Class javaClass) {
-		ExtendedJavaClass cls = classes.get(javaClass);
+		ExtendedJavaClass cls = getExistingClassWrapper(scope, javaClass);
 		if (cls == null) {
 			// Search for the ExtendedJavaClass by splitting the full name into bits
 			// separated by '.', and walk up the Packages chain:
@@ -37,8 +37,14 @@ public class ExtendedJavaPackage extends NativeJavaPackage {
 		this.classLoader = classLoader;
 	}
 
-	public synchronized Object getPkgProperty(String name, Scriptable start,
+	public Object getPkgProperty(String name, Scriptable start,
 			boolean createPkg) {
+		synchronized (ExtendedJavaClass.lock) {
+			return getPkgPropertyLocked(name, createPkg);
+		}
+	}
+
+	private Object getPkgPropertyLocked(String name, boolean createPkg) {
 		// Do not rely on the cache in NativeJavaPackage, as the only
 		// way to access it is super.get, which creates instances of
 		// NativeJavaPackage / NativeJavaClass, which we want to override here.
@@ -51,7 +57,12 @@ public class ExtendedJavaPackage extends NativeJavaPackage {
 		Class cl = classLoader != null ? Kit.classOrNull(classLoader, className)
 				: Kit.classOrNull(className);
 		if (cl != null) {
-			newValue = new ExtendedJavaClass(getTopLevelScope(this), cl, true);
+			// Share the wrapper with the global scope if the class was
+			// exposed there already, so both have the same prototypes.
+			Scriptable scope = getTopLevelScope(this);
+			newValue = ExtendedJavaClass.getExistingClassWrapper(scope, cl);
+			if (newValue == null)
+				newValue = new ExtendedJavaClass(scope, cl, true);
 			// ExtendedJavaClass sets its own Prototype... newValue.setPrototype(getPrototype());
 		}
 		if (newValue == null && createPkg) {
@@ -17,7 +17,12 @@ package com.scratchdisk.script.rhino;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.wst.jsdt.debug.rhino.debugger.RhinoDebugger;
 import org.mozilla.javascript.BaseFunction;
@@ -32,6 +37,7 @@ import org.mozilla.javascript.Undefined;
 import org.mozilla.javascript.tools.debugger.ScopeProvider;
 
 import com.scratchdisk.script.ArgumentReader;
+import com.scratchdisk.script.Callable;
 import com.scratchdisk.script.PropertyObserver;
 import com.scratchdisk.script.Scope;
 import com.scratchdisk.script.Script;
@@ -44,9 +50,14 @@ import com.scratchdisk.script.ScriptEngine;
 public class RhinoEngine extends ScriptEngine implements ScopeProvider {
 	protected TopLevel topLevel;
 	protected Context context;
+	protected ContextFactory contextFactory;
 	protected RhinoWrapFactory wrapFactory;
 	private RhinoScope globalScope;
 	private RhinoDebugger debugger;
+	private RhinoScriptCache scriptCache;
+	private RhinoProfiler profiler;
+	private ExecutorService workers = null;
+	private int workerCount = Runtime.getRuntime().availableProcessors();
 
 	public RhinoEngine(RhinoWrapFactory wrapFactory) {
 		super("JavaScript", "js");
@@ -60,7 +71,7 @@ public class RhinoEngine extends ScriptEngine implements ScopeProvider {
 
 		// Produce a ContextFactory that only redirects calls to RhinoEngine,
 		// so they can be overridden easily in inherited classes.
-		ContextFactory contextFactory = new ContextFactory() {
+		contextFactory = new ContextFactory() {
 			protected boolean hasFeature(Context cx, int feature) {
 				return RhinoEngine.this.hasFeature(cx,
 						feature, super.hasFeature(cx, feature));
@@ -93,14 +104,39 @@ public class RhinoEngine extends ScriptEngine implements ScopeProvider {
 			}
 		}
 
+		// The persistent script cache is optional too, and is turned on by
+		// passing the cache directory through the rhino.cache property.
+		String rhinoCache = System.getProperty("rhino.cache");
+		if (rhinoCache != null)
+			scriptCache = new RhinoScriptCache(new File(rhinoCache));
+
 		context = contextFactory.enterContext();
 		topLevel = this.makeTopLevel(context);
+
+		// The sampling profiler is turned on by passing the file to write the
+		// collapsed stacks to through the rhino.profile property.
+		String rhinoProfile = System.getProperty("rhino.profile");
+		if (rhinoProfile != null) {
+			profiler = new RhinoProfiler(new File(rhinoProfile),
+					Integer.getInteger("rhino.profile.interval", 10));
+			profiler.install(context);
+		}
 	}
 
 	public RhinoEngine() {
 		this(new RhinoWrapFactory());
 	}
 
+	/**
+	 * Returns the Context of the current thread, which is the one entered in
+	 * the constructor for the thread that created the engine, or the one
+	 * of the worker thread.
+	 */
+	protected Context getContext() {
+		Context cx = Context.getCurrentContext();
+		return cx != null ? cx : context;
+	}
+
 	protected TopLevel makeTopLevel(Context context) {
 		return new TopLevel(context);
 	}
@@ -125,12 +161,84 @@ public class RhinoEngine extends ScriptEngine implements ScopeProvider {
 		context.setWrapFactory(wrapFactory);
 	}
 
+	/**
+	 * Returns the persistent cache of compiled scripts, or null if scripts are
+	 * compiled each time.
+	 */
+	public RhinoScriptCache getScriptCache() {
+		return scriptCache;
+	}
+
+	public void setScriptCache(RhinoScriptCache scriptCache) {
+		this.scriptCache = scriptCache;
+	}
+
+	/**
+	 * Compiles all scripts in the given directory into the script cache, with
+	 * the settings of this engine.
+	 *
+	 * @return the amount of compiled scripts
+	 */
+	public int warmScriptCache(File dir) throws IOException {
+		return scriptCache != null ? scriptCache.warm(getContext(), dir) : 0;
+	}
+
+	/**
+	 * Returns the sampling profiler, or null if it is not running.
+	 */
+	public RhinoProfiler getProfiler() {
+		return profiler;
+	}
+
+	/**
+	 * Starts sampling the scripts executed on the thread that created the
+	 * engine. Needs to be called on that thread. A profiler that is already
+	 * running is stopped first, see {@link #stopProfiler()}.
+	 * 
+	 * @param file the file to write the collapsed stacks to
+	 * @param interval the sampling interval in milliseconds
+	 * @throws IOException if the samples of the previous profiler could not
+	 *         be written
+	 */
+	public RhinoProfiler startProfiler(File file, int interval)
+			throws IOException {
+		stopProfiler();
+		profiler = new RhinoProfiler(file, interval);
+		profiler.install(context);
+		return profiler;
+	}
+
+	/**
+	 * Stops the sampling profiler and writes its samples to its file. The
+	 * profiler is stopped even if writing fails.
+	 * 
+	 * @throws IOException if the samples could not be written
+	 */
+	public void stopProfiler() throws IOException {
+		if (profiler != null) {
+			RhinoProfiler profiler = this.profiler;
+			this.profiler = null;
+			profiler.uninstall(context);
+			profiler.write();
+		}
+	}
+
 	protected Script compileScript(File file)
 			throws RhinoScriptException, IOException {
+		if (scriptCache != null) {
+			try {
+				org.mozilla.javascript.Script script =
+						scriptCache.compile(getContext(), file);
+				if (script != null)
+					return new RhinoScript(this, script, file);
+			} catch (RhinoException e) {
+				throw new RhinoScriptException(this, e);
+			}
+		}
 		FileReader in = null;
 		try {
 			in = new FileReader(file);
-			return new RhinoScript(this, context.compileReader(
+			return new RhinoScript(this, getContext().compileReader(
 					in, file.getPath(), 1, null), file);
 		} catch (RhinoException e) {
 			throw new RhinoScriptException(this, e);
@@ -142,7 +250,7 @@ public class RhinoEngine extends ScriptEngine implements ScopeProvider {
 
 	public Script compile(String code, String name) {
 		return new RhinoScript(this,
-				context.compileString(code, name, 1, null), null);
+				getContext().compileString(code, name, 1, null), null);
 	}
 
 	public Object evaluate(String code, String name, Scope scope)
@@ -150,13 +258,104 @@ public class RhinoEngine extends ScriptEngine implements ScopeProvider {
 		try {
 			// TODO: Typecast to RhinoScope can be wrong, e.g. when calling
 			// from another language
-			return context.evaluateString(((RhinoScope) scope).getScope(), code,
+			return getContext().evaluateString(((RhinoScope) scope).getScope(), code,
 					name, 1, null);
 		} catch (RhinoException e) {
 			throw new RhinoScriptException(this, e);
 		}
 	}
 	
+	/**
+	 * Returns the amount of worker threads used by {@link #submit}.
+	 */
+	public int getWorkerCount() {
+		return workerCount;
+	}
+
+	/**
+	 * Sets the amount of worker threads used by {@link #submit}. This only
+	 * has an effect before the first task is submitted, or after
+	 * {@link #shutdownWorkers()}.
+	 */
+	public synchronized void setWorkerCount(int count) {
+		workerCount = Math.max(1, count);
+	}
+
+	/**
+	 * Returns the pool of worker threads, starting it on first use.
+	 * 
+	 * Each worker thread enters its own Context from the shared ContextFactory
+	 * for its whole life time. All of them share the top-level scope, which
+	 * gets sealed when the pool is started, so it can safely be read from
+	 * multiple threads. Globals therefore need to be defined by then, e.g. by
+	 * the libraries loaded into the global scope at startup.
+	 */
+	protected synchronized ExecutorService getWorkers() {
+		if (workers == null) {
+			topLevel.sealObject();
+			workers = Executors.newFixedThreadPool(workerCount,
+					new ThreadFactory() {
+						private int count = 0;
+
+						public Thread newThread(final Runnable runnable) {
+							Thread thread = new Thread(new Runnable() {
+								public void run() {
+									contextFactory.enterContext();
+									try {
+										runnable.run();
+									} finally {
+										Context.exit();
+									}
+								}
+							}, "Rhino Worker " + (++count));
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return workers;
+	}
+
+	/**
+	 * Stops the worker threads, interrupting the tasks that are still running.
+	 */
+	public synchronized void shutdownWorkers() {
+		if (workers != null) {
+			workers.shutdownNow();
+			workers = null;
+		}
+	}
+
+	/**
+	 * Executes the script on one of the worker threads.
+	 * 
+	 * Scripts executed like this run concurrently with the thread that
+	 * created the engine, and with each other. They should therefore only
+	 * perform computations, and leave changes to shared state to the code
+	 * that receives the result.
+	 */
+	public Future<Object> submit(final Script script, final Scope scope) {
+		return getWorkers().submit(new java.util.concurrent.Callable<Object>() {
+			public Object call() throws Exception {
+				return script.execute(scope);
+			}
+		});
+	}
+
+	/**
+	 * Calls the callable on one of the worker threads.
+	 * 
+	 * @see #submit(Script, Scope)
+	 */
+	public Future<Object> submit(final Callable callable, final Object obj,
+			final Object... args) {
+		return getWorkers().submit(new java.util.concurrent.Callable<Object>() {
+			public Object call() throws Exception {
+				return callable.call(obj, args);
+			}
+		});
+	}
+
 	public Scope createScope() {
 		Scriptable scope = new NativeObject();
 		// Sharing the top level scope:
@@ -182,6 +381,16 @@ public class RhinoEngine extends ScriptEngine implements ScopeProvider {
 		return topLevel;
 	}
 
+	/**
+	 * Prints the time it took to wrap each class exposed in the top-level
+	 * scope so far.
+	 *
+	 * @see TopLevel#printClassTimings(PrintStream)
+	 */
+	public void printClassTimings(PrintStream out) {
+		topLevel.printClassTimings(out);
+	}
+
 	/**
 	 * Required by RhinoCallable, to find the wrapper object (scope) for the
 	 * native object the callalbe is executed on.
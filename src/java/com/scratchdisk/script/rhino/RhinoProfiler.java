@@ -0,0 +1,337 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scratchdisk.script.rhino;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.debug.DebugFrame;
+import org.mozilla.javascript.debug.DebuggableScript;
+import org.mozilla.javascript.debug.Debugger;
+
+/**
+ * A sampling profiler for scripts executed by the interpreter.
+ *
+ * The profiler is installed as the debugger of the Context of one thread,
+ * where it keeps a shadow stack of the script functions being executed and
+ * their current lines. A background thread samples this stack at a fixed
+ * interval, while executions are marked as active through {@link #begin()}
+ * and {@link #end()}. If the thread is inside a native method at the time
+ * of the sample, the Java frames leading to it are added to the script stack,
+ * so time spent in JNI calls is attributed as well.
+ *
+ * The samples are written in the collapsed stack format, one stack per line
+ * with the frames separated by semicolons, followed by the amount of samples,
+ * as read by flame graph tools such as flamegraph.pl.
+ *
+ * A debugger that was already attached to the Context keeps working, as all
+ * notifications are passed on to it. Note that attaching a debugger makes the
+ * interpreter create activation objects for all calls, so scripts run
+ * somewhat slower while being profiled.
+ *
+ * @author lehni
+ */
+public class RhinoProfiler implements Debugger, Runnable {
+	private Thread thread;
+	private File file;
+	private int interval;
+	private Debugger delegate;
+	private Object delegateData;
+	private Thread sampler;
+	private volatile boolean running = false;
+	private volatile int active = 0;
+	private volatile ProfilerFrame[] frames = new ProfilerFrame[64];
+	private volatile int depth = 0;
+	private TreeMap<String, Integer> samples = new TreeMap<String, Integer>();
+	private int sampleCount = 0;
+	private volatile boolean changed = false;
+
+	/**
+	 * @param file the file to write the collapsed stacks to
+	 * @param interval the sampling interval in milliseconds
+	 */
+	public RhinoProfiler(File file, int interval) {
+		this.file = file;
+		this.interval = Math.max(1, interval);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Returns the amount of samples taken so far.
+	 */
+	public synchronized int getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * Installs the profiler as the debugger of the Context, which needs to be
+	 * the one of the current thread, and starts sampling it.
+	 */
+	public void install(Context cx) {
+		thread = Thread.currentThread();
+		delegate = cx.getDebugger();
+		delegateData = cx.getDebuggerContextData();
+		cx.setDebugger(this, delegateData);
+		running = true;
+		sampler = new Thread(this, "Rhino Profiler");
+		sampler.setDaemon(true);
+		sampler.start();
+	}
+
+	/**
+	 * Stops sampling and restores the debugger that was attached to the
+	 * Context before.
+	 */
+	public void uninstall(Context cx) {
+		running = false;
+		if (sampler != null) {
+			sampler.interrupt();
+			sampler = null;
+		}
+		if (cx.getDebugger() == this)
+			cx.setDebugger(delegate, delegateData);
+	}
+
+	/**
+	 * Returns the debugger that was attached before the profiler, if any.
+	 */
+	public Debugger getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Marks the beginning of an execution to be sampled. Calls can be nested.
+	 */
+	public void begin() {
+		active++;
+	}
+
+	/**
+	 * Marks the end of an execution started with {@link #begin()}.
+	 */
+	public void end() {
+		if (active > 0)
+			active--;
+	}
+
+	public void run() {
+		while (running) {
+			try {
+				Thread.sleep(interval);
+			} catch (InterruptedException e) {
+				break;
+			}
+			if (active > 0)
+				sample();
+		}
+	}
+
+	private void sample() {
+		StringBuffer stack = new StringBuffer();
+		// Read depth before the array, as frames are stored before depth is
+		// increased. The stack may still change while it is read, which only
+		// affects this sample.
+		int count = depth;
+		ProfilerFrame[] frames = this.frames;
+		for (int i = 0, l = Math.min(count, frames.length); i < l; i++) {
+			ProfilerFrame frame = frames[i];
+			if (frame == null)
+				break;
+			if (stack.length() > 0)
+				stack.append(';');
+			stack.append(frame.name).append(':').append(frame.line)
+					.append(')');
+		}
+		StackTraceElement[] trace = thread.getStackTrace();
+		if (trace.length > 0 && trace[0].isNativeMethod()) {
+			// Collect the Java frames up to the interpreter, skipping the
+			// ones of the reflection used to call into Java.
+			ArrayList<String> natives = new ArrayList<String>();
+			for (int i = 0; i < trace.length; i++) {
+				StackTraceElement element = trace[i];
+				String className = element.getClassName();
+				if (className.startsWith("org.mozilla.javascript.")
+						|| className.startsWith("com.scratchdisk.script."))
+					break;
+				if (!className.startsWith("sun.reflect.")
+						&& !className.startsWith("jdk.internal.reflect.")
+						&& !className.startsWith("java.lang.reflect."))
+					natives.add(className + "." + element.getMethodName()
+							+ (element.isNativeMethod() ? " [native]" : ""));
+			}
+			for (int i = natives.size() - 1; i >= 0; i--) {
+				if (stack.length() > 0)
+					stack.append(';');
+				stack.append(natives.get(i));
+			}
+		}
+		if (stack.length() == 0)
+			stack.append("[java]");
+		String key = stack.toString();
+		synchronized (this) {
+			Integer value = samples.get(key);
+			samples.put(key, value != null ? value + 1 : 1);
+			sampleCount++;
+			changed = true;
+		}
+	}
+
+	/**
+	 * Removes all samples taken so far.
+	 */
+	public synchronized void reset() {
+		samples.clear();
+		sampleCount = 0;
+		changed = true;
+	}
+
+	/**
+	 * Writes the samples in the collapsed stack format.
+	 */
+	public void write(Writer out) throws IOException {
+		synchronized (this) {
+			for (Map.Entry<String, Integer> entry : samples.entrySet()) {
+				out.write(entry.getKey());
+				out.write(' ');
+				out.write(entry.getValue().toString());
+				out.write('\n');
+			}
+			changed = false;
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes the samples to the profiler's file, if new samples were taken
+	 * since it was last written.
+	 */
+	public void write() throws IOException {
+		if (changed) {
+			Writer out = new BufferedWriter(new FileWriter(file));
+			try {
+				write(out);
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	private void push(ProfilerFrame frame) {
+		ProfilerFrame[] frames = this.frames;
+		if (depth == frames.length) {
+			ProfilerFrame[] grown = new ProfilerFrame[frames.length * 2];
+			System.arraycopy(frames, 0, grown, 0, frames.length);
+			frames = grown;
+			this.frames = grown;
+		}
+		frames[depth] = frame;
+		depth++;
+	}
+
+	private void pop(ProfilerFrame frame) {
+		// Unwind up to and including the frame, in case frames above it were
+		// left without notification.
+		ProfilerFrame[] frames = this.frames;
+		for (int i = depth - 1; i >= 0; i--) {
+			if (frames[i] == frame) {
+				depth = i;
+				for (; i < frames.length && frames[i] != null; i++)
+					frames[i] = null;
+				break;
+			}
+		}
+	}
+
+	public void handleCompilationDone(Context cx, DebuggableScript fnOrScript,
+			String source) {
+		if (delegate != null)
+			delegate.handleCompilationDone(cx, fnOrScript, source);
+	}
+
+	public DebugFrame getFrame(Context cx, DebuggableScript fnOrScript) {
+		DebugFrame frame = delegate != null
+				? delegate.getFrame(cx, fnOrScript) : null;
+		// Only profile the thread the profiler was installed on.
+		if (Thread.currentThread() != thread)
+			return frame;
+		return new ProfilerFrame(fnOrScript, frame);
+	}
+
+	private class ProfilerFrame implements DebugFrame {
+		String name;
+		volatile int line;
+		DebugFrame delegate;
+
+		ProfilerFrame(DebuggableScript script, DebugFrame delegate) {
+			this.delegate = delegate;
+			String name = script.getFunctionName();
+			if (name == null || name.length() == 0)
+				name = script.isFunction() ? "<anonymous>" : "<script>";
+			String source = script.getSourceName();
+			if (source != null) {
+				int pos = Math.max(source.lastIndexOf('/'),
+						source.lastIndexOf('\\'));
+				source = source.substring(pos + 1);
+			}
+			// Semicolons separate the frames in the output.
+			this.name = (name + " (" + source).replace(';', ',');
+		}
+
+		public void onEnter(Context cx, Scriptable activation,
+				Scriptable thisObj, Object[] args) {
+			push(this);
+			if (delegate != null)
+				delegate.onEnter(cx, activation, thisObj, args);
+		}
+
+		public void onLineChange(Context cx, int lineNumber) {
+			line = lineNumber;
+			if (delegate != null)
+				delegate.onLineChange(cx, lineNumber);
+		}
+
+		public void onExceptionThrown(Context cx, Throwable ex) {
+			if (delegate != null)
+				delegate.onExceptionThrown(cx, ex);
+		}
+
+		public void onExit(Context cx, boolean byThrow,
+				Object resultOrException) {
+			pop(this);
+			if (delegate != null)
+				delegate.onExit(cx, byThrow, resultOrException);
+		}
+
+		public void onDebuggerStatement(Context cx) {
+			if (delegate != null)
+				delegate.onDebuggerStatement(cx);
+		}
+	}
+}
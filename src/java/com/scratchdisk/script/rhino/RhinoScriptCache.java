@@ -0,0 +1,451 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scratchdisk.script.rhino;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.debug.Debugger;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+
+/**
+ * A persistent cache of compiled scripts, so scripts that did not change do
+ * not need to be parsed and compiled again at each start and each reload of
+ * the plugin.
+ *
+ * Entries are keyed by a SHA-1 hash of the source and its name, together with
+ * the Rhino version and all compiler settings that influence the generated
+ * code, such as the optimization level. Stale entries therefore simply do not
+ * match and are replaced when the script is compiled again.
+ *
+ * With an optimization level of 0 or higher, the entries hold the class files
+ * generated by Rhino, loaded through a dedicated class loader per script. In
+ * interpreter mode, they hold the serialized interpreter byte code instead.
+ * While a debugger is attached, scripts are not cached, since the debugger
+ * needs to be notified of the compilation of each script. The profiler does
+ * not need this, and only counts if it passes notifications on to a debugger.
+ *
+ * The cache can be pre-warmed through {@link #main}.
+ *
+ * @author lehni
+ */
+public class RhinoScriptCache {
+	private static final int MAGIC = 0x52534331; // 'RSC1'
+	private static final int KIND_CLASSES = 0;
+	private static final int KIND_INTERPRETED = 1;
+	private static final String EXTENSION = ".rsc";
+	private static final String CLASS_PREFIX =
+			"org.mozilla.javascript.gen.cached_";
+
+	private File directory;
+	private int hits = 0;
+	private int misses = 0;
+
+	public RhinoScriptCache(File directory) {
+		this.directory = directory;
+		if (!directory.exists())
+			directory.mkdirs();
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Returns the amount of scripts that were loaded from the cache.
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the amount of scripts that had to be compiled and were then
+	 * written to the cache.
+	 */
+	public int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Compiles the given source into a script, reusing the cached entry if
+	 * the same source was compiled with the same settings before.
+	 * Compilation errors are thrown as EvaluatorExceptions, just like with
+	 * {@link Context#compileString}.
+	 *
+	 * @param cx the context to take the compiler settings from
+	 * @param source the source code of the script
+	 * @param sourceName the name used in error messages and stack traces
+	 * @return the compiled script, or null if a debugger is attached
+	 */
+	public Script compile(Context cx, String source, String sourceName) {
+		Debugger debugger = cx.getDebugger();
+		if (debugger instanceof RhinoProfiler)
+			debugger = ((RhinoProfiler) debugger).getDelegate();
+		if (debugger != null)
+			return null;
+		CompilerEnvirons env = new CompilerEnvirons();
+		env.initFromContext(cx);
+		String key = getKey(cx, env, source, sourceName);
+		File file = new File(directory, key + EXTENSION);
+		String mainClassName = CLASS_PREFIX + key;
+		ClassLoader parent = cx.getApplicationClassLoader();
+		if (file.exists()) {
+			Script script = null;
+			try {
+				script = readEntry(file, parent, mainClassName);
+			} catch (IOException e) {
+				// A broken entry, e.g. from an interrupted write. It is
+				// replaced when compiling again below.
+			}
+			if (script != null) {
+				hits++;
+				return script;
+			}
+		}
+		Script script;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(MAGIC);
+			if (env.getOptimizationLevel() >= 0) {
+				// Let the ClassCompiler produce the class files, store them
+				// and load the script from them.
+				Object[] result = new ClassCompiler(env).compileToClassFiles(
+						source, sourceName, 1, mainClassName);
+				HashMap<String, byte[]> classes = new HashMap<String, byte[]>();
+				out.writeInt(KIND_CLASSES);
+				out.writeInt(result.length / 2);
+				for (int i = 0; i < result.length; i += 2) {
+					String name = (String) result[i];
+					byte[] data = (byte[]) result[i + 1];
+					classes.put(name, data);
+					out.writeUTF(name);
+					out.writeInt(data.length);
+					out.write(data);
+				}
+				script = loadScript(parent, classes, mainClassName);
+			} else {
+				// The interpreted script holds nothing but its byte code and
+				// literals yet, all of which are serializable.
+				script = cx.compileString(source, sourceName, 1, null);
+				out.writeInt(KIND_INTERPRETED);
+				ObjectOutputStream objects = new ObjectOutputStream(out);
+				objects.writeObject(script);
+				objects.flush();
+			}
+			out.flush();
+		} catch (IOException e) {
+			// Only thrown by the in-memory streams, which do not fail.
+			throw new RuntimeException(e);
+		}
+		try {
+			writeEntry(file, bytes.toByteArray());
+		} catch (IOException e) {
+			// Not being able to write to the cache is not fatal, the script
+			// is simply compiled again next time.
+		}
+		misses++;
+		return script;
+	}
+
+	/**
+	 * Reads and compiles the given file.
+	 *
+	 * @see #compile(Context, String, String)
+	 */
+	public Script compile(Context cx, File file) throws IOException {
+		return compile(cx, readSource(file), file.getPath());
+	}
+
+	/**
+	 * Compiles all JavaScript files found in the given directory and its
+	 * sub-directories into the cache, so the next start does not need to.
+	 *
+	 * @return the amount of compiled files
+	 */
+	public int warm(Context cx, File dir) throws IOException {
+		int count = 0;
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (int i = 0; i < files.length; i++) {
+				File file = files[i];
+				String name = file.getName();
+				if (file.isDirectory()) {
+					if (!name.startsWith(".") && !name.equals("CVS"))
+						count += warm(cx, file);
+				} else if (name.endsWith(".js")) {
+					compile(cx, file);
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public void clear() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (int i = 0; i < files.length; i++) {
+				if (files[i].getName().endsWith(EXTENSION))
+					files[i].delete();
+			}
+		}
+	}
+
+	private static String getKey(Context cx, CompilerEnvirons env,
+			String source, String sourceName) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			// Everything that ends up in the generated code goes into the key.
+			// The source name is included as it is compiled into the class
+			// files for error reporting.
+			String settings = cx.getImplementationVersion()
+					+ "|" + env.getOptimizationLevel()
+					+ "|" + env.getLanguageVersion()
+					+ "|" + env.isGenerateDebugInfo()
+					+ "|" + env.isGenerateObserverCount()
+					+ "|" + env.isUseDynamicScope()
+					+ "|" + env.isXmlAvailable()
+					+ "|" + env.isStrictMode()
+					+ "|" + env.isReservedKeywordAsIdentifier()
+					+ "|" + env.isAllowMemberExprAsFunctionName()
+					+ "|" + env.isGeneratingSource()
+					+ "|" + sourceName + "|";
+			digest.update(settings.getBytes("UTF-8"));
+			digest.update(source.getBytes("UTF-8"));
+			byte[] hash = digest.digest();
+			StringBuffer buffer = new StringBuffer(hash.length * 2);
+			for (int i = 0; i < hash.length; i++) {
+				int b = hash[i] & 0xff;
+				if (b < 0x10)
+					buffer.append('0');
+				buffer.append(Integer.toHexString(b));
+			}
+			return buffer.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Script loadScript(ClassLoader parent,
+			HashMap<String, byte[]> classes, String mainClassName) {
+		try {
+			ScriptClassLoader loader = new ScriptClassLoader(parent, classes);
+			return (Script) loader.loadClass(mainClassName).newInstance();
+		} catch (Exception e) {
+			return null;
+		} catch (LinkageError e) {
+			// Class files of another Rhino build that slipped through the key,
+			// or a corrupted entry.
+			return null;
+		}
+	}
+
+	private static Script readEntry(File file, ClassLoader parent,
+			String mainClassName) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Invalid cache entry: " + file);
+			if (in.readInt() == KIND_CLASSES) {
+				int count = in.readInt();
+				HashMap<String, byte[]> classes = new HashMap<String, byte[]>();
+				for (int i = 0; i < count; i++) {
+					String name = in.readUTF();
+					byte[] bytes = new byte[in.readInt()];
+					in.readFully(bytes);
+					classes.put(name, bytes);
+				}
+				return loadScript(parent, classes, mainClassName);
+			} else {
+				try {
+					return (Script) new ScriptInputStream(in).readObject();
+				} catch (ClassNotFoundException e) {
+					return null;
+				} catch (ClassCastException e) {
+					return null;
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private void writeEntry(File file, byte[] bytes) throws IOException {
+		// Write to a temporary file first and rename it, so other processes
+		// never see half written entries.
+		File temp = File.createTempFile("entry", ".tmp", directory);
+		OutputStream out = new FileOutputStream(temp);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+		file.delete();
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			throw new IOException("Unable to write cache entry: " + file);
+		}
+	}
+
+	private static String readSource(File file) throws IOException {
+		Reader in = new InputStreamReader(new FileInputStream(file));
+		try {
+			StringBuffer buffer = new StringBuffer((int) file.length());
+			char[] chars = new char[4096];
+			int count;
+			while ((count = in.read(chars)) != -1)
+				buffer.append(chars, 0, count);
+			return buffer.toString();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * The dedicated class loader for the classes of one cached script. Each
+	 * script gets its own loader, so reloaded scripts can be collected.
+	 */
+	private static class ScriptClassLoader extends ClassLoader {
+		private HashMap<String, byte[]> classes;
+
+		ScriptClassLoader(ClassLoader parent, HashMap<String, byte[]> classes) {
+			super(parent);
+			this.classes = classes;
+		}
+
+		protected Class<?> findClass(String name)
+				throws ClassNotFoundException {
+			byte[] bytes = classes.remove(name);
+			if (bytes == null)
+				throw new ClassNotFoundException(name);
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+	/**
+	 * Resolves the classes of serialized scripts through the class loader of
+	 * Rhino, which is not necessarily the one of the calling code.
+	 */
+	private static class ScriptInputStream extends ObjectInputStream {
+		ScriptInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException {
+			try {
+				return Class.forName(desc.getName(), false,
+						Context.class.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				return super.resolveClass(desc);
+			}
+		}
+	}
+
+	/**
+	 * Pre-warms a cache from the command line, e.g. as part of the build:
+	 *
+	 * <pre>
+	 * java com.scratchdisk.script.rhino.RhinoScriptCache [-opt level]
+	 *     [-dynamic] [-observe] [-debug] cacheDir file|dir ...
+	 * </pre>
+	 *
+	 * The options need to match the settings of the engine that uses the
+	 * cache, as otherwise the keys do not match. An optimization level of -1
+	 * selects interpreter mode. Since the source names are part of the keys,
+	 * the files need to be passed with the same paths the engine will see.
+	 */
+	public static void main(String[] args) throws IOException {
+		final int[] optimizationLevel = { 0 };
+		final boolean[] dynamicScope = { false };
+		boolean observe = false;
+		boolean debug = false;
+		int index = 0;
+		for (; index < args.length && args[index].startsWith("-"); index++) {
+			String arg = args[index];
+			if (arg.equals("-opt")) {
+				optimizationLevel[0] = Integer.parseInt(args[++index]);
+			} else if (arg.equals("-dynamic")) {
+				dynamicScope[0] = true;
+			} else if (arg.equals("-observe")) {
+				observe = true;
+			} else if (arg.equals("-debug")) {
+				debug = true;
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + arg);
+			}
+		}
+		if (args.length - index < 2) {
+			System.err.println("Usage: RhinoScriptCache [-opt level] "
+					+ "[-dynamic] [-observe] [-debug] cacheDir file|dir ...");
+			System.exit(1);
+		}
+		ContextFactory factory = new ContextFactory() {
+			protected boolean hasFeature(Context cx, int feature) {
+				if (feature == Context.FEATURE_DYNAMIC_SCOPE)
+					return dynamicScope[0];
+				return super.hasFeature(cx, feature);
+			}
+		};
+		Context cx = factory.enterContext();
+		try {
+			cx.setOptimizationLevel(optimizationLevel[0]);
+			cx.setGenerateObserverCount(observe);
+			cx.setGeneratingDebug(debug);
+			RhinoScriptCache cache = new RhinoScriptCache(new File(args[index]));
+			int count = 0;
+			for (index++; index < args.length; index++) {
+				File file = new File(args[index]);
+				if (file.isDirectory()) {
+					count += cache.warm(cx, file);
+				} else {
+					cache.compile(cx, file);
+					count++;
+				}
+			}
+			System.out.println("Compiled " + count + " scripts, "
+					+ cache.getMisses() + " added to the cache.");
+		} finally {
+			Context.exit();
+		}
+	}
+}
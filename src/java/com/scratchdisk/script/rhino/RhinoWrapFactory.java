@@ -102,7 +102,11 @@ public class RhinoWrapFactory extends WrapFactory implements Converter {
 			Object javaObj, Class<?> staticType, boolean newObject) {
 		// Keep track of wrappers so that if a given object needs to be
 		// wrapped again, take the wrapper from the pool...
-		WeakReference<Scriptable> ref = wrappers.get(javaObj);
+		// The pool is shared by all threads executing scripts.
+		WeakReference<Scriptable> ref;
+		synchronized (wrappers) {
+			ref = wrappers.get(javaObj);
+		}
 		Scriptable obj = ref == null ? null : ref.get();
 		if (obj == null) {
 			boolean cache = true;
@@ -130,8 +134,17 @@ public class RhinoWrapFactory extends WrapFactory implements Converter {
 					}
 				}
 			}
-			if (cache)
-				wrappers.put(javaObj, new WeakReference<Scriptable>(obj));
+			if (cache) {
+				synchronized (wrappers) {
+					// Another thread may have wrapped the object in the
+					// meantime. Use its wrapper, so there only ever is one.
+					ref = wrappers.get(javaObj);
+					Scriptable other = ref == null ? null : ref.get();
+					if (other != null)
+						return other;
+					wrappers.put(javaObj, new WeakReference<Scriptable>(obj));
+				}
+			}
 		}
 		return obj;
 	}
@@ -150,20 +163,23 @@ public class RhinoWrapFactory extends WrapFactory implements Converter {
 		IdentityHashMap<Class, Integer> fromCache = null;
 		if (unwrapped != null) {
 			Class fromClass = unwrapped.getClass();
-			fromCache =
-					conversionCache.get(fromClass);
-			if (fromCache == null) {
-				fromCache = new IdentityHashMap<Class, Integer>();
-				conversionCache.put(fromClass, fromCache);
+			synchronized (conversionCache) {
+				fromCache = conversionCache.get(fromClass);
+				if (fromCache == null) {
+					fromCache = new IdentityHashMap<Class, Integer>();
+					conversionCache.put(fromClass, fromCache);
+				}
+				Integer res = fromCache.get(to);
+				if (res != null)
+					return res;
 			}
-			Integer res = fromCache.get(to);
-			if (res != null)
-				return res;
 		}
 		int weight = calculateConversionWeight(from, unwrapped, to,
 				defaultWeight);
 		if (fromCache != null) {
-			fromCache.put(to, weight);
+			synchronized (conversionCache) {
+				fromCache.put(to, weight);
+			}
 		}
 		return weight;
 	}
@@ -14,8 +14,15 @@
 
 package com.scratchdisk.script.rhino;
 
+import java.io.PrintStream;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.EvaluatorException;
@@ -34,6 +41,21 @@ import com.scratchdisk.script.ScriptEngine;
  * @author lehni
  */
 public class TopLevel extends ImporterTopLevel {
+	// Classes exposed through exposeClass() that have not been accessed yet,
+	// and the wrappers of the ones that have. Note that ImporterTopLevel's
+	// constructor already looks up properties, before these are initialized.
+	private HashMap<String, Class<?>> lazyClasses =
+			new HashMap<String, Class<?>>();
+	private HashMap<String, ExtendedJavaClass> exposedClasses =
+			new HashMap<String, ExtendedJavaClass>();
+	// The time in nanoseconds it took to wrap each exposed class, in order
+	// of first access.
+	private LinkedHashMap<String, Long> classTimings =
+			new LinkedHashMap<String, Long>();
+	// Superclasses are wrapped while wrapping their subclasses, so only the
+	// outermost wrapping adds to the total.
+	private long classTimingTotal = 0;
+	private int classTimingDepth = 0;
 
 	public TopLevel() {
 	}
@@ -75,6 +97,149 @@ public class TopLevel extends ImporterTopLevel {
 				}, TopLevel.class, DONTENUM);
 	}
 
+	/**
+	 * Exposes the class as a global property named after its simple name.
+	 * The ExtendedJavaClass wrapper, which reflects over all members of the
+	 * class, is only created once the property is accessed for the first
+	 * time. Just like eagerly defined classes, the property is read-only,
+	 * permanent and not enumerable.
+	 */
+	public void exposeClass(Class<?> cls) {
+		synchronized (ExtendedJavaClass.lock) {
+			lazyClasses.put(cls.getSimpleName(), cls);
+		}
+	}
+
+	/**
+	 * Returns the wrapper of the class exposed under the given name, creating
+	 * it if this is the first access, or null if no class was exposed under
+	 * this name.
+	 */
+	public ExtendedJavaClass getExposedClass(String name) {
+		if (lazyClasses == null)
+			return null;
+		synchronized (ExtendedJavaClass.lock) {
+			ExtendedJavaClass wrapper = exposedClasses.get(name);
+			if (wrapper == null) {
+				Class<?> cls = lazyClasses.get(name);
+				if (cls != null) {
+					long start = System.nanoTime();
+					classTimingDepth++;
+					try {
+						wrapper = new ExtendedJavaClass(this, cls, true);
+						// Build the instance prototype chain right away too,
+						// so its cost is part of the timing.
+						wrapper.getInstancePrototype();
+					} finally {
+						classTimingDepth--;
+					}
+					long time = System.nanoTime() - start;
+					classTimings.put(name, time);
+					if (classTimingDepth == 0)
+						classTimingTotal += time;
+					exposedClasses.put(name, wrapper);
+					lazyClasses.remove(name);
+				}
+			}
+			return wrapper;
+		}
+	}
+
+	/**
+	 * Returns the time in nanoseconds it took to wrap each of the exposed
+	 * classes that were accessed so far, in order of first access. The time
+	 * of a class includes the one of superclasses wrapped along the way.
+	 */
+	public Map<String, Long> getClassTimings() {
+		synchronized (ExtendedJavaClass.lock) {
+			return new LinkedHashMap<String, Long>(classTimings);
+		}
+	}
+
+	/**
+	 * Prints the time it took to wrap each of the exposed classes accessed so
+	 * far, the most expensive first, followed by the amount of classes that
+	 * were never accessed.
+	 */
+	public void printClassTimings(PrintStream out) {
+		ArrayList<Map.Entry<String, Long>> entries;
+		long total;
+		int unused;
+		synchronized (ExtendedJavaClass.lock) {
+			entries = new ArrayList<Map.Entry<String, Long>>(
+					new LinkedHashMap<String, Long>(classTimings).entrySet());
+			total = classTimingTotal;
+			unused = lazyClasses.size();
+		}
+		Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+			public int compare(Map.Entry<String, Long> e1,
+					Map.Entry<String, Long> e2) {
+				return e2.getValue().compareTo(e1.getValue());
+			}
+		});
+		for (Map.Entry<String, Long> entry : entries) {
+			long time = entry.getValue();
+			out.println(entry.getKey() + ": " + (time / 1000) / 1000.0 + " ms");
+		}
+		out.println("Exposed " + entries.size() + " classes in "
+				+ (total / 1000) / 1000.0 + " ms, " + unused + " not accessed.");
+	}
+
+	public Object get(String name, Scriptable start) {
+		Object obj = super.get(name, start);
+		if (obj == NOT_FOUND) {
+			ExtendedJavaClass cls = getExposedClass(name);
+			if (cls != null)
+				return cls;
+		}
+		return obj;
+	}
+
+	public boolean has(String name, Scriptable start) {
+		if (super.has(name, start))
+			return true;
+		if (lazyClasses == null)
+			return false;
+		synchronized (ExtendedJavaClass.lock) {
+			return lazyClasses.containsKey(name)
+					|| exposedClasses.containsKey(name);
+		}
+	}
+
+	public void put(String name, Scriptable start, Object value) {
+		// Exposed classes are read-only, like the eagerly defined ones used
+		// to be.
+		if (start == this && lazyClasses != null) {
+			synchronized (ExtendedJavaClass.lock) {
+				if (lazyClasses.containsKey(name)
+						|| exposedClasses.containsKey(name))
+					return;
+			}
+		}
+		super.put(name, start, value);
+	}
+
+	/**
+	 * Seals the top-level scope so it can be shared between threads. The
+	 * lazily loaded constructors, e.g. of the packages, define properties
+	 * when they are loaded, so they need to be loaded before.
+	 */
+	public synchronized void sealObject() {
+		// Loading Rhino's own getClass() redefines the top packages, so
+		// remember ours and restore them after.
+		Object[] packages = new Object[topPackages.length / 2];
+		for (int i = 0; i != topPackages.length; i += 2)
+			packages[i / 2] = get(topPackages[i], this);
+		Object[] ids = getAllIds();
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] instanceof String)
+				get((String) ids[i], this);
+		}
+		for (int i = 0; i != topPackages.length; i += 2)
+			defineProperty(topPackages[i], packages[i / 2], DONTENUM);
+		super.sealObject();
+	}
+
 	public static void defineProperty(ScriptableObject obj, String name,
 			String getter, String setter) throws SecurityException, NoSuchMethodException {
 		Class<? extends ScriptableObject> cls = obj.getClass();
@@ -0,0 +1,479 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scratchdisk.util;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map with int keys that uses open addressing with linear probing, storing
+ * keys and values in two parallel arrays. Unlike {@link IntMap}, no object is
+ * created per mapping and the keys are not boxed, as long as the int versions
+ * of the methods are used. The {@link Map} interface is still supported for
+ * compatibility.
+ *
+ * This map does not allow null values, and it is not synchronized.
+ *
+ * Subclasses can store the values in a different form by overriding
+ * {@link #wrap(int, Object)} and {@link #unwrap(Object)}, see
+ * {@link ReferenceIntHashMap}.
+ *
+ * @author lehni
+ */
+public class IntHashMap<V> extends AbstractMap<Integer, V> {
+	private int[] keys;
+	// A slot is empty if its value is null
+	private Object[] values;
+	private int size;
+	private int threshold;
+	private float loadFactor;
+	private int modCount;
+
+	private transient Set<Map.Entry<Integer, V>> entrySet;
+	private transient Set<Integer> keySet;
+	private transient Collection<V> valueCollection;
+
+	public IntHashMap() {
+		this(16, 0.75f);
+	}
+
+	public IntHashMap(int capacity) {
+		this(capacity, 0.75f);
+	}
+
+	/**
+	 * @param capacity the initial amount of mappings the map can hold before
+	 *        it grows
+	 * @param loadFactor the ratio of used slots at which the map grows
+	 */
+	public IntHashMap(int capacity, float loadFactor) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity must not be negative");
+		if (loadFactor <= 0.0f || loadFactor >= 1.0f)
+			throw new IllegalArgumentException(
+					"Load factor must be greater than 0 and less than 1.");
+		this.loadFactor = loadFactor;
+		int length = 4;
+		while (length * loadFactor <= capacity)
+			length <<= 1;
+		allocate(length);
+	}
+
+	private void allocate(int length) {
+		keys = new int[length];
+		values = new Object[length];
+		// Always keep at least one slot free, so probing terminates
+		threshold = Math.min((int) (length * loadFactor), length - 1);
+	}
+
+	private int indexFor(int key) {
+		// Mix the bits, since handles are aligned pointers
+		int hash = key ^ (key >>> 16);
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		return (hash ^ (hash >>> 16)) & (keys.length - 1);
+	}
+
+	/**
+	 * Returns the slot that holds the key, or -1.
+	 */
+	private int find(int key) {
+		int mask = keys.length - 1;
+		for (int i = indexFor(key); values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Converts the value to the form in which it is stored in the table.
+	 */
+	protected Object wrap(int key, V value) {
+		return value;
+	}
+
+	/**
+	 * Converts a stored value back, see {@link #wrap(int, Object)}. Returns
+	 * null if the value is not available anymore.
+	 */
+	@SuppressWarnings("unchecked")
+	protected V unwrap(Object value) {
+		return (V) value;
+	}
+
+	/**
+	 * Called before each access, to allow subclasses to remove stale
+	 * mappings.
+	 */
+	protected void purge() {
+	}
+
+	/**
+	 * Removes the mapping of the key if its stored value is the passed one,
+	 * as returned by {@link #wrap(int, Object)}.
+	 */
+	protected boolean removeStored(int key, Object value) {
+		int index = find(key);
+		if (index != -1 && values[index] == value) {
+			removeAt(index);
+			return true;
+		}
+		return false;
+	}
+
+	private void removeAt(int index) {
+		// Shift the following entries of the cluster back, so that no
+		// tombstones are needed and lookups stop at the first empty slot.
+		int mask = keys.length - 1;
+		int gap = index;
+		for (int i = (index + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+			int home = indexFor(keys[i]);
+			// Move the entry if its home slot does not lie cyclically
+			// between the gap and its current position.
+			if (gap <= i ? home <= gap || home > i : home <= gap && home > i) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+		values[gap] = null;
+		size--;
+		modCount++;
+	}
+
+	private void resize() {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(keys.length * 2);
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			Object value = oldValues[i];
+			if (value != null) {
+				int index = indexFor(oldKeys[i]);
+				while (values[index] != null)
+					index = (index + 1) & mask;
+				keys[index] = oldKeys[i];
+				values[index] = value;
+			}
+		}
+	}
+
+	public int size() {
+		purge();
+		return size;
+	}
+
+	public boolean isEmpty() {
+		purge();
+		return size == 0;
+	}
+
+	public V get(int key) {
+		purge();
+		int index = find(key);
+		return index != -1 ? unwrap(values[index]) : null;
+	}
+
+	public V get(Integer key) {
+		return get(key.intValue());
+	}
+
+	/**
+	 * java.util.Map compatible version of get
+	 */
+	public V get(Object key) {
+		return key instanceof Number ? get(((Number) key).intValue()) : null;
+	}
+
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	public boolean containsKey(Integer key) {
+		return containsKey(key.intValue());
+	}
+
+	/**
+	 * java.util.Map compatible version of containsKey
+	 */
+	public boolean containsKey(Object key) {
+		return key instanceof Number && containsKey(((Number) key).intValue());
+	}
+
+	/**
+	 * Associates the key with the value, which may not be null.
+	 *
+	 * @return the previous value associated with the key, or null
+	 */
+	public V put(int key, V value) {
+		if (value == null)
+			throw new NullPointerException("null values not allowed");
+		purge();
+		int mask = keys.length - 1;
+		int index = indexFor(key);
+		for (; values[index] != null; index = (index + 1) & mask) {
+			if (keys[index] == key) {
+				V previous = unwrap(values[index]);
+				values[index] = wrap(key, value);
+				return previous;
+			}
+		}
+		keys[index] = key;
+		values[index] = wrap(key, value);
+		modCount++;
+		if (++size > threshold)
+			resize();
+		return null;
+	}
+
+	public V put(Integer key, V value) {
+		return put(key.intValue(), value);
+	}
+
+	public V remove(int key) {
+		purge();
+		int index = find(key);
+		if (index != -1) {
+			V value = unwrap(values[index]);
+			removeAt(index);
+			return value;
+		}
+		return null;
+	}
+
+	public V remove(Integer key) {
+		return remove(key.intValue());
+	}
+
+	/**
+	 * java.util.Map compatible version of remove
+	 */
+	public V remove(Object key) {
+		return key instanceof Number ? remove(((Number) key).intValue()) : null;
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+		modCount++;
+	}
+
+	public Integer keyOf(Object value) {
+		purge();
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null && value.equals(unwrap(values[i])))
+				return keys[i];
+		}
+		return null;
+	}
+
+	public Set<Map.Entry<Integer, V>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Map.Entry<Integer, V>>() {
+				public int size() {
+					return IntHashMap.this.size();
+				}
+
+				public void clear() {
+					IntHashMap.this.clear();
+				}
+
+				public Iterator<Map.Entry<Integer, V>> iterator() {
+					return new SlotIterator<Map.Entry<Integer, V>>() {
+						protected Map.Entry<Integer, V> get(int key, V value) {
+							return new Entry(key, value);
+						}
+					};
+				}
+			};
+		}
+		return entrySet;
+	}
+
+	public Set<Integer> keySet() {
+		if (keySet == null) {
+			keySet = new AbstractSet<Integer>() {
+				public int size() {
+					return IntHashMap.this.size();
+				}
+
+				public void clear() {
+					IntHashMap.this.clear();
+				}
+
+				public boolean contains(Object o) {
+					return containsKey(o);
+				}
+
+				public boolean remove(Object o) {
+					return IntHashMap.this.remove(o) != null;
+				}
+
+				public Iterator<Integer> iterator() {
+					return new SlotIterator<Integer>() {
+						protected Integer get(int key, V value) {
+							return key;
+						}
+					};
+				}
+			};
+		}
+		return keySet;
+	}
+
+	public Collection<V> values() {
+		if (valueCollection == null) {
+			valueCollection = new AbstractCollection<V>() {
+				public int size() {
+					return IntHashMap.this.size();
+				}
+
+				public void clear() {
+					IntHashMap.this.clear();
+				}
+
+				public Iterator<V> iterator() {
+					return new SlotIterator<V>() {
+						protected V get(int key, V value) {
+							return value;
+						}
+					};
+				}
+			};
+		}
+		return valueCollection;
+	}
+
+	private class Entry implements Map.Entry<Integer, V> {
+		private int key;
+		private V value;
+
+		Entry(int key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		public Integer getKey() {
+			return key;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		public V setValue(V value) {
+			this.value = value;
+			return put(key, value);
+		}
+
+		public boolean equals(Object obj) {
+			if (obj instanceof Map.Entry) {
+				Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+				return getKey().equals(entry.getKey())
+						&& value.equals(entry.getValue());
+			}
+			return false;
+		}
+
+		public int hashCode() {
+			return key ^ value.hashCode();
+		}
+	}
+
+	/**
+	 * Iterates through the slots, starting after an empty one. Removing an
+	 * entry only shifts entries of the same cluster backwards, so this way
+	 * they can never move to slots that were already visited, and removing
+	 * through the iterator is safe. Values that are not available anymore are
+	 * skipped, and references to the values are held while iterating.
+	 */
+	private abstract class SlotIterator<E> implements Iterator<E> {
+		private int start;
+		private int step = 0;
+		private int current = -1;
+		private int currentStep;
+		private int nextIndex = -1;
+		private int nextStep;
+		private int nextKey;
+		private V nextValue;
+		private int expectedModCount;
+
+		SlotIterator() {
+			purge();
+			start = 0;
+			while (values[start] != null)
+				start++;
+			expectedModCount = modCount;
+		}
+
+		protected abstract E get(int key, V value);
+
+		public boolean hasNext() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			int mask = keys.length - 1;
+			while (nextIndex == -1 && step < keys.length) {
+				int index = (start + step) & mask;
+				step++;
+				if (values[index] != null) {
+					V value = unwrap(values[index]);
+					if (value != null) {
+						nextIndex = index;
+						nextStep = step;
+						nextKey = keys[index];
+						nextValue = value;
+					}
+				}
+			}
+			return nextIndex != -1;
+		}
+
+		public E next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			current = nextIndex;
+			currentStep = nextStep;
+			nextIndex = -1;
+			E next = get(nextKey, nextValue);
+			nextValue = null;
+			return next;
+		}
+
+		public void remove() {
+			if (current == -1)
+				throw new IllegalStateException();
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			removeAt(current);
+			// Continue after the removed slot, or visit it again if an entry
+			// was shifted into it.
+			step = values[current] != null ? currentStep - 1 : currentStep;
+			nextIndex = -1;
+			nextValue = null;
+			current = -1;
+			expectedModCount = modCount;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scratchdisk.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+
+/**
+ * An {@link IntHashMap} that holds its values through references, so they
+ * can be reclaimed by the garbage collector. The references are registered
+ * with a queue, and the mappings of reclaimed values are removed from the
+ * map on the next access.
+ *
+ * @author lehni
+ */
+public abstract class ReferenceIntHashMap<V> extends IntHashMap<V> {
+	private ReferenceQueue<V> queue = new ReferenceQueue<V>();
+
+	/**
+	 * The references need to know their keys, so their mappings can be found
+	 * when they are enqueued.
+	 */
+	protected interface KeyedReference {
+		int getKey();
+	}
+
+	public ReferenceIntHashMap() {
+		super();
+	}
+
+	public ReferenceIntHashMap(int capacity, float loadFactor) {
+		super(capacity, loadFactor);
+	}
+
+	/**
+	 * Creates the reference through which the value is held. It needs to
+	 * implement {@link KeyedReference}.
+	 */
+	protected abstract Reference<V> createReference(int key, V value,
+			ReferenceQueue<V> queue);
+
+	protected Object wrap(int key, V value) {
+		return createReference(key, value, queue);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected V unwrap(Object value) {
+		return ((Reference<V>) value).get();
+	}
+
+	protected void purge() {
+		for (Reference<? extends V> ref = queue.poll(); ref != null;
+				ref = queue.poll()) {
+			// The key might have been mapped to a new value in the meantime,
+			// so only remove the mapping if it still holds this reference.
+			removeStored(((KeyedReference) ref).getKey(), ref);
+		}
+	}
+
+	public void clear() {
+		super.clear();
+		while (queue.poll() != null) {
+			// Drain the queue
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scratchdisk.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+
+/**
+ * An int keyed map that holds its values through {@link SoftReference}
+ * objects, see {@link ReferenceIntHashMap}.
+ *
+ * @author lehni
+ */
+public class SoftIntHashMap<V> extends ReferenceIntHashMap<V> {
+
+	public SoftIntHashMap() {
+		super();
+	}
+
+	public SoftIntHashMap(int capacity, float loadFactor) {
+		super(capacity, loadFactor);
+	}
+
+	private static class SoftValue<V> extends SoftReference<V>
+			implements KeyedReference {
+		private int key;
+
+		public SoftValue(int key, V value, ReferenceQueue<V> queue) {
+			super(value, queue);
+			this.key = key;
+		}
+
+		public int getKey() {
+			return key;
+		}
+	}
+
+	protected Reference<V> createReference(int key, V value,
+			ReferenceQueue<V> queue) {
+		return new SoftValue<V>(key, value, queue);
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scratchdisk.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * An int keyed map that holds its values through {@link WeakReference}
+ * objects, see {@link ReferenceIntHashMap}.
+ *
+ * @author lehni
+ */
+public class WeakIntHashMap<V> extends ReferenceIntHashMap<V> {
+
+	public WeakIntHashMap() {
+		super();
+	}
+
+	public WeakIntHashMap(int capacity, float loadFactor) {
+		super(capacity, loadFactor);
+	}
+
+	private static class WeakValue<V> extends WeakReference<V>
+			implements KeyedReference {
+		private int key;
+
+		public WeakValue(int key, V value, ReferenceQueue<V> queue) {
+			super(value, queue);
+			this.key = key;
+		}
+
+		public int getKey() {
+			return key;
+		}
+	}
+
+	protected Reference<V> createReference(int key, V value,
+			ReferenceQueue<V> queue) {
+		return new WeakValue<V>(key, value, queue);
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scratchdisk.util.test;
+
+import java.util.Random;
+
+import com.scratchdisk.util.IntHashMap;
+import com.scratchdisk.util.IntMap;
+import com.scratchdisk.util.SoftIntHashMap;
+import com.scratchdisk.util.SoftIntMap;
+import com.scratchdisk.util.WeakIntHashMap;
+
+/**
+ * Compares {@link IntHashMap} and its soft and weak variants with
+ * {@link IntMap} and {@link SoftIntMap}, the way the wrapper caches of items
+ * and documents use them: Keys are pointer-like handles, each put once and
+ * looked up many times, then removed.
+ *
+ * <pre>
+ * java com.scratchdisk.util.test.IntMapBenchmark [keys] [gets] [rounds]
+ * </pre>
+ *
+ * Each map is measured for the given amount of rounds, so the later rounds
+ * show the times after the JIT compiler has warmed up. The values are held
+ * in an array during the measurement, so the soft and weak maps keep them.
+ * Like all classes in test packages, it is not part of the runtime jar.
+ *
+ * @author lehni
+ */
+public class IntMapBenchmark {
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private IntMapBenchmark() {
+	}
+
+	/**
+	 * The int versions of the map methods, which the maps do not share
+	 * through a common interface.
+	 */
+	private static abstract class Target {
+		String name;
+
+		Target(String name) {
+			this.name = name;
+		}
+
+		abstract void put(int key, Object value);
+
+		abstract Object get(int key);
+
+		abstract void remove(int key);
+	}
+
+	private static Target[] createTargets() {
+		final IntMap<Object> intMap = new IntMap<Object>();
+		final IntHashMap<Object> intHashMap = new IntHashMap<Object>();
+		final SoftIntMap<Object> softIntMap = new SoftIntMap<Object>();
+		final SoftIntHashMap<Object> softIntHashMap =
+				new SoftIntHashMap<Object>();
+		final WeakIntHashMap<Object> weakIntHashMap =
+				new WeakIntHashMap<Object>();
+		return new Target[] {
+			new Target("IntMap") {
+				void put(int key, Object value) {
+					intMap.put(key, value);
+				}
+
+				Object get(int key) {
+					return intMap.get(key);
+				}
+
+				void remove(int key) {
+					intMap.remove(key);
+				}
+			},
+			new Target("IntHashMap") {
+				void put(int key, Object value) {
+					intHashMap.put(key, value);
+				}
+
+				Object get(int key) {
+					return intHashMap.get(key);
+				}
+
+				void remove(int key) {
+					intHashMap.remove(key);
+				}
+			},
+			new Target("SoftIntMap") {
+				void put(int key, Object value) {
+					softIntMap.put(key, value);
+				}
+
+				Object get(int key) {
+					return softIntMap.get(key);
+				}
+
+				void remove(int key) {
+					softIntMap.remove(key);
+				}
+			},
+			new Target("SoftIntHashMap") {
+				void put(int key, Object value) {
+					softIntHashMap.put(key, value);
+				}
+
+				Object get(int key) {
+					return softIntHashMap.get(key);
+				}
+
+				void remove(int key) {
+					softIntHashMap.remove(key);
+				}
+			},
+			new Target("WeakIntHashMap") {
+				void put(int key, Object value) {
+					weakIntHashMap.put(key, value);
+				}
+
+				Object get(int key) {
+					return weakIntHashMap.get(key);
+				}
+
+				void remove(int key) {
+					weakIntHashMap.remove(key);
+				}
+			}
+		};
+	}
+
+	public static void main(String[] args) {
+		int keyCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int getCount = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		// Handles are addresses, aligned and spread over a large range.
+		Random random = new Random(0);
+		int[] keys = new int[keyCount];
+		Object[] values = new Object[keyCount];
+		for (int i = 0; i < keyCount; i++) {
+			keys[i] = (random.nextInt(1 << 26) + 1) << 4;
+			values[i] = new Object();
+		}
+		for (int round = 1; round <= rounds; round++) {
+			System.out.println("Round " + round + ", " + keyCount
+					+ " keys, " + getCount + " gets each, times in ms:");
+			Target[] targets = createTargets();
+			for (int i = 0; i < targets.length; i++) {
+				Target target = targets[i];
+				long time = System.nanoTime();
+				for (int j = 0; j < keyCount; j++)
+					target.put(keys[j], values[j]);
+				long putTime = System.nanoTime() - time;
+				time = System.nanoTime();
+				int misses = 0;
+				for (int k = 0; k < getCount; k++) {
+					for (int j = 0; j < keyCount; j++) {
+						if (target.get(keys[j]) == null)
+							misses++;
+					}
+				}
+				long getTime = System.nanoTime() - time;
+				time = System.nanoTime();
+				for (int j = 0; j < keyCount; j++)
+					target.remove(keys[j]);
+				long removeTime = System.nanoTime() - time;
+				StringBuffer line = new StringBuffer("  ");
+				line.append(target.name);
+				for (int j = target.name.length(); j < 16; j++)
+					line.append(' ');
+				line.append("put ").append(putTime / 1000000)
+						.append("  get ").append(getTime / 1000000)
+						.append("  remove ").append(removeTime / 1000000);
+				// As the values are held, no lookup should fail.
+				if (misses > 0)
+					line.append("  ").append(misses).append(" misses");
+				System.out.println(line);
+			}
+		}
+	}
+}
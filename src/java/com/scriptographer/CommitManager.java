@@ -14,10 +14,13 @@
 
 package com.scriptographer;
 
-import java.util.Collection;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
 
 import com.scratchdisk.script.rhino.ExtendedJavaObject;
+import com.scriptographer.ai.Document;
+import com.scriptographer.ai.DocumentObject;
+import com.scriptographer.ai.Segment;
+import com.scriptographer.ai.SegmentList;
 import com.scriptographer.ai.TextItem;
 
 /**
@@ -29,17 +32,91 @@ public class CommitManager {
 		// Don't let anyone instantiate this class.
 	}
 
-	private static CommittableMap committables = new CommittableMap();
+	/**
+	 * The queue of changes that do not belong to a document, e.g. of palettes.
+	 */
+	private static DirtyQueue globalQueue = new DirtyQueue(null);
+
+	/**
+	 * One queue of changes per document. There are only ever a few documents
+	 * open, so a list is fine. Queues are removed again in
+	 * {@link #release(Document)}.
+	 */
+	private static ArrayList<DirtyQueue> documentQueues =
+			new ArrayList<DirtyQueue>();
 
 	/**
-	 * The version that gets increased by one on each commit. This can be used
-	 * to keep track of values that need synching only once on each execution of
-	 * a script, or when things are changed
+	 * The version that gets increased by one on each commit and whenever
+	 * the version of a document is increased. This can be used to keep track
+	 * of values that need synching only once on each execution of a script,
+	 * or when things are changed in any document. For values that belong to
+	 * one document, {@link #getVersion(Object)} avoids unnecessary updates.
 	 * 
 	 * It also gets increased in Item.updateIfWrapped
 	 */
 	public static int version = 0;
 
+	/**
+	 * Increased whenever an object is marked dirty, and by items whenever they
+	 * are changed in ways that may affect other items, e.g. moved into another
+	 * group. Used for cached values that depend on more than one item, such as
+	 * the bounds of groups.
+	 * 
+	 * @jshide
+	 */
+	public static int changeVersion = 0;
+
+	/**
+	 * Increased together with {@link #changeVersion} by changes that are not
+	 * reported to the document per item, such as undo and redo, or native
+	 * calls that create or replace artwork. Used by values that keep track of
+	 * the reported changes themselves, such as the item tree of documents.
+	 * 
+	 * @jshide
+	 */
+	public static int untrackedVersion = 0;
+
+	/**
+	 * The value of {@link #version} at the last commit, for
+	 * {@link #getVersion(Object)}.
+	 */
+	private static int commitVersion = 0;
+
+	/**
+	 * Statistics about the committed changes, see {@link #getCommitCount()},
+	 * {@link #getSegmentCount()} and {@link #getSegmentCallCount()}.
+	 */
+	private static int commitCount = 0;
+	private static int segmentCount = 0;
+	private static int segmentCallCount = 0;
+
+	/**
+	 * Returns the document that changes to objects associated with the key
+	 * belong to, or null if they are not bound to a document.
+	 */
+	private static Document getDocument(Object key) {
+		if (key instanceof Document)
+			return (Document) key;
+		if (key instanceof DocumentObject)
+			return ((DocumentObject) key).getDocument();
+		return null;
+	}
+
+	private static DirtyQueue getQueue(Document document, boolean create) {
+		if (document == null)
+			return globalQueue;
+		for (int i = 0, l = documentQueues.size(); i < l; i++) {
+			DirtyQueue queue = documentQueues.get(i);
+			if (queue.document == document)
+				return queue;
+		}
+		if (!create)
+			return null;
+		DirtyQueue queue = new DirtyQueue(document);
+		documentQueues.add(queue);
+		return queue;
+	}
+
 	/**
 	 * Commits changes to objects that are associated with the given key this is
 	 * usually a item, where path styles and segment lists use the item
@@ -51,22 +128,38 @@ public class CommitManager {
 	protected static boolean commit(Object key, boolean endExecution) {
 		boolean committed = false;
 		if (key != null) {
-			Committable obj = committables.get(key);
-			if (obj != null) {
-				obj.commit(endExecution);
+			DirtyQueue queue = getQueue(getDocument(key), false);
+			DirtyQueue.Entry entry = queue != null ? queue.get(key) : null;
+			if (entry == null) {
+				// The item might have been moved to another document since it
+				// was marked dirty, so look through the other queues too.
+				queue = globalQueue.get(key) != null ? globalQueue : null;
+				for (int i = 0, l = documentQueues.size(); queue == null
+						&& i < l; i++) {
+					DirtyQueue other = documentQueues.get(i);
+					if (other.get(key) != null)
+						queue = other;
+				}
+				if (queue != null)
+					entry = queue.get(key);
+			}
+			if (entry != null) {
+				entry.commit(endExecution);
 				committed = true;
 				// case it's a text, use the story as a key as well. it's used
 				// like that in CharacterAttributes
-				if (obj instanceof TextItem)
-					commit(((TextItem) obj).getStory(), endExecution);
+				if (entry.committable instanceof TextItem)
+					commit(((TextItem) entry.committable).getStory(),
+							endExecution);
 				// Remove object after committing
-				committables.remove(key);
+				queue.remove(key);
+			}
+		} else {
+			committed = globalQueue.commit(endExecution);
+			for (int i = 0, l = documentQueues.size(); i < l; i++) {
+				if (documentQueues.get(i).commit(endExecution))
+					committed = true;
 			}
-		} else if (committables.size() > 0) {
-			for (Committable committable : committables.values())
-				committable.commit(endExecution);
-			committed = true;
-			committables.clear();
 		}
 		return committed;
 	}
@@ -80,6 +173,7 @@ public class CommitManager {
 	 * @return true if anything was committed.
 	 */
 	public static boolean commit(Object key) {
+		ScriptographerEngine.checkMainThread();
 		return commit(key, false);
 	}
 
@@ -87,112 +181,390 @@ public class CommitManager {
 	 * commit all changes and increases the internal commit version
 	 */
 	public static boolean commit() {
-		version++;
+		commitVersion = ++version;
 		// Also set the modificationVersion to allow versioning for increased performance.
 		ExtendedJavaObject.changeVersion = version;
 		return commit(null, true);
 	}
 
+	/**
+	 * Commits all changes to objects of the given document, without touching
+	 * other documents.
+	 * 
+	 * @return true if anything was committed.
+	 * 
+	 * @jshide
+	 */
+	public static boolean commitDocument(Document document) {
+		DirtyQueue queue = getQueue(document, false);
+		return queue != null && queue.commit(false);
+	}
+
+	/**
+	 * Increases {@link #changeVersion} and {@link #untrackedVersion}.
+	 * 
+	 * @jshide
+	 */
+	public static void markUntrackedChange() {
+		changeVersion++;
+		untrackedVersion++;
+	}
+
 	public static void markDirty(Object key, Committable committable) {
-		committables.put(key, committable);
+		// The queues are not synchronized, and committing calls into
+		// Illustrator.
+		ScriptographerEngine.checkMainThread();
+		getQueue(getDocument(key), true).put(key, committable);
+		changeVersion++;
 	}
 
 	/**
-	 * a hash map that overrides put so that it creates a CommittableList in case
-	 * there was one object under a key already Uses IdentityHashMaps
-	 * internally, to avoid calling of equals on objects
+	 * Returns the version for values associated with the given object, which
+	 * changes on each commit and whenever the version of the object's
+	 * document is increased through {@link #increaseVersion(Document)}, but
+	 * not for changes in other documents. For objects that do not belong to a
+	 * document, this is the same as {@link #version}.
+	 * 
+	 * @jshide
 	 */
-	/*
-	 * Ideally we would be using a LinkedIdentityHashMap here but that class does not exist.
+	public static int getVersion(Object obj) {
+		Document document = getDocument(obj);
+		if (document == null)
+			return version;
+		DirtyQueue queue = getQueue(document, false);
+		return queue != null && queue.version > commitVersion ? queue.version
+				: commitVersion;
+	}
+
+	/**
+	 * Increases the version of the given document, invalidating values of
+	 * this document that are versioned through {@link #getVersion(Object)}.
+	 * 
+	 * @jshide
+	 */
+	public static void increaseVersion(Document document) {
+		getQueue(document, true).version = ++version;
+	}
+
+	/**
+	 * Commits the remaining changes of a document and forgets about it. Called
+	 * when the document is closed.
+	 * 
+	 * @jshide
+	 */
+	public static void release(Document document) {
+		DirtyQueue queue = getQueue(document, false);
+		if (queue != null) {
+			queue.commit(true);
+			documentQueues.remove(queue);
+		}
+	}
+
+	/**
+	 * Returns the amount of objects committed since the statistics were
+	 * last reset.
+	 * 
+	 * @jshide
 	 */
-	static class CommittableMap {
-		// A linked map of committables identified by the identity hash of their
-		// key object. If there is more than one committable per key, a
-		// CommittableGroup is created under the key
-		LinkedHashMap<Integer, Committable> committables =
-				new LinkedHashMap<Integer, Committable>();
-		// Keep track of values that have been added already, identified by
-		// their own identity hash. Committables that are grouped are still kept
-		// in one list here too.
-		LinkedHashMap<Integer, Committable> values =
-				new LinkedHashMap<Integer, Committable>();
+	public static int getCommitCount() {
+		return commitCount;
+	}
+
+	/**
+	 * Returns the amount of committed segments since the statistics were
+	 * last reset.
+	 * 
+	 * @jshide
+	 */
+	public static int getSegmentCount() {
+		return segmentCount;
+	}
+
+	/**
+	 * Returns the amount of native calls that were needed to write the
+	 * committed segments. Segments with consecutive indices in the same path
+	 * are written in one call, so the lower this is compared to
+	 * {@link #getSegmentCount()}, the better the commits were coalesced.
+	 * 
+	 * @jshide
+	 */
+	public static int getSegmentCallCount() {
+		return segmentCallCount;
+	}
+
+	/**
+	 * @jshide
+	 */
+	public static void resetStatistics() {
+		commitCount = 0;
+		segmentCount = 0;
+		segmentCallCount = 0;
+	}
+
+	/**
+	 * The changes of one document: An insertion ordered map from keys to the
+	 * committables marked dirty under them, with keys compared by identity.
+	 * Each committable is only queued once, regardless of its key.
+	 */
+	static class DirtyQueue {
+		Document document;
+		int version = 0;
+		// The entries in the order they were added. Removed entries leave a
+		// null behind, until the entries are compacted.
+		Entry[] entries = new Entry[16];
+		int count = 0;
+		int size = 0;
+		// Key to entry, and committable to committable
+		IdentityTable<Entry> keys = new IdentityTable<Entry>();
+		IdentityTable<Committable> committables =
+				new IdentityTable<Committable>();
+
+		DirtyQueue(Document document) {
+			this.document = document;
+		}
+
+		Entry get(Object key) {
+			return keys.get(key);
+		}
+
+		void put(Object key, Committable committable) {
+			if (committables.get(committable) != null)
+				return;
+			committables.put(committable, committable);
+			Entry entry = keys.get(key);
+			if (entry != null) {
+				entry.add(committable);
+			} else {
+				if (count == entries.length) {
+					if (size < count / 2) {
+						compact();
+					} else {
+						Entry[] grown = new Entry[count * 2];
+						System.arraycopy(entries, 0, grown, 0, count);
+						entries = grown;
+					}
+				}
+				entry = new Entry(committable, count);
+				entries[count++] = entry;
+				keys.put(key, entry);
+				size++;
+			}
+		}
+
+		void remove(Object key) {
+			Entry entry = keys.remove(key);
+			if (entry != null) {
+				entries[entry.position] = null;
+				committables.remove(entry.committable);
+				if (entry.more != null) {
+					for (int i = 0, l = entry.more.size(); i < l; i++)
+						committables.remove(entry.more.get(i));
+				}
+				size--;
+			}
+		}
 
 		/**
-		 * A helper class that's needed when there are more than on object for
-		 * one key. It forwards calls to commit() It actually uses a map so that
-		 * every object can only be added once in order to void more than one
-		 * call to commit at a time
-		 * 
-		 * Use a LinkedHashMap in order to preserve sequence of commits
+		 * Commits all entries in the order they were added and clears the
+		 * queue.
 		 */
-		static class CommittableGroup implements Committable {
-			LinkedHashMap<Integer, Committable> committables = new LinkedHashMap<Integer, Committable>();
+		boolean commit(boolean endExecution) {
+			if (size == 0)
+				return false;
+			// Take the entries out first, so committables that are marked
+			// dirty while committing are queued anew.
+			Entry[] entries = this.entries;
+			int count = this.count;
+			this.entries = new Entry[16];
+			this.count = 0;
+			size = 0;
+			if (entries.length > 1024) {
+				// Do not hold on to large tables after big commits
+				keys = new IdentityTable<Entry>();
+				committables = new IdentityTable<Committable>();
+			} else {
+				keys.clear();
+				committables.clear();
+			}
+			for (int i = 0; i < count; i++) {
+				Entry entry = entries[i];
+				if (entry != null)
+					entry.commit(endExecution);
+			}
+			return true;
+		}
 
-			public void commit(boolean endExecution) {
-				for (Committable committable : committables.values())
-					committable.commit(endExecution);
+		private void compact() {
+			int j = 0;
+			for (int i = 0; i < count; i++) {
+				Entry entry = entries[i];
+				if (entry != null) {
+					entry.position = j;
+					entries[j++] = entry;
+				}
 			}
+			for (int i = j; i < count; i++)
+				entries[i] = null;
+			count = j;
+		}
 
-			public void add(Committable obj) {
-				committables.put(System.identityHashCode(obj), obj);
+		/**
+		 * The committables of one key. Usually there is only one, further
+		 * ones are kept in more.
+		 */
+		static class Entry {
+			Committable committable;
+			ArrayList<Committable> more;
+			int position;
+
+			Entry(Committable committable, int position) {
+				this.committable = committable;
+				this.position = position;
 			}
 
-			public Collection<Committable> values() {
-				return committables.values();
+			void add(Committable committable) {
+				if (more == null)
+					more = new ArrayList<Committable>();
+				more.add(committable);
 			}
-		}
 
-		public Committable put(Object key, Committable obj) {
-			int valueHash = System.identityHashCode(obj);
-			if (values.containsKey(valueHash))
-				return null;
-			values.put(valueHash, obj);
-			int keyHash = System.identityHashCode(key);
-			Committable prev = committables.get(keyHash);
-			if (prev != null) {
-				if (prev instanceof CommittableGroup) {
-					// Add to existing group
-					((CommittableGroup) prev).add(obj);
-					return prev;
+			void commit(boolean endExecution) {
+				if (more == null) {
+					committable.commit(endExecution);
+					if (committable instanceof Segment) {
+						segmentCount++;
+						segmentCallCount++;
+					}
+					commitCount++;
+					return;
+				}
+				// Segments are collected and committed together at the end,
+				// so neighboring ones can be written in one go.
+				ArrayList<Segment> segments = null;
+				for (int i = -1, l = more.size(); i < l; i++) {
+					Committable committable = i == -1 ? this.committable
+							: more.get(i);
+					if (committable instanceof Segment) {
+						if (segments == null)
+							segments = new ArrayList<Segment>();
+						segments.add((Segment) committable);
+					} else {
+						committable.commit(endExecution);
+					}
+					commitCount++;
+				}
+				if (segments != null) {
+					segmentCount += segments.size();
+					segmentCallCount += SegmentList.commit(
+							segments.toArray(new Segment[segments.size()]),
+							endExecution);
 				}
-				// Create a new group, add both, and put back
-				CommittableGroup list = new CommittableGroup();
-				list.add(prev);
-				list.add(obj);
-				return committables.put(keyHash, list);
 			}
-			// Simply add this object
-			return committables.put(keyHash, obj);
 		}
+	}
 
-		public Committable get(Object key) {
-			return committables.get(System.identityHashCode(key));
+	/**
+	 * A hash table with open addressing and linear probing that compares its
+	 * keys by identity. Unlike IdentityHashMap in combination with a list for
+	 * the order, removal does not need to search, and no objects are created
+	 * per entry.
+	 */
+	static class IdentityTable<V> {
+		private Object[] keys = new Object[16];
+		private Object[] values = new Object[16];
+		private int size = 0;
+
+		private static int hash(Object key, int mask) {
+			int h = System.identityHashCode(key);
+			// Spread the bits, identity hashes of objects created in a row
+			// tend to be close to each other.
+			h ^= h >>> 16;
+			h *= 0x85ebca6b;
+			h ^= h >>> 13;
+			return h & mask;
 		}
 
-		public Collection<Committable> values() {
-			return committables.values();
+		@SuppressWarnings("unchecked")
+		V get(Object key) {
+			int mask = keys.length - 1;
+			for (int i = hash(key, mask); keys[i] != null; i = (i + 1) & mask) {
+				if (keys[i] == key)
+					return (V) values[i];
+			}
+			return null;
+		}
+
+		void put(Object key, V value) {
+			int mask = keys.length - 1;
+			int i = hash(key, mask);
+			while (keys[i] != null) {
+				if (keys[i] == key) {
+					values[i] = value;
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = value;
+			// Keep the table at most half full
+			if (++size * 2 > keys.length)
+				resize(keys.length * 2);
 		}
 
-		public int size() {
-			return committables.size();
+		@SuppressWarnings("unchecked")
+		V remove(Object key) {
+			int mask = keys.length - 1;
+			int i = hash(key, mask);
+			while (keys[i] != key) {
+				if (keys[i] == null)
+					return null;
+				i = (i + 1) & mask;
+			}
+			V value = (V) values[i];
+			keys[i] = null;
+			values[i] = null;
+			size--;
+			// Move following entries of the same run back into the gap, so
+			// lookups do not stop early.
+			for (int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+				int h = hash(keys[j], mask);
+				// Move the entry if its home slot is not in (i, j]
+				if (i <= j ? h <= i || h > j : h <= i && h > j) {
+					keys[i] = keys[j];
+					values[i] = values[j];
+					keys[j] = null;
+					values[j] = null;
+					i = j;
+				}
+			}
+			return value;
 		}
 
-		public Committable remove(Object key) {
-			int keyHash = System.identityHashCode(key);
-			Committable obj = committables.remove(keyHash);
-			if (obj instanceof CommittableGroup) {
-				for (Committable committable : ((CommittableGroup) obj).values()) {
-					values.remove(System.identityHashCode(committable));
+		void clear() {
+			if (size > 0) {
+				for (int i = 0; i < keys.length; i++) {
+					keys[i] = null;
+					values[i] = null;
 				}
-			} else {
-				values.remove(System.identityHashCode(obj));
+				size = 0;
 			}
-			return obj;
 		}
 
-		public void clear() {
-			committables.clear();
-			values.clear();
+		private void resize(int length) {
+			Object[] oldKeys = keys, oldValues = values;
+			keys = new Object[length];
+			values = new Object[length];
+			int mask = length - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				Object key = oldKeys[i];
+				if (key != null) {
+					int j = hash(key, mask);
+					while (keys[j] != null)
+						j = (j + 1) & mask;
+					keys[j] = key;
+					values[j] = oldValues[i];
+				}
+			}
 		}
 	}
 }
@@ -26,6 +26,9 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Stack;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.prefs.Preferences;
 
 import com.scratchdisk.script.Callable;
@@ -33,16 +36,23 @@ import com.scratchdisk.script.Scope;
 import com.scratchdisk.script.ScriptCanceledException;
 import com.scratchdisk.script.ScriptEngine;
 import com.scratchdisk.script.ScriptException;
+import com.scratchdisk.script.rhino.RhinoEngine;
+import com.scratchdisk.script.rhino.RhinoProfiler;
 import com.scratchdisk.util.ClassUtils;
 import com.scratchdisk.util.ConversionUtils;
 import com.scriptographer.adm.Dialog;
 import com.scriptographer.ai.Annotator;
+import com.scriptographer.ai.Curve;
 import com.scriptographer.ai.Dictionary;
 import com.scriptographer.ai.Document;
+import com.scriptographer.ai.DocumentObject;
 import com.scriptographer.ai.LiveEffect;
+import com.scriptographer.ai.Segment;
 import com.scriptographer.ai.Timer;
 import com.scriptographer.sg.AngleUnits;
 import com.scriptographer.sg.CoordinateSystem;
+import com.scriptographer.sg.ExecutionBudget;
+import com.scriptographer.sg.ExecutionStatistics;
 import com.scriptographer.sg.Script;
 import com.scriptographer.ui.KeyIdentifier;
 import com.scriptographer.ui.KeyEvent;
@@ -61,6 +71,7 @@ public class ScriptographerEngine {
 	private static Thread mainThread;
 
 	private static HashMap<String, ArrayList<Scope>> callbackScopes;
+	private static RhinoProfiler profiler = null;
 
 	/*
 	 * Create a NumberFormat object to be used wherever numbers are printed to
@@ -135,6 +146,23 @@ public class ScriptographerEngine {
 		// Loader, so getting the ClassLoader from there is save:
 		Thread.currentThread().setContextClassLoader(
 				ScriptographerEngine.class.getClassLoader());
+		// Start the sampling profiler if it was not already turned on through
+		// the rhino.profile property, but through the preferences.
+		ScriptEngine engine = ScriptEngine.getEngineByName("JavaScript");
+		if (engine instanceof RhinoEngine) {
+			RhinoEngine rhino = (RhinoEngine) engine;
+			Preferences prefs = getPreferences(null);
+			if (rhino.getProfiler() == null
+					&& prefs.getBoolean("profile", false)) {
+				try {
+					rhino.startProfiler(new File(pluginDir, "profile.txt"),
+							prefs.getInt("profileInterval", 10));
+				} catch (IOException e) {
+					reportError(e);
+				}
+			}
+			profiler = rhino.getProfiler();
+		}
 		// Compile all core init scripts
 		callbackScopes = new HashMap<String, ArrayList<Scope>>();
 		coreDir = new File(new File(pluginDir, "Core"), "JavaScript");
@@ -143,6 +171,12 @@ public class ScriptographerEngine {
 			loadLibraries(new File(coreDir, "lib"));
 			compileInitScripts(coreDir);
 		}
+		// Report the time spent on exposing classes to the core scripts,
+		// if asked for through the rhino.timing property.
+		if (System.getProperty("rhino.timing") != null) {
+			if (engine instanceof RhinoEngine)
+				((RhinoEngine) engine).printClassTimings(System.out);
+		}
 	}
 
 	public static void destroy() {
@@ -153,6 +187,17 @@ public class ScriptographerEngine {
 		LiveEffect.removeAll();
 		MenuItem.removeAll();
 		Annotator.disposeAll();
+		if (profiler != null) {
+			ScriptEngine engine = ScriptEngine.getEngineByName("JavaScript");
+			if (engine instanceof RhinoEngine) {
+				try {
+					((RhinoEngine) engine).stopProfiler();
+				} catch (IOException e) {
+					reportError(e);
+				}
+			}
+			profiler = null;
+		}
 		try {
 			// This is needed on some versions on Mac CS (CFM?)
 			// as the JVM seems to not shoot down properly, and the
@@ -511,6 +556,20 @@ public class ScriptographerEngine {
 	 * changes after execution.
 	 */
 	public static Object invoke(Callable callable, Object obj, Object... args) {
+		return invokeHandler(callable, null, null, obj, args);
+	}
+
+	/**
+	 * Invokes the event handler like {@link #invoke}, canceling it when it
+	 * exceeds the budget, and adding the call to the statistics.
+	 * 
+	 * @param budget the budget of the handler, or null to use the one of the
+	 *        script that defines it
+	 * @param statistics the statistics to add the call to, or null
+	 */
+	public static Object invokeHandler(Callable callable,
+			ExecutionBudget budget, ExecutionStatistics statistics,
+			Object obj, Object... args) {
 		lastError = null;
 		Scope scope;
 		if (obj instanceof Scope) {
@@ -520,6 +579,9 @@ public class ScriptographerEngine {
 			scope = callable.getScope();
 		}
 		beginExecution(null, scope);
+		BudgetFrame frame = beginBudget(budget, statistics);
+		if (profiler != null)
+			profiler.begin();
 		// Retrieve wrapper object for the native java object, and
 		// call the function on it.
 		Throwable throwable = null;
@@ -531,12 +593,214 @@ public class ScriptographerEngine {
 			// Commit all changed objects after a scripting function
 			// has been called!
 			endExecution();
+			endBudget(frame);
+			if (profiler != null)
+				profiler.end();
 		}
 		if (throwable != null)
 			handleException(throwable, null);
 		return null;
 	}
 
+	/**
+	 * The budget and statistics of one execution or invocation in the call
+	 * stack. As instructions are only observed on the main thread, so are the
+	 * frames.
+	 */
+	private static class BudgetFrame {
+		BudgetFrame parent;
+		ExecutionBudget budget;
+		Script script;
+		ExecutionStatistics statistics;
+		long startTime;
+		long instructions;
+		int commitCount;
+		boolean exceeded;
+
+		/**
+		 * Returns the budget passed for the frame, or otherwise the one of the
+		 * script. The latter is read each time, as the script may only set it
+		 * while it is executed.
+		 */
+		ExecutionBudget getBudget() {
+			if (budget != null)
+				return budget;
+			return script != null ? script.getBudget() : null;
+		}
+	}
+
+	private static BudgetFrame budgetFrame = null;
+
+	private static BudgetFrame beginBudget(ExecutionBudget budget,
+			ExecutionStatistics statistics) {
+		if (!isMainThreadActive())
+			return null;
+		BudgetFrame frame = new BudgetFrame();
+		frame.parent = budgetFrame;
+		frame.budget = budget;
+		frame.script = getCurrentScript();
+		frame.statistics = statistics;
+		frame.commitCount = CommitManager.getCommitCount();
+		frame.startTime = System.nanoTime();
+		budgetFrame = frame;
+		return frame;
+	}
+
+	private static void endBudget(BudgetFrame frame) {
+		if (frame != null) {
+			budgetFrame = frame.parent;
+			// endExecution has committed by now, so the commits triggered by
+			// the call are included.
+			if (frame.statistics != null)
+				frame.statistics.add(frame.instructions,
+						System.nanoTime() - frame.startTime,
+						CommitManager.getCommitCount() - frame.commitCount,
+						frame.exceeded);
+		}
+	}
+
+	/**
+	 * Called by the engine every time it observes a batch of instructions,
+	 * cancels the innermost execution whose budget is exceeded.
+	 * 
+	 * @jshide
+	 */
+	public static void observeInstructions(int count) {
+		if (budgetFrame == null || !isMainThreadActive())
+			return;
+		long time = System.nanoTime();
+		for (BudgetFrame frame = budgetFrame; frame != null;
+				frame = frame.parent) {
+			frame.instructions += count;
+			ExecutionBudget budget = frame.getBudget();
+			if (budget != null && !frame.exceeded
+					&& budget.isExceeded(frame.instructions,
+							(time - frame.startTime) / 1000000)) {
+				frame.exceeded = true;
+				throw new ScriptCanceledException("Execution budget "
+						+ budget + " exceeded after "
+						+ frame.instructions + " instructions, "
+						+ (time - frame.startTime) / 1000000 + " ms");
+			}
+		}
+	}
+
+	private static ArrayList<BackgroundTask> backgroundTasks =
+			new ArrayList<BackgroundTask>();
+	private static BackgroundTimer backgroundTimer = null;
+
+	/**
+	 * Calls the callable on one of the worker threads of the script engine,
+	 * and then invokes onComplete with its result on the main thread, where
+	 * it may change documents.
+	 * 
+	 * The callable runs concurrently with the main thread and should only
+	 * perform computations, as the native API may only be used on the main
+	 * thread. Errors are reported on the main thread too.
+	 * 
+	 * @param callable the function to call on a worker thread
+	 * @param onComplete the function to receive the result, or null
+	 * @param args the arguments to pass to callable
+	 * @return the future result of callable
+	 */
+	public static Future<Object> invokeInBackground(Callable callable,
+			Callable onComplete, Object... args) {
+		if (!isMainThreadActive())
+			throw new ScriptographerException(
+					"invokeInBackground() can only be called from the main thread.");
+		// Objects backed by Illustrator cannot be used on the worker thread.
+		// Objects reached through the callable's scope are caught once they
+		// call into Illustrator, see #checkMainThread().
+		for (Object arg : args) {
+			if (arg instanceof DocumentObject || arg instanceof Document
+					|| arg instanceof Segment || arg instanceof Curve)
+				throw new ScriptographerException(
+						"invokeInBackground() cannot pass documents or items "
+						+ "to the background function, only values.");
+		}
+		ScriptEngine engine = ScriptEngine.getEngineByName("JavaScript");
+		if (!(engine instanceof RhinoEngine))
+			throw new ScriptographerException(
+					"Background execution is not supported.");
+		Scope scope = callable.getScope();
+		Future<Object> future = ((RhinoEngine) engine).submit(callable,
+				scope.getScope(), args);
+		backgroundTasks.add(new BackgroundTask(future, onComplete, scope));
+		// The native timer used for polling can only be created here, on the
+		// main thread.
+		if (backgroundTimer == null)
+			backgroundTimer = new BackgroundTimer();
+		return future;
+	}
+
+	private static class BackgroundTask {
+		Future<Object> future;
+		Callable onComplete;
+		Scope scope;
+
+		BackgroundTask(Future<Object> future, Callable onComplete,
+				Scope scope) {
+			this.future = future;
+			this.onComplete = onComplete;
+			this.scope = scope;
+		}
+	}
+
+	/**
+	 * Polls the background tasks on the main thread and hands their results
+	 * to their onComplete callbacks, as long as there are tasks running.
+	 */
+	private static class BackgroundTimer extends Timer {
+		BackgroundTimer() {
+			super(10, true);
+		}
+
+		protected boolean onExecute() {
+			boolean changed = false;
+			// Invoking callbacks may add new tasks, so collect done tasks
+			// first.
+			ArrayList<BackgroundTask> done = new ArrayList<BackgroundTask>();
+			for (int i = backgroundTasks.size() - 1; i >= 0; i--) {
+				BackgroundTask task = backgroundTasks.get(i);
+				if (task.future.isDone()) {
+					backgroundTasks.remove(i);
+					done.add(0, task);
+				}
+			}
+			for (BackgroundTask task : done) {
+				try {
+					Object result = task.future.get();
+					if (task.onComplete != null) {
+						invoke(task.onComplete, task.scope, result);
+						changed = true;
+					}
+				} catch (ExecutionException e) {
+					handleException(e.getCause(), null);
+				} catch (CancellationException e) {
+				} catch (InterruptedException e) {
+				}
+			}
+			if (backgroundTasks.isEmpty())
+				abort();
+			return changed;
+		}
+
+		protected boolean canAbort(boolean ignoreKeepAlive) {
+			// Keep polling when other scripts are started, but not when all
+			// scripts are stopped.
+			return ignoreKeepAlive;
+		}
+
+		public void abort() {
+			for (BackgroundTask task : backgroundTasks)
+				task.future.cancel(true);
+			backgroundTasks.clear();
+			if (backgroundTimer == this)
+				backgroundTimer = null;
+			super.abort();
+		}
+	}
+
 	/**
 	 * Compiles the script file and throws errors if it cannot be compiled.
 	 * 
@@ -581,10 +845,14 @@ public class ScriptographerEngine {
 		lastError = null;
 		Object ret = null;
 		Throwable throwable = null;
+		BudgetFrame frame = null;
 		try {
 			if (scope == null)
 				scope = script.getEngine().createScope();
+			if (profiler != null)
+				profiler.begin();
 			beginExecution(file, scope);
+			frame = beginBudget(null, null);
 			ret = script.execute(scope);
 			addCallbacks(scope, file);
 		} catch (Throwable t) {
@@ -593,6 +861,14 @@ public class ScriptographerEngine {
 			// Commit all the changes, even when script has caused an error, to
 			// sync with direct changes such as creation of paths, etc.
 			endExecution();
+			endBudget(frame);
+			if (profiler != null) {
+				profiler.end();
+				// Write the samples taken so far after each script, so they
+				// can be looked at without quitting Illustrator.
+				if (scriptStack.empty())
+					writeProfile();
+			}
 		}
 		if (throwable != null)
 			handleException(throwable, file);
@@ -610,13 +886,23 @@ public class ScriptographerEngine {
 		if (throwable instanceof ScriptException) {
 			ScriptographerEngine.reportError(throwable);
 		} else if (throwable instanceof ScriptCanceledException) {
-			logConsole(file != null ? file.getName() + " canceled"
-					: "Execution canceled");
+			String message = throwable.getMessage();
+			logConsole((file != null ? file.getName() + " canceled"
+					: "Execution canceled")
+					+ (message != null ? ": " + message : ""));
 		}
 		lastError = throwable;
 		allowScriptCancelation = true;
 	}
 
+	private static void writeProfile() {
+		try {
+			profiler.write();
+		} catch (IOException e) {
+			reportError(e);
+		}
+	}
+
 	public static Throwable getLastError() {
 		return lastError;
 	}
@@ -813,6 +1099,23 @@ public class ScriptographerEngine {
 		return Thread.currentThread().equals(mainThread);
 	}
 
+	/**
+	 * Throws an exception when called on a thread other than the main thread,
+	 * such as the worker threads of the script engine. Documents and their
+	 * items can only be accessed from the main thread. This is checked where
+	 * native objects are looked up, both in Java and in the native code that
+	 * reads the handles of wrappers, and where changes are queued in the
+	 * CommitManager.
+	 * 
+	 * @jshide
+	 */
+	public static void checkMainThread() {
+		if (mainThread != null && !isMainThreadActive())
+			throw new ScriptographerException(
+					"Documents and items can only be accessed from the main "
+					+ "thread, not from " + Thread.currentThread().getName());
+	}
+
 	public static native void dispatchNextEvent();
 
 	private static final boolean isWindows, isMacintosh;
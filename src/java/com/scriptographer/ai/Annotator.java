@@ -20,7 +20,7 @@ import com.scriptographer.ScriptographerEngine;
 import com.scriptographer.ScriptographerException;
 import com.scratchdisk.script.Callable;
 import com.scratchdisk.util.IntMap;
-import com.scratchdisk.util.SoftIntMap;
+import com.scratchdisk.util.SoftIntHashMap;
 import com.scriptographer.adm.Drawer;
 
 /**
@@ -34,7 +34,7 @@ public class Annotator extends NativeObject {
 	private static IntMap<Annotator> annotators = new IntMap<Annotator>();
 	private static ArrayList<Annotator> unusedAnnotators = null;
 	// this is list of drawers that map viewports to created ADM Drawer objects:
-	private static SoftIntMap<Drawer> drawers = new SoftIntMap<Drawer>();
+	private static SoftIntHashMap<Drawer> drawers = new SoftIntHashMap<Drawer>();
 	private static int counter = 0;
 	
 	public Annotator() {
@@ -15,6 +15,7 @@
 package com.scriptographer.ai;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import com.scratchdisk.script.ArgumentReader;
 import com.scratchdisk.script.ChangeReceiver;
@@ -124,6 +125,7 @@ public class Curve implements ChangeReceiver {
 			// Make sure the segments are up to date first. The size might have
 			// changed in the meantime.
 			segments.update();
+			segments.updateIndices();
 			index2 = index1 + 1;
 			// A closing curve?
 			if (index2 >= segments.size())
@@ -133,12 +135,12 @@ public class Curve implements ChangeReceiver {
 			// path was updated or the segments even moved to another path.
 			// Fetch again if they were:
 
-			if (segment1 == null || segment1.index != index1 ||
+			if (segment1 == null || segment1.getIndex() != index1 ||
 					segments != segment1.segments || segments.path != null &&
 					segments.path.needsUpdate(segment1.version))
 				segment1 = segments.get(index1);
 
-			if (segment2 == null || segment2.index != index2 ||
+			if (segment2 == null || segment2.getIndex() != index2 ||
 					segments != segment2.segments || segments.path != null &&
 					segments.path.needsUpdate(segment2.version))
 				segment2 = segments.get(index2);
@@ -154,6 +156,9 @@ public class Curve implements ChangeReceiver {
 	 * The index of the curve in the {@link Path#getCurves()} array.
 	 */
 	public int getIndex() {
+		// Indices are updated lazily after structural changes of the list
+		if (segments != null)
+			segments.updateIndices();
 		return index1;
 	}
 
@@ -267,8 +272,9 @@ public class Curve implements ChangeReceiver {
 	 */
 	public Curve getNext() {
 		if (segments != null) {
-			if (index1 + 1 < segments.size()) {
-				Curve next = segments.get(index1 + 1).getCurve();
+			int index = getIndex();
+			if (index + 1 < segments.size()) {
+				Curve next = segments.get(index + 1).getCurve();
 				if (next != this)
 					return next;
 			} else {
@@ -284,8 +290,9 @@ public class Curve implements ChangeReceiver {
 	 */
 	public Curve getPrevious() {
 		if (segments != null) {
-			if (index1 > 0) {
-				Curve prev = segments.get(index1 - 1).getCurve();
+			int index = getIndex();
+			if (index > 0) {
+				Curve prev = segments.get(index - 1).getCurve();
 				if (prev != this)
 					return prev;
 			} else {
@@ -305,31 +312,17 @@ public class Curve implements ChangeReceiver {
 		return this.getHandle1().isSelected() && this.getHandle2().isSelected();
 	}
 
-	private static native double nativeGetLength(double p1x, double p1y,
-			double h1x, double h1y, double h2x, double h2y, double p2x,
-			double p2y);
-
 	/**
-	 * The approximated length of the curve in points.
+	 * The length of the curve in points.
 	 */
 	public double getLength() {
 		updateSegments();
-		Point point1 = segment1.point;
-		Point handle1 = segment1.handleOut;
-		Point handle2 = segment2.handleIn;
-		Point point2 = segment2.point;
-		return nativeGetLength(
-				point1.x, point1.y,
-				handle1.x + point1.x, handle1.y + point1.y,
-				handle2.x + point2.x, handle2.y + point2.y,
-				point2.x, point2.y
-		);
+		return getLength(getCurveValues());
 	}
 
 	public double getLength(double from, double to) {
 		updateSegments();
-		double[][] curve = getCurveValues();
-		return getLength(curve, from, to, curve);
+		return getLength(getCurveValues(), from, to);
 	}
 
 	/**
@@ -344,39 +337,77 @@ public class Curve implements ChangeReceiver {
 		return getControlBounds(getCurveValues());
 	}
 
-	// Ported back from Paper.js in 2014
+	/**
+	 * The tight bounding rectangle of the curve, as opposed to
+	 * {@link #getControlBounds()} which also includes the handles.
+	 */
+	public Rectangle getBounds() {
+		updateSegments();
+		double[] bounds = {
+			Double.MAX_VALUE, Double.MAX_VALUE,
+			-Double.MAX_VALUE, -Double.MAX_VALUE
+		};
+		getBounds(getCurveValues(), 0, bounds);
+		return new Rectangle(bounds[0], bounds[1],
+				bounds[2] - bounds[0], bounds[3] - bounds[1]);
+	}
+
 	private Point evaluate(double t, int type) {
 		updateSegments();
-		Point point1 = segment1.point;
-		Point handle1 = segment1.handleOut;
-		Point handle2 = segment2.handleIn;
-		Point point2 = segment2.point;
-		double p1x = point1.x,
-			p1y = point1.y,
-			c1x = p1x + handle1.x,
-			c1y = p1y + handle1.y,
-			p2x = point2.x,
-			p2y = point2.y,
-			c2x = p2x + handle2.x,
-			c2y = p2y + handle2.y,
-			tolerance = 10e-6,
-			x, y;
-
-		// Handle special case at beginning / end of curve
-		if (type == 0 && (t < tolerance || t > 1 - tolerance)) {
-			boolean isZero = t < tolerance;
-			x = isZero ? p1x : p2x;
-			y = isZero ? p1y : p2y;
-		} else {
-			// Calculate the polynomial coefficients.
-			double cx = 3.0 * (c1x - p1x),
-				bx = 3.0 * (c2x - c1x) - cx,
-				ax = p2x - p1x - cx - bx,
-
-				cy = 3.0 * (c1y - p1y),
-				by = 3.0 * (c2y - c1y) - cy,
-				ay = p2y - p1y - cy - by;
-			if (type == 0) {
+		double[] values = getCurveValues();
+		// Use the curve values for the result too, they are not needed after
+		// the coefficients were calculated.
+		evaluate(values, 0, new double[] { t }, 0, 1, type, values, 0);
+		return new Point(values[0], values[1]);
+	}
+
+	/**
+	 * Evaluates the curve at each of the parameters, and writes the
+	 * coordinates of the resulting points (type 0), tangents (1), normals (2)
+	 * or curvatures (3, as x with a y of 0) into out, two values per
+	 * parameter. This is much cheaper than individual calls to
+	 * {@link #getPoint(double)} and friends, since the curve is only read
+	 * once and no objects are created.
+	 */
+	public void evaluate(double[] params, double[] out, int type) {
+		updateSegments();
+		evaluate(getCurveValues(), 0, params, 0, params.length, type, out, 0);
+	}
+
+	/**
+	 * Evaluates the curve described by the values at offset at count
+	 * parameters, using the polynomial coefficients of the curve, which are
+	 * only calculated once. The curve values are read before any results are
+	 * written, so out may be the same array as v.
+	 */
+	protected static void evaluate(double[] v, int offset, double[] params,
+			int paramsOffset, int count, int type, double[] out,
+			int outOffset) {
+		double p1x = v[offset],
+			p1y = v[offset + 1],
+			c1x = v[offset + 2],
+			c1y = v[offset + 3],
+			c2x = v[offset + 4],
+			c2y = v[offset + 5],
+			p2x = v[offset + 6],
+			p2y = v[offset + 7],
+			tolerance = 10e-6;
+		// Calculate the polynomial coefficients.
+		double cx = 3.0 * (c1x - p1x),
+			bx = 3.0 * (c2x - c1x) - cx,
+			ax = p2x - p1x - cx - bx,
+
+			cy = 3.0 * (c1y - p1y),
+			by = 3.0 * (c2y - c1y) - cy,
+			ay = p2y - p1y - cy - by;
+		for (int i = 0; i < count; i++) {
+			double t = params[paramsOffset + i], x, y;
+			// Handle special case at beginning / end of curve
+			if (type == 0 && (t < tolerance || t > 1 - tolerance)) {
+				boolean isZero = t < tolerance;
+				x = isZero ? p1x : p2x;
+				y = isZero ? p1y : p2y;
+			} else if (type == 0) {
 				// Calculate the curve point at parameter value t
 				x = ((ax * t + bx) * t + cx) * t + p1x;
 				y = ((ay * t + by) * t + cy) * t + p1y;
@@ -397,8 +428,8 @@ public class Curve implements ChangeReceiver {
 					x = 3.0 * (p2x - c2x);
 					y = 3.0* (p2y - c2y);
 				} else {
-					// Simply use the derivation of the bezier function for both
-					// the x and y coordinates:
+					// Simply use the derivation of the bezier function for
+					// both the x and y coordinates:
 					x = (3.0 * ax * t + 2.0 * bx) * t + cx;
 					y = (3.0 * ay * t + 2.0 * by) * t + cy;
 				}
@@ -408,14 +439,82 @@ public class Curve implements ChangeReceiver {
 					// k = |dx * d2y - dy * d2x| / (( dx^2 + dy^2 )^(3/2))
 					double x2 = 6.0 * ax * t + 2.0 * bx,
 						y2 = 6.0 * ay * t + 2.0 * by;
-					// Return curvature as point with x value = curvature...
-					return new Point((x * y2 - y * x2)
-							/ Math.pow(x * x + y * y, 3.0 / 2.0), 0);
+					// Return curvature as x value
+					x = (x * y2 - y * x2) / Math.pow(x * x + y * y, 3.0 / 2.0);
+					y = 0;
+				} else if (type == 2) {
+					// The normal is simply the rotated tangent:
+					double tmp = x;
+					x = y;
+					y = -tmp;
 				}
 			}
+			int j = outOffset + i * 2;
+			out[j] = x;
+			out[j + 1] = y;
 		}
-		// The normal is simply the rotated tangent:
-		return type == 2 ? new Point(y, -x) : new Point(x, y);
+	}
+
+	private static final int SAMPLE_ITERATIONS = 5;
+
+	/**
+	 * Samples points on the curve described by v at equal distances along
+	 * the curve, starting at the given distance from its beginning, and
+	 * writes their coordinates into out from index on, up to max points.
+	 * Each parameter is found by Newton iteration on the length from the
+	 * previous sample, which is very short, so the integration is cheap.
+	 * 
+	 * @param ds the integrand to reuse, set to the curve's derivative
+	 * @return the number of points written
+	 */
+	protected static int sample(double[] v, double start, double spacing,
+			double length, LengthIntegrand ds, double[] out, int index,
+			int max) {
+		ds.set(v);
+		double cx = 3.0 * (v[2] - v[0]),
+			bx = 3.0 * (v[4] - v[2]) - cx,
+			ax = v[6] - v[0] - cx - bx,
+			cy = 3.0 * (v[3] - v[1]),
+			by = 3.0 * (v[5] - v[3]) - cy,
+			ay = v[7] - v[1] - cy - by;
+		int count = 0;
+		double t = 0, offset = 0;
+		for (double s = start; s <= length + Numerical.TOLERANCE
+				&& count < max; s += spacing) {
+			double distance = s - offset;
+			if (distance > 0) {
+				// Newton iteration for the length from t to the next parameter.
+				double from = t, speed = ds.evaluate(from);
+				if (speed < EPSILON) {
+					// The speed vanishes at end points without handles, where
+					// a Newton step would overshoot. Solve for the length
+					// from the beginning of the curve instead.
+					t = getParameter(v, s);
+				} else {
+					t = Math.min(from + distance / speed, 1);
+					for (int i = 0; i < 16; i++) {
+						double f = Numerical.integrate(ds, from, t,
+								Math.max(SAMPLE_ITERATIONS,
+										getIterations(from, t)))
+								- distance;
+						if (Math.abs(f) < Numerical.TOLERANCE)
+							break;
+						double dt = ds.evaluate(t);
+						if (dt < EPSILON) {
+							t = getParameter(v, s);
+							break;
+						}
+						t = Numerical.clamp(t - f / dt, from, 1);
+					}
+				}
+				offset = s;
+			}
+			int j = index + count * 2;
+			out[j] = ((ax * t + bx) * t + cx) * t + v[0];
+			out[j + 1] = ((ay * t + by) * t + cy) * t + v[1];
+			count++;
+		}
+		return count;
 	}
 
 	/*
@@ -476,9 +575,37 @@ public class Curve implements ChangeReceiver {
 		return param != -1 ? new CurveLocation(this, param, null) : null;
 	}
 
+	/**
+	 * Returns the location on the curve that is nearest to the specified
+	 * point.
+	 * 
+	 * @param point the point for which to find the nearest location
+	 * @return the location on the curve that is nearest to the point
+	 */
+	public CurveLocation getNearestLocation(Point point) {
+		updateSegments();
+		double[] values = getCurveValues();
+		NearestBuffer buffer = new NearestBuffer();
+		double t = getNearestParameter(values, point.x, point.y, buffer);
+		return new CurveLocation(this, t, getPoint(values, 0, t),
+				Math.sqrt(buffer.distance));
+	}
+
+	/**
+	 * Returns the point on the curve that is nearest to the specified point.
+	 * 
+	 * @param point the point for which to find the nearest point
+	 * @return the point on the curve that is nearest to the specified point
+	 */
+	public Point getNearestPoint(Point point) {
+		return getNearestLocation(point).getPoint();
+	}
+
 	public CurveLocation[] getIntersections(Curve other) {
 		ArrayList<CurveLocation> intersections = new ArrayList<CurveLocation>();
-		getIntersections(this, getCurveValues(), other.getCurveValues(),
+		updateSegments();
+		other.updateSegments();
+		getIntersections(this, getCurveValues(), other, other.getCurveValues(),
 				intersections);
 		return intersections.toArray(new CurveLocation[intersections.size()]);
 	}
@@ -517,6 +644,7 @@ public class Curve implements ChangeReceiver {
 			path.checkValid();
 			SegmentList.nativeSet(path.handle, path.document.handle,
 					index1, 2, values);
+			path.clearCurveCache();
 		}
 	}
 
@@ -545,26 +673,24 @@ public class Curve implements ChangeReceiver {
 		if (parameter > 0 && parameter < 1) {
 			updateSegments();
 			
-			double left[][] = getCurveValues();
-			double right[][] = new double[4][];
-			subdivide(left, parameter, left, right);
+			double left[] = getCurveValues();
+			double right[] = new double[8];
+			subdivide(left, 0, parameter, left, 0, right, 0);
 	
 			// Write back the results:
-			segment1.handleOut.set(left[1][0] - left[0][0],
-					left[1][1] - left[0][1]);
+			segment1.handleOut.set(left[2] - left[0], left[3] - left[1]);
 			
 			// segment2 is the end segment. By inserting newSegment
 			// between segment1 and 2, 2 becomes the end segment.
 			// absolute->relative
-			segment2.handleIn.set(right[2][0] - right[3][0],
-					right[2][1] - right[3][1]);
+			segment2.handleIn.set(right[4] - right[6], right[5] - right[7]);
 			
 			// Create the new segment, absolute -> relative:
-			double x = left[3][0];
-			double y = left[3][1];
+			double x = left[6];
+			double y = left[7];
 			Segment newSegment = new Segment(x, y,
-					left[2][0] - x, left[2][1] - y,
-					right[1][0] - x, right[1][1] - y);
+					left[4] - x, left[5] - y,
+					right[2] - x, right[3] - y);
 	
 			// Insert it in the segments list, if needed:
 			if (segments != null) {
@@ -608,7 +734,7 @@ public class Curve implements ChangeReceiver {
 	public Curve split(double parameter) {
 		Path path = getPath();
 		if (path != null) {
-			Path newPath = path.split(index1, parameter);
+			Path newPath = path.split(getIndex(), parameter);
 			return newPath.getCurves().getFirst();
 		} else {
 			return divide(parameter);
@@ -637,235 +763,870 @@ public class Curve implements ChangeReceiver {
 	 * Low Level Math functions for curve subdivision, calculation of roots, etc
 	 */
 
-	protected double[][] getCurveValues() {
+	/**
+	 * Returns the absolute coordinates of the curve's points in a flat array
+	 * of 8 values: point1, handle1, handle2, point2, each as x, y. This is the
+	 * format all the low level functions bellow operate on.
+	 */
+	protected double[] getCurveValues() {
+		double[] values = new double[8];
+		getCurveValues(values, 0);
+		return values;
+	}
+
+	protected void getCurveValues(double[] values, int offset) {
 		Point point1 = segment1.point;
 		Point handle1 = segment1.handleOut;
 		Point handle2 = segment2.handleIn;
 		Point point2 = segment2.point;
-		return new double[][] {
-				{ point1.x, point1.y },
-				{ point1.x + handle1.x, point1.y + handle1.y },
-				{ point2.x + handle2.x, point2.y + handle2.y },
-				{ point2.x, point2.y }
-		};
+		values[offset] = point1.x;
+		values[offset + 1] = point1.y;
+		values[offset + 2] = point1.x + handle1.x;
+		values[offset + 3] = point1.y + handle1.y;
+		values[offset + 4] = point2.x + handle2.x;
+		values[offset + 5] = point2.y + handle2.y;
+		values[offset + 6] = point2.x;
+		values[offset + 7] = point2.y;
 	}
 
 	/**
-	 * Curve subdivision at an arbitrary value for t.
+	 * Curve subdivision at an arbitrary value for t. The curve values are read
+	 * from v at offset, and the results are written into left and right at
+	 * their offsets. Either of them may be null, and they may also point to
+	 * the same memory as v, since all values are read before writing.
 	 */
-	protected static void subdivide(double[][] curve, double t, double[][] left,
-			double[][] right) {
-		double p1x = curve[0][0];
-		double p1y = curve[0][1];
-		double c1x = curve[1][0];
-		double c1y = curve[1][1];
-		double c2x = curve[2][0];
-		double c2y = curve[2][1];
-		double p2x = curve[3][0];
-		double p2y = curve[3][1];
+	protected static void subdivide(double[] v, int offset, double t,
+			double[] left, int leftOffset, double[] right, int rightOffset) {
+		double p1x = v[offset];
+		double p1y = v[offset + 1];
+		double c1x = v[offset + 2];
+		double c1y = v[offset + 3];
+		double c2x = v[offset + 4];
+		double c2y = v[offset + 5];
+		double p2x = v[offset + 6];
+		double p2y = v[offset + 7];
 		
-        // Triangle computation, with loops unrolled.
-        double u = 1 - t,
-            // Interpolate from 4 to 3 points
-            p3x = u * p1x + t * c1x, p3y = u * p1y + t * c1y,
-            p4x = u * c1x + t * c2x, p4y = u * c1y + t * c2y,
-            p5x = u * c2x + t * p2x, p5y = u * c2y + t * p2y,
-            // Interpolate from 3 to 2 points
-            p6x = u * p3x + t * p4x, p6y = u * p3y + t * p4y,
-            p7x = u * p4x + t * p5x, p7y = u * p4y + t * p5y,
-            // Interpolate from 2 points to 1 point
-            p8x = u * p6x + t * p7x, p8y = u * p6y + t * p7y;
-        // We now have all the values we need to build the sub-curves:
-        if (left != null) {
-            left[0] = new double[] { p1x, p1y };
-            left[1] = new double[] { p3x, p3y };
-            left[2] = new double[] { p6x, p6y };
-            left[3] = new double[] { p8x, p8y };
-        }
-        if (right != null) {
-            right[0] = new double[] { p8x, p8y };
-            right[1] = new double[] { p7x, p7y };
-            right[2] = new double[] { p5x, p5y };
-            right[3] = new double[] { p2x, p2y };
-        }
-	}
-
-	protected static double getLength(double curve[][]) {
-		return nativeGetLength(
-				curve[0][0], curve[0][1],
-				curve[1][0], curve[1][1],
-				curve[2][0], curve[2][1],
-				curve[3][0], curve[3][1]
-		);
-	}
-
-	protected static void getIntersections(Curve curve, double[][] curve1,
-			double[][] curve2, ArrayList<CurveLocation> intersections) {
-		boolean debug = false;
-		if (debug) {
-			Path rect = Document.getActiveDocument().createRectangle(
-					getControlBounds(curve1));
-			rect.setStrokeColor(java.awt.Color.green);
-			rect.setStrokeWidth(0.1f);
-
-			rect = Document.getActiveDocument().createRectangle(
-					getControlBounds(curve2));
-			rect.setStrokeColor(java.awt.Color.red);
-			rect.setStrokeWidth(0.1f);
-		}
-		Rectangle bounds1 = getControlBounds(curve1);
-		Rectangle bounds2 = getControlBounds(curve2);
-		// We are not using Rectangle#intersects() here, since in order to
-		// detect intersections that lie on curve bounds, we need to consider
-		// touching on one side of the tested rectangles as intersection as well
-		// If touch is condired at both sides, solutions lying on the border of
-		// bounds would turn up twice.
-		if (bounds1.x + bounds1.width >= bounds2.x
-				&& bounds1.y + bounds1.height >= bounds2.y
-				&& bounds1.x < bounds2.x + bounds2.width
-				&& bounds1.y < bounds2.y + bounds2.height) {
-			if (isFlatEnough(curve1) && isFlatEnough(curve2)) {
-				// Treat both curves as lines and see if their parametric
-				// equations interesct.
-				if (debug) {
-					Path line = Document.getActiveDocument().createLine(
-							new Point(curve1[0][0], curve1[0][1]),
-							new Point(curve1[3][0], curve1[3][1]));
-					line.setStrokeColor(java.awt.Color.green);
-					line.setStrokeWidth(0.1f);
-
-					line = Document.getActiveDocument().createLine(
-							new Point(curve2[0][0], curve2[0][1]),
-							new Point(curve2[3][0], curve2[3][1]));
-					line.setStrokeColor(java.awt.Color.red);
-					line.setStrokeWidth(0.1f);
+		// Triangle computation, with loops unrolled.
+		double u = 1 - t,
+			// Interpolate from 4 to 3 points
+			p3x = u * p1x + t * c1x, p3y = u * p1y + t * c1y,
+			p4x = u * c1x + t * c2x, p4y = u * c1y + t * c2y,
+			p5x = u * c2x + t * p2x, p5y = u * c2y + t * p2y,
+			// Interpolate from 3 to 2 points
+			p6x = u * p3x + t * p4x, p6y = u * p3y + t * p4y,
+			p7x = u * p4x + t * p5x, p7y = u * p4y + t * p5y,
+			// Interpolate from 2 points to 1 point
+			p8x = u * p6x + t * p7x, p8y = u * p6y + t * p7y;
+		// We now have all the values we need to build the sub-curves:
+		if (left != null) {
+			left[leftOffset] = p1x;
+			left[leftOffset + 1] = p1y;
+			left[leftOffset + 2] = p3x;
+			left[leftOffset + 3] = p3y;
+			left[leftOffset + 4] = p6x;
+			left[leftOffset + 5] = p6y;
+			left[leftOffset + 6] = p8x;
+			left[leftOffset + 7] = p8y;
+		}
+		if (right != null) {
+			right[rightOffset] = p8x;
+			right[rightOffset + 1] = p8y;
+			right[rightOffset + 2] = p7x;
+			right[rightOffset + 3] = p7y;
+			right[rightOffset + 4] = p5x;
+			right[rightOffset + 5] = p5y;
+			right[rightOffset + 6] = p2x;
+			right[rightOffset + 7] = p2y;
+		}
+	}
+
+	protected static double getLength(double[] v) {
+		// Straight lines can be measured directly:
+		if (v[0] == v[2] && v[1] == v[3] && v[6] == v[4] && v[7] == v[5]) {
+			double dx = v[6] - v[0];
+			double dy = v[7] - v[1];
+			return Math.sqrt(dx * dx + dy * dy);
+		}
+		return Numerical.integrate(new LengthIntegrand(v), 0, 1,
+				getIterations(0, 1));
+	}
+
+	protected static void getIntersections(Curve curve1, double[] v1,
+			Curve curve2, double[] v2, ArrayList<CurveLocation> intersections) {
+		getIntersections(curve1, v1, curve2, v2, intersections,
+				new ClippingBuffer());
+	}
+
+	/**
+	 * Finds the intersections between the curves described by v1 and v2 and
+	 * adds them to the intersections list, with exact parameters on both
+	 * curves. Linear curves are solved directly, all other cases use Bezier
+	 * clipping with fat lines, which converges quadratically. Locations that
+	 * lie within {@link Numerical#TOLERANCE} of an existing entry in the list
+	 * are not added again.
+	 * 
+	 * Ported back from Paper.js.
+	 * 
+	 * @param buffer the scratch buffer to be used for clipping and
+	 *        subdivision. It can be reused between calls.
+	 */
+	protected static void getIntersections(Curve curve1, double[] v1,
+			Curve curve2, double[] v2, ArrayList<CurveLocation> intersections,
+			ClippingBuffer buffer) {
+		// Compare the control bounds first. We are not using
+		// Rectangle#intersects() here, since in order to detect intersections
+		// that lie on curve bounds, we need to consider touching as
+		// intersection as well.
+		if (getMax(v1, 0) < getMin(v2, 0) || getMax(v1, 1) < getMin(v2, 1)
+				|| getMin(v1, 0) > getMax(v2, 0)
+				|| getMin(v1, 1) > getMax(v2, 1))
+			return;
+		boolean linear1 = isLinear(v1), linear2 = isLinear(v2);
+		if (linear1 && linear2) {
+			Point point = Line.intersect(
+					v1[0], v1[1], v1[6], v1[7], false,
+					v2[0], v2[1], v2[6], v2[7], false);
+			if (point != null) {
+				double t1 = getParameter(v1, point.x, point.y,
+						Numerical.TOLERANCE);
+				double t2 = getParameter(v2, point.x, point.y,
+						Numerical.TOLERANCE);
+				if (t1 != -1 && t2 != -1)
+					addLocation(intersections, curve1, t1, point, curve2, t2,
+							buffer);
+			}
+		} else if (linear1 || linear2) {
+			addCurveLineIntersections(curve1, v1, curve2, v2, linear1,
+					intersections, buffer);
+		} else if (!addOverlap(curve1, v1, curve2, v2, intersections,
+				buffer)) {
+			double[] values = buffer.values;
+			System.arraycopy(v1, 0, values, 0, 8);
+			System.arraycopy(v2, 0, values, 8, 8);
+			buffer.calls = 0;
+			addCurveIntersections(buffer, 0, 8, curve1, curve2, intersections,
+					false, 0, 0, 1, 0, 1);
+		}
+	}
+
+	/**
+	 * Checks if the two curves are overlapping, by looking for the end points
+	 * of each curve on the other one and comparing the parts in between. If
+	 * so, the beginning and end of the overlap are added as intersections,
+	 * since clipping would produce an unbounded amount of locations there.
+	 * 
+	 * @return {@true if the curves are overlapping}
+	 */
+	private static boolean addOverlap(Curve curve1, double[] v1,
+			Curve curve2, double[] v2, ArrayList<CurveLocation> intersections,
+			ClippingBuffer buffer) {
+		double[] pairs = buffer.pairs;
+		int count = 0;
+		for (int i = 0; i < 4 && count < 2; i++) {
+			// Look for the start (i < 2) or end (i >= 2) point of one curve on
+			// the other.
+			boolean second = (i & 1) == 1;
+			double[] v = second ? v2 : v1, other = second ? v1 : v2;
+			int end = (i >> 1) * 6;
+			double t = getParameter(v, other[end], other[end + 1],
+					Numerical.TOLERANCE);
+			if (t != -1) {
+				double t1 = second ? i >> 1 : t, t2 = second ? t : i >> 1;
+				if (count == 0 || Math.abs(t1 - pairs[0]) > Numerical.TOLERANCE
+						&& Math.abs(t2 - pairs[1]) > Numerical.TOLERANCE) {
+					pairs[count * 2] = t1;
+					pairs[count * 2 + 1] = t2;
+					count++;
+				}
+			}
+			// Bail out as soon as the remaining end points cannot make up
+			// two shared points. Curves running in opposite directions may
+			// only share their end points, so all four need to be checked
+			// before giving up on a single match.
+			if (count + 3 - i < 2)
+				return false;
+		}
+		if (count != 2)
+			return false;
+		// Compare the overlapping parts, in the direction of the first curve.
+		double[] values = buffer.values;
+		boolean reverse1 = pairs[0] > pairs[2];
+		boolean reverse2 = pairs[1] > pairs[3];
+		getPart(v1, 0, Math.min(pairs[0], pairs[2]),
+				Math.max(pairs[0], pairs[2]), values, 0);
+		getPart(v2, 0, Math.min(pairs[1], pairs[3]),
+				Math.max(pairs[1], pairs[3]), values, 8);
+		for (int i = 0; i < 8; i++) {
+			int j = reverse1 != reverse2 ? 6 - (i & ~1) + (i & 1) : i;
+			if (Math.abs(values[i] - values[8 + j]) > Numerical.TOLERANCE)
+				return false;
+		}
+		for (int i = 0; i < 4; i += 2) {
+			double t1 = pairs[i], t2 = pairs[i + 1];
+			addLocation(intersections, curve1, t1, getPoint(v1, 0, t1),
+					curve2, t2, buffer);
+		}
+		return true;
+	}
+
+	private static void addCurveIntersections(ClippingBuffer buffer, int o1,
+			int o2, Curve curve1, Curve curve2,
+			ArrayList<CurveLocation> intersections, boolean flip,
+			int recursion, double tMin, double tMax, double uMin,
+			double uMax) {
+		// Avoid deeper recursion, e.g. for overlapping curves.
+		if (++buffer.calls >= ClippingBuffer.MAX_CALLS
+				|| ++recursion >= ClippingBuffer.MAX_RECURSION)
+			return;
+		double[] v = buffer.values;
+		// Let P be the first curve and Q be the second. Calculate the fat line
+		// of Q, bounded by the signed distances of its control points to the
+		// line through its end points.
+		double q0x = v[o2], q0y = v[o2 + 1], q3x = v[o2 + 6], q3y = v[o2 + 7];
+		double d1 = Line.getSignedDistance(q0x, q0y, q3x, q3y,
+				v[o2 + 2], v[o2 + 3]);
+		double d2 = Line.getSignedDistance(q0x, q0y, q3x, q3y,
+				v[o2 + 4], v[o2 + 5]);
+		double factor = d1 * d2 > 0 ? 3.0 / 4.0 : 4.0 / 9.0;
+		double dMin = factor * Math.min(0, Math.min(d1, d2));
+		double dMax = factor * Math.max(0, Math.max(d1, d2));
+		// Calculate the signed distances of the control points of P to the
+		// line through Q's end points. These form the non-parametric bezier
+		// curve that is clipped against the fat line.
+		double dp0 = Line.getSignedDistance(q0x, q0y, q3x, q3y,
+				v[o1], v[o1 + 1]);
+		double dp1 = Line.getSignedDistance(q0x, q0y, q3x, q3y,
+				v[o1 + 2], v[o1 + 3]);
+		double dp2 = Line.getSignedDistance(q0x, q0y, q3x, q3y,
+				v[o1 + 4], v[o1 + 5]);
+		double dp3 = Line.getSignedDistance(q0x, q0y, q3x, q3y,
+				v[o1 + 6], v[o1 + 7]);
+		// Collinear curves are overlapping, bail out.
+		if (d1 == 0 && d2 == 0 && dp0 == 0 && dp1 == 0 && dp2 == 0
+				&& dp3 == 0)
+			return;
+		if (!clipConvexHull(dp0, dp1, dp2, dp3, dMin, dMax, buffer.range))
+			return;
+		double tMinClip = buffer.range[0], tMaxClip = buffer.range[1];
+		// Map the clipped range back to the range of the original curve
+		double tMinNew = tMin + (tMax - tMin) * tMinClip;
+		double tMaxNew = tMin + (tMax - tMin) * tMaxClip;
+		if (Math.max(uMax - uMin, tMaxNew - tMinNew) < FAT_LINE_EPSILON) {
+			// We have isolated the intersection with sufficient precision
+			double t = (tMinNew + tMaxNew) / 2;
+			double u = (uMin + uMax) / 2;
+			Curve c1 = flip ? curve2 : curve1;
+			Curve c2 = flip ? curve1 : curve2;
+			double t1 = flip ? u : t;
+			double t2 = flip ? t : u;
+			// The values of the initial first curve are still at the
+			// beginning of the buffer.
+			addLocation(intersections, c1, t1, getPoint(v, 0, t1), c2, t2,
+					buffer);
+		} else {
+			// Each level of recursion gets its own section of the buffer, to
+			// hold the clipped curve and the halves after subdivision.
+			int part = ClippingBuffer.getOffset(recursion);
+			getPart(v, o1, tMinClip, tMaxClip, v, part);
+			double uDiff = uMax - uMin;
+			if (tMaxClip - tMinClip > 0.8) {
+				// Subdivide the curve which has converged the least.
+				int left = part + 8, right = part + 16;
+				if (tMaxNew - tMinNew > uDiff) {
+					subdivide(v, part, 0.5, v, left, v, right);
+					double t = (tMinNew + tMaxNew) / 2;
+					addCurveIntersections(buffer, o2, left, curve2, curve1,
+							intersections, !flip, recursion, uMin, uMax,
+							tMinNew, t);
+					addCurveIntersections(buffer, o2, right, curve2, curve1,
+							intersections, !flip, recursion, uMin, uMax,
+							t, tMaxNew);
+				} else {
+					subdivide(v, o2, 0.5, v, left, v, right);
+					double u = (uMin + uMax) / 2;
+					addCurveIntersections(buffer, left, part, curve2, curve1,
+							intersections, !flip, recursion, uMin, u,
+							tMinNew, tMaxNew);
+					addCurveIntersections(buffer, right, part, curve2, curve1,
+							intersections, !flip, recursion, u, uMax,
+							tMinNew, tMaxNew);
 				}
-				Point point = Line.intersect(
-						curve1[0][0], curve1[0][1],
-						curve1[3][0], curve1[3][1], false,
-						curve2[0][0], curve2[0][1],
-						curve2[3][0], curve2[3][1], false);
-				// We need to provide the original left curve reference to the
-				// #getIntersections() calls as it is required for the returned
-				// CurveLocation instances.
-				// Passing -1 for parameter leads to lazy determination of
-				// parameter values in CurveLocation#getParameter() only once
-				// they are requested. This allows the use of CurveLocation
-				// without slow-downs in comparisson to simply returning points
-				// as long as only CurveLocation#getPoint() is called.
-				if (point != null)
-					intersections.add(new CurveLocation(curve, -1, point));
 			} else {
-				double curve1Left[][] = new double[4][];
-				double curve1Right[][] = new double[4][];
-				double curve2Left[][] = new double[4][];
-				double curve2Right[][] = new double[4][];
-				subdivide(curve1, 0.5, curve1Left, curve1Right);
-				subdivide(curve2, 0.5, curve2Left, curve2Right);
-				getIntersections(curve, curve1Left, curve2Left, intersections);
-				getIntersections(curve, curve1Left, curve2Right, intersections);
-				getIntersections(curve, curve1Right, curve2Left, intersections);
-				getIntersections(curve, curve1Right, curve2Right, intersections);
+				// Iterate, switching the roles of the curves
+				if (uDiff == 0 || uDiff >= FAT_LINE_EPSILON) {
+					addCurveIntersections(buffer, o2, part, curve2, curve1,
+							intersections, !flip, recursion, uMin, uMax,
+							tMinNew, tMaxNew);
+				} else {
+					// The interval on the other curve is already tight
+					// enough, so keep clipping this one.
+					addCurveIntersections(buffer, part, o2, curve1, curve2,
+							intersections, flip, recursion, tMinNew, tMaxNew,
+							uMin, uMax);
+				}
 			}
 		}
 	}
 
-	private static boolean isFlatEnough(double[][] curve) {
-		// Thanks to Kaspar Fischer for the following:
-		// http://www.inf.ethz.ch/personal/fischerk/pubs/bez.pdf
-		double p1x = curve[0][0];
-		double p1y = curve[0][1];
-		double c1x = curve[1][0];
-		double c1y = curve[1][1];
-		double c2x = curve[2][0];
-		double c2y = curve[2][1];
-		double p2x = curve[3][0];
-		double p2y = curve[3][1];
-		double ux = 3 * c1x - 2 * p1x - p2x;
-		double uy = 3 * c1y - 2 * p1y - p2y;
-		double vx = 3 * c2x - 2 * p2x - p1x;
-		double vy = 3 * c2y - 2 * p2y - p1y;
-		return Math.max(ux * ux, vx * vx) + Math.max(uy * uy, vy * vy) < 1;
-	}
-
-	private static Rectangle getControlBounds(double[][] curve) {
-		double minX = curve[0][0], maxX = minX, minY = curve[0][1], maxY = minY;
-		for (int i = 1; i < 4; i++) {
-			double[] c = curve[i];
-			double x = c[0], y = c[1];
-			if (x < minX)
-				minX = x;
-			else if (x > maxX)
-				maxX = x;
-			if (y < minY)
-				minY = y;
-			else if (y > maxY)
-				maxY = y;
-		}
-		return new Rectangle(minX, minY, maxX - minX, maxY - minY);
-	}
-
-	protected static double getParameter(double[][] curve, double length) {
-		// TODO: Port root finding algorithm from Paper.js back
-		if (length <= 0)
-			return 0;
-		double bezierLength = getLength(curve);
-		if (length >= bezierLength)
-			return 1;
-		double[][] temp = new double[4][];
-		// Let's use the False Position method to find the right length in 
-		// few iterations. Generally only 4 - 7 are required.
-		double left = 0;
-		double right = 1;
-		double error = 5e-15;
-		double fLeft = getLeftLength(curve, left, temp) - length;
-		double fRight = getLeftLength(curve, right, temp) - length;
-		double res = 0;
-		int n = 0, side = 0;
-		do {
-			res = (fLeft * right - fRight * left) / (fLeft - fRight);
-			if (Math.abs(right - left) < error * Math.abs(right + left))
+	private static final double FAT_LINE_EPSILON = 1e-9;
+
+	/**
+	 * Binomial coefficients for the conversion of polynomials of degree 5 to
+	 * Bernstein form, C(i, j) / C(5, j).
+	 */
+	private static final double[][] BERNSTEIN_FACTORS = {
+		{ 1 },
+		{ 1, 1 / 5.0 },
+		{ 1, 2 / 5.0, 1 / 10.0 },
+		{ 1, 3 / 5.0, 3 / 10.0, 1 / 10.0 },
+		{ 1, 4 / 5.0, 6 / 10.0, 4 / 10.0, 1 / 5.0 },
+		{ 1, 1, 1, 1, 1, 1 }
+	};
+
+	/**
+	 * Returns the parameter of the point on the curve described by v that is
+	 * nearest to x, y. The squared distance is left in the buffer.
+	 * 
+	 * The nearest point is either one of the end points or a root of the
+	 * quintic polynomial (B(t) - P) . B'(t). The roots are isolated by
+	 * subdividing the polynomial in Bernstein form until its coefficients
+	 * change sign only once, and then refined with Newton-Raphson.
+	 * 
+	 * After Philip J. Schneider, Graphics Gems, 1990, Solving the Nearest
+	 * Point-on-Curve Problem.
+	 */
+	protected static double getNearestParameter(double[] v, double x,
+			double y, NearestBuffer buffer) {
+		// The curve in power basis, relative to the point: Q(t) = B(t) - P
+		double cx = 3 * (v[2] - v[0]), bx = 3 * (v[4] - v[2]) - cx,
+				ax = v[6] - v[0] - cx - bx, dx = v[0] - x;
+		double cy = 3 * (v[3] - v[1]), by = 3 * (v[5] - v[3]) - cy,
+				ay = v[7] - v[1] - cy - by, dy = v[1] - y;
+		buffer.ax = ax;
+		buffer.bx = bx;
+		buffer.cx = cx;
+		buffer.dx = dx;
+		buffer.ay = ay;
+		buffer.by = by;
+		buffer.cy = cy;
+		buffer.dy = dy;
+		// Q(t) . Q'(t), with Q'(t) = 3a t^2 + 2b t + c
+		double[] poly = buffer.poly;
+		poly[5] = 3 * (ax * ax + ay * ay);
+		poly[4] = 5 * (ax * bx + ay * by);
+		poly[3] = 4 * (ax * cx + ay * cy) + 2 * (bx * bx + by * by);
+		poly[2] = 3 * (ax * dx + ay * dy) + 3 * (bx * cx + by * cy);
+		poly[1] = 2 * (bx * dx + by * dy) + cx * cx + cy * cy;
+		poly[0] = cx * dx + cy * dy;
+		double[] w = buffer.values;
+		for (int i = 0; i < 6; i++) {
+			double[] factors = BERNSTEIN_FACTORS[i];
+			double value = 0;
+			for (int j = 0; j <= i; j++)
+				value += factors[j] * poly[j];
+			w[i] = value;
+		}
+		buffer.distance = Double.MAX_VALUE;
+		checkNearest(buffer, 0);
+		checkNearest(buffer, 1);
+		findNearestRoots(buffer, 0, 0, 1, 0);
+		return buffer.parameter;
+	}
+
+	private static void findNearestRoots(NearestBuffer buffer, int offset,
+			double a, double b, int depth) {
+		double[] w = buffer.values;
+		int changes = 0;
+		double sign = 0;
+		for (int i = 0; i < 6; i++) {
+			double value = w[offset + i];
+			if (value != 0) {
+				if (sign != 0 && (value > 0) != (sign > 0))
+					changes++;
+				sign = value;
+			}
+		}
+		if (changes == 0)
+			return;
+		if (changes == 1) {
+			// Exactly one root in the interval
+			checkNearest(buffer, findNearestRoot(buffer.poly, a, b));
+		} else if (depth == NearestBuffer.MAX_DEPTH) {
+			checkNearest(buffer, (a + b) / 2);
+		} else {
+			// Subdivide in the middle, with de Casteljau's algorithm. The
+			// halves go into the section of the buffer for the next level.
+			int left = 6 + depth * 12, right = left + 6;
+			System.arraycopy(w, offset, w, right, 6);
+			for (int i = 0; i < 6; i++) {
+				w[left + i] = w[right];
+				for (int j = 0; j < 5 - i; j++)
+					w[right + j] = (w[right + j] + w[right + j + 1]) / 2;
+			}
+			double m = (a + b) / 2;
+			findNearestRoots(buffer, left, a, m, depth + 1);
+			findNearestRoots(buffer, right, m, b, depth + 1);
+		}
+	}
+
+	/**
+	 * Finds the single root of the polynomial of degree 5 between a and b,
+	 * with Newton-Raphson, falling back to bisection.
+	 */
+	private static double findNearestRoot(double[] poly, double a, double b) {
+		double fa = evaluatePolynomial(poly, a);
+		double t = (a + b) / 2;
+		for (int i = 0; i < 32; i++) {
+			double f = evaluatePolynomial(poly, t);
+			if (f == 0)
 				break;
-			double fRes = getLeftLength(curve, res, temp) - length;
-			if (fRes * fRight > 0) {
-				right = res; fRight = fRes;
-				if (side == -1)
-					fLeft /= 2;
-				side = -1;
-			} else if (fLeft * fRes > 0) {
-				left = res;  fLeft = fRes;
-				if (side == +1)
-					fRight /= 2;
-				side = +1;
+			if ((f > 0) == (fa > 0)) {
+				a = t;
+				fa = f;
 			} else {
-				break;
+				b = t;
 			}
-		} while(n++ < 100);
-//		System.out.println("n: " + n + "r: " + res + "f(r): "
-//				+ getLeftLength(curve, res, temp) + ", len: " + length);
-		return res;
+			double df = (((5 * poly[5] * t + 4 * poly[4]) * t
+					+ 3 * poly[3]) * t + 2 * poly[2]) * t + poly[1];
+			double nt = df != 0 ? t - f / df : Double.NaN;
+			// Bisect if the Newton step leaves the interval
+			if (!(nt > a && nt < b))
+				nt = (a + b) / 2;
+			if (Math.abs(nt - t) < Numerical.EPSILON)
+				return nt;
+			t = nt;
+		}
+		return t;
+	}
+
+	private static double evaluatePolynomial(double[] poly, double t) {
+		return ((((poly[5] * t + poly[4]) * t + poly[3]) * t + poly[2]) * t
+				+ poly[1]) * t + poly[0];
+	}
+
+	private static void checkNearest(NearestBuffer buffer, double t) {
+		double x = ((buffer.ax * t + buffer.bx) * t + buffer.cx) * t
+				+ buffer.dx;
+		double y = ((buffer.ay * t + buffer.by) * t + buffer.cy) * t
+				+ buffer.dy;
+		double distance = x * x + y * y;
+		if (distance < buffer.distance) {
+			buffer.distance = distance;
+			buffer.parameter = t;
+		}
 	}
 
-	private static double getLeftLength(double curve[][], double parameter,
-			double tempCurve[][]) {
-		if (parameter == 0)
+	/**
+	 * Scratch memory for {@link Curve#getNearestParameter(double[], double,
+	 * double, NearestBuffer)}, that can be reused between calls.
+	 */
+	protected static class NearestBuffer {
+		static final int MAX_DEPTH = 32;
+
+		// The Bernstein coefficients of the distance derivative, followed by
+		// one section per recursion level holding the two halves.
+		double[] values = new double[6 + MAX_DEPTH * 12];
+		double[] poly = new double[6];
+		// The curve in power basis, relative to the point
+		double ax, bx, cx, dx, ay, by, cy, dy;
+		// The result, as parameter and squared distance
+		double parameter;
+		double distance;
+	}
+
+	/**
+	 * Clips the convex hull of the non-parametric curve defined by the signed
+	 * distances d0 .. d3 at t = 0, 1/3, 2/3, 1 against the fat line bounded
+	 * by dMin and dMax.
+	 * 
+	 * Instead of constructing the hull, all edges between the four control
+	 * points are intersected with the fat line boundaries. The extremes of the
+	 * resulting values are the same as for the hull, since the hull's edges
+	 * are among them and all other edges lie inside it.
+	 * 
+	 * @param range receives the resulting minimum and maximum parameters
+	 * @return {@true if the hull overlaps the fat line}
+	 */
+	private static boolean clipConvexHull(double d0, double d1, double d2,
+			double d3, double dMin, double dMax, double[] range) {
+		double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			double di = i == 0 ? d0 : i == 1 ? d1 : i == 2 ? d2 : d3;
+			double ti = i / 3.0;
+			// Control points that lie within the fat line
+			if (di >= dMin && di <= dMax) {
+				if (ti < min)
+					min = ti;
+				if (ti > max)
+					max = ti;
+			}
+			for (int j = i + 1; j < 4; j++) {
+				double dj = j == 1 ? d1 : j == 2 ? d2 : d3;
+				double tj = j / 3.0;
+				// Edges crossing one of the boundaries of the fat line
+				for (int k = 0; k < 2; k++) {
+					double d = k == 0 ? dMin : dMax;
+					if ((di - d) * (dj - d) < 0) {
+						double t = ti + (d - di) * (tj - ti) / (dj - di);
+						if (t < min)
+							min = t;
+						if (t > max)
+							max = t;
+					}
+				}
+			}
+		}
+		if (min > max)
+			return false;
+		range[0] = min;
+		range[1] = max;
+		return true;
+	}
+
+	/**
+	 * Intersects a curve with a linear curve, by rotating the curve into the
+	 * coordinate system of the line and solving for the roots of its y
+	 * coordinates.
+	 */
+	private static void addCurveLineIntersections(Curve curve1, double[] v1,
+			Curve curve2, double[] v2, boolean flip,
+			ArrayList<CurveLocation> intersections, ClippingBuffer buffer) {
+		double[] vc = flip ? v2 : v1;
+		double[] vl = flip ? v1 : v2;
+		double lx1 = vl[0], ly1 = vl[1];
+		double ldx = vl[6] - lx1, ldy = vl[7] - ly1;
+		double angle = Math.atan2(-ldy, ldx);
+		double sin = Math.sin(angle), cos = Math.cos(angle);
+		// The length of the line after rotation
+		double rlx2 = ldx * cos - ldy * sin;
+		// Rotate the curve, reusing the first section of the buffer.
+		double[] rvc = buffer.values;
+		for (int i = 0; i < 8; i += 2) {
+			double x = vc[i] - lx1, y = vc[i + 1] - ly1;
+			rvc[i] = x * cos - y * sin;
+			rvc[i + 1] = y * cos + x * sin;
+		}
+		double[] roots = buffer.roots;
+		int count = solveCubicRoots(rvc[1], rvc[3], rvc[5], rvc[7], 0,
+				roots, Numerical.EPSILON);
+		for (int i = 0; i < count; i++) {
+			double tc = roots[i];
+			if (tc >= -Numerical.EPSILON && tc <= 1 + Numerical.EPSILON) {
+				tc = Numerical.clamp(tc, 0, 1);
+				double x = getPoint(rvc, 0, tc).x;
+				if (x >= -Numerical.TOLERANCE
+						&& x <= rlx2 + Numerical.TOLERANCE) {
+					// Find the parameter on the line. As the line is
+					// described as a curve without handles, its parameter
+					// is not linear in x, so solve for it.
+					double tl = getLinearParameter(rlx2, x, buffer);
+					double t1 = flip ? tl : tc;
+					double t2 = flip ? tc : tl;
+					addLocation(intersections, curve1, t1,
+							getPoint(v1, 0, t1), curve2, t2, buffer);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the parameter at which a curve without handles along the x-axis
+	 * between 0 and length reaches x.
+	 */
+	private static double getLinearParameter(double length, double x,
+			ClippingBuffer buffer) {
+		if (x <= 0 || length == 0)
 			return 0;
-		if (parameter < 1) {
-			subdivide(curve, parameter, tempCurve, null);
-			curve = tempCurve;
+		if (x >= length)
+			return 1;
+		double[] roots = buffer.lineRoots;
+		int count = solveCubicRoots(0, 0, length, length, x, roots,
+				Numerical.EPSILON);
+		for (int i = 0; i < count; i++) {
+			double t = roots[i];
+			if (t >= -Numerical.EPSILON && t <= 1 + Numerical.EPSILON)
+				return Numerical.clamp(t, 0, 1);
 		}
-		return getLength(curve);
+		return x / length;
 	}
 
 	/**
-	 * Curve is only modified if it is passed as tempCurve as well. this is
-	 * needed in #getLength() above...
+	 * Adds a new intersection location, unless there already is one within
+	 * {@link Numerical#TOLERANCE} of its point. The points already in the list
+	 * are looked up in the grid of the buffer, rather than by scanning the
+	 * whole list.
+	 */
+	private static void addLocation(ArrayList<CurveLocation> intersections,
+			Curve curve1, double t1, Point point, Curve curve2, double t2,
+			ClippingBuffer buffer) {
+		if (buffer.indexed != intersections
+				|| buffer.indexedCount != intersections.size())
+			buffer.index(intersections);
+		if (buffer.find(point.x, point.y) != null)
+			return;
+		CurveLocation location =
+				new CurveLocation(curve1, t1, point, curve2, t2);
+		intersections.add(location);
+		buffer.add(location);
+	}
+
+	/**
+	 * Scratch memory for the Bezier clipping in
+	 * {@link Curve#getIntersections(Curve, double[], Curve, double[],
+	 * ArrayList, ClippingBuffer)}, so that no arrays need to be allocated
+	 * during clipping and subdivision. It can be reused between calls.
+	 */
+	protected static class ClippingBuffer {
+		static final int MAX_RECURSION = 40;
+		static final int MAX_CALLS = 4096;
+
+		// The two input curves, followed by one section per recursion level
+		// holding the clipped curve and its two halves.
+		double[] values = new double[getOffset(MAX_RECURSION)];
+		double[] range = new double[2];
+		double[] roots = new double[3];
+		double[] lineRoots = new double[3];
+		double[] pairs = new double[4];
+		int calls;
+		// The locations of the list that was last added to, in grid cells
+		// the size of the tolerance, for the duplicate check in addLocation.
+		ArrayList<CurveLocation> indexed;
+		int indexedCount;
+		HashMap<Long, ArrayList<CurveLocation>> cells =
+				new HashMap<Long, ArrayList<CurveLocation>>();
+
+		private static long getCell(double value) {
+			return (long) Math.floor(value / Numerical.TOLERANCE);
+		}
+
+		private static Long getKey(long x, long y) {
+			// Colliding keys only add candidates, which are compared anyway.
+			return x * 0x9e3779b97f4a7c15L + y;
+		}
+
+		void index(ArrayList<CurveLocation> intersections) {
+			cells.clear();
+			indexed = intersections;
+			indexedCount = 0;
+			for (int i = 0, l = intersections.size(); i < l; i++)
+				add(intersections.get(i));
+		}
+
+		void add(CurveLocation location) {
+			indexedCount++;
+			Point point = location.getPoint();
+			if (point != null) {
+				Long key = getKey(getCell(point.x), getCell(point.y));
+				ArrayList<CurveLocation> cell = cells.get(key);
+				if (cell == null) {
+					cell = new ArrayList<CurveLocation>(1);
+					cells.put(key, cell);
+				}
+				cell.add(location);
+			}
+		}
+
+		/**
+		 * Returns a location within the tolerance of the point, looking at
+		 * the point's cell and its neighbours.
+		 */
+		CurveLocation find(double x, double y) {
+			long cx = getCell(x), cy = getCell(y);
+			for (long i = cx - 1; i <= cx + 1; i++) {
+				for (long j = cy - 1; j <= cy + 1; j++) {
+					ArrayList<CurveLocation> cell = cells.get(getKey(i, j));
+					if (cell != null) {
+						for (int k = 0, l = cell.size(); k < l; k++) {
+							CurveLocation location = cell.get(k);
+							Point other = location.getPoint();
+							if (Math.abs(other.x - x) < Numerical.TOLERANCE
+									&& Math.abs(other.y - y)
+											< Numerical.TOLERANCE)
+								return location;
+						}
+					}
+				}
+			}
+			return null;
+		}
+
+		static int getOffset(int recursion) {
+			return 16 + recursion * 24;
+		}
+	}
+
+	/**
+	 * Writes the part of the curve at offset between the parameters from and
+	 * to into dest at destOffset.
+	 */
+	protected static void getPart(double[] v, int offset, double from,
+			double to, double[] dest, int destOffset) {
+		if (from > 0) {
+			subdivide(v, offset, from, null, 0, dest, destOffset);
+			// Adjust to for the remaining part of the curve
+			to = (to - from) / (1 - from);
+		} else {
+			System.arraycopy(v, offset, dest, destOffset, 8);
+		}
+		if (to < 1)
+			subdivide(dest, destOffset, to, dest, destOffset, null, 0);
+	}
+
+	/**
+	 * Writes the parameters between 0 and 1 at which the curve described by
+	 * the values at offset has horizontal or vertical tangents into params, in
+	 * ascending order. Splitting the curve there results in parts that are
+	 * monotone in both x and y.
 	 * 
-	 * TODO: Port Gauss-Legendre Numerical Integration method from Paper.js
-	 * to Scriptographer and stop relying on internal Adobe code.
+	 * @return the amount of parameters found, 0 to 4
+	 */
+	protected static int getMonotoneParameters(double[] v, int offset,
+			double[] params) {
+		double[] roots = new double[2];
+		int count = 0;
+		for (int i = 0; i < 2; i++) {
+			double p0 = v[offset + i], p1 = v[offset + i + 2],
+					p2 = v[offset + i + 4], p3 = v[offset + i + 6];
+			// The roots of the derivative, divided by 3
+			int n = solveQuadraticRoots(-p0 + 3 * p1 - 3 * p2 + p3,
+					2 * (p0 - 2 * p1 + p2), p1 - p0, roots, Numerical.EPSILON);
+			for (int j = 0; j < n; j++) {
+				double t = roots[j];
+				if (t > Numerical.TOLERANCE && t < 1 - Numerical.TOLERANCE) {
+					// Insert sorted, skipping parameters that are too close
+					int k = count;
+					while (k > 0 && params[k - 1] > t)
+						k--;
+					if (k > 0 && t - params[k - 1] < Numerical.TOLERANCE
+							|| k < count && params[k] - t < Numerical.TOLERANCE)
+						continue;
+					System.arraycopy(params, k, params, k + 1, count - k);
+					params[k] = t;
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Checks if the curve described by v is linear, meaning it does not
+	 * define any curve handles.
 	 */
-	private static double getLength(double curve[][], double from, double to,
-			double tempCurve[][]) {
+	private static boolean isLinear(double[] v) {
+		return v[0] == v[2] && v[1] == v[3] && v[6] == v[4] && v[7] == v[5];
+	}
+
+	/**
+	 * Returns the point on the curve described by the values at offset, at
+	 * parameter t.
+	 */
+	protected static Point getPoint(double[] v, int offset, double t) {
+		double u = 1 - t;
+		double a = u * u * u, b = 3 * u * u * t, c = 3 * u * t * t,
+				d = t * t * t;
+		return new Point(
+				a * v[offset] + b * v[offset + 2] + c * v[offset + 4]
+						+ d * v[offset + 6],
+				a * v[offset + 1] + b * v[offset + 3] + c * v[offset + 5]
+						+ d * v[offset + 7]);
+	}
+
+	/**
+	 * Returns the minimum of the coordinates at offset, offset + 2, offset + 4
+	 * and offset + 6, which is the minimum x (or y, for offset + 1) value of
+	 * the curve's control bounds.
+	 */
+	private static double getMin(double[] v, int offset) {
+		return Math.min(Math.min(v[offset], v[offset + 2]),
+				Math.min(v[offset + 4], v[offset + 6]));
+	}
+
+	private static double getMax(double[] v, int offset) {
+		return Math.max(Math.max(v[offset], v[offset + 2]),
+				Math.max(v[offset + 4], v[offset + 6]));
+	}
+
+	private static Rectangle getControlBounds(double[] v) {
+		double minX = getMin(v, 0), minY = getMin(v, 1);
+		return new Rectangle(minX, minY,
+				getMax(v, 0) - minX, getMax(v, 1) - minY);
+	}
+
+	/**
+	 * Extends bounds, stored as minX, minY, maxX, maxY, by the tight bounds of
+	 * the curve described by the values at offset. Only the end points and the
+	 * points at which the derivative is zero in x or y need to be looked at.
+	 */
+	protected static void getBounds(double[] v, int offset, double[] bounds) {
+		double[] params = new double[4];
+		int count = getMonotoneParameters(v, offset, params);
+		for (int i = -1; i <= count; i++) {
+			double x, y;
+			if (i == -1 || i == count) {
+				int o = offset + (i == -1 ? 0 : 6);
+				x = v[o];
+				y = v[o + 1];
+			} else {
+				double t = params[i], u = 1 - t;
+				double a = u * u * u, b = 3 * u * u * t, c = 3 * u * t * t,
+						d = t * t * t;
+				x = a * v[offset] + b * v[offset + 2] + c * v[offset + 4]
+						+ d * v[offset + 6];
+				y = a * v[offset + 1] + b * v[offset + 3] + c * v[offset + 5]
+						+ d * v[offset + 7];
+			}
+			if (x < bounds[0])
+				bounds[0] = x;
+			if (y < bounds[1])
+				bounds[1] = y;
+			if (x > bounds[2])
+				bounds[2] = x;
+			if (y > bounds[3])
+				bounds[3] = y;
+		}
+	}
+
+	/**
+	 * Returns the signed area between the curve described by the values at
+	 * offset and the origin, as the closed form of the integral
+	 * (x dy - y dx) / 2 along the curve, following Green's theorem. Summed
+	 * up over a closed contour, this results in the area enclosed by it,
+	 * positive for counter-clockwise contours.
+	 */
+	protected static double getArea(double[] v, int offset) {
+		double p1x = v[offset], p1y = v[offset + 1],
+				c1x = v[offset + 2], c1y = v[offset + 3],
+				c2x = v[offset + 4], c2y = v[offset + 5],
+				p2x = v[offset + 6], p2y = v[offset + 7];
+		return 3 * ((p2y - p1y) * (c1x + c2x) - (p2x - p1x) * (c1y + c2y)
+				+ c1y * (p1x - c2x) - c1x * (p1y - c2y)
+				+ p2y * (c2x + p1x / 3) - p2x * (c2y + p1y / 3)) / 20;
+	}
+
+	protected static double getParameter(double[] v, double length) {
+		if (length <= 0)
+			return 0;
+		LengthIntegrand ds = new LengthIntegrand(v);
+		double bezierLength = Numerical.integrate(ds, 0, 1,
+				getIterations(0, 1));
+		if (length >= bezierLength)
+			return 1;
+		// Use Newton-Raphson on the length function, with its derivative
+		// being the length integrand itself. The length up to the current
+		// guess is accumulated, so each step only integrates the distance
+		// between the previous and the new guess.
+		LengthFunction f = new LengthFunction(ds, length);
+		return Numerical.findRoot(f, ds, length / bezierLength, 0, 1, 32,
+				Numerical.EPSILON);
+	}
+
+	/**
+	 * Returns the length of the curve between the parameters from and to.
+	 * 
+	 * Uses Gauss-Legendre Numerical Integration, ported back from Paper.js.
+	 */
+	protected static double getLength(double[] v, double from, double to) {
 		if (from > to) {
 			double temp = from;
 			from = to;
@@ -880,28 +1641,96 @@ public class Curve implements ChangeReceiver {
 		if (to > 1)
 			to = 1;
 
-		return getLeftLength(curve, to, tempCurve)
-			- getLeftLength(curve, from, tempCurve);
+		if (from == 0 && to == 1)
+			return getLength(v);
+
+		return Numerical.integrate(new LengthIntegrand(v), from, to,
+				getIterations(from, to));
+	}
+
+	/**
+	 * Returns the amount of Gauss-Legendre sample points to be used for the
+	 * given parameter range. Guess required precision based on the size of
+	 * the range.
+	 */
+	private static int getIterations(double from, double to) {
+		return Math.max(2, Math.min(16, (int) Math.ceil(
+				Math.abs(to - from) * 32)));
+	}
+
+	/**
+	 * The length integrand of a curve, which is the length of the first
+	 * derivative at a given parameter.
+	 */
+	protected static class LengthIntegrand implements Numerical.Function {
+		private double ax, bx, cx, ay, by, cy;
+
+		LengthIntegrand() {
+		}
+
+		LengthIntegrand(double[] v) {
+			set(v);
+		}
+
+		void set(double[] v) {
+			double p1x = v[0], p1y = v[1];
+			double c1x = v[2], c1y = v[3];
+			double c2x = v[4], c2y = v[5];
+			double p2x = v[6], p2y = v[7];
+			// Calculate the coefficients of a Bezier derivative.
+			ax = 9 * (c1x - c2x) + 3 * (p2x - p1x);
+			bx = 6 * (p1x + c2x) - 12 * c1x;
+			cx = 3 * (c1x - p1x);
+			ay = 9 * (c1y - c2y) + 3 * (p2y - p1y);
+			by = 6 * (p1y + c2y) - 12 * c1y;
+			cy = 3 * (c1y - p1y);
+		}
+
+		public double evaluate(double t) {
+			// Calculate quadratic equations of derivatives for x and y
+			double dx = (ax * t + bx) * t + cx;
+			double dy = (ay * t + by) * t + cy;
+			return Math.sqrt(dx * dx + dy * dy);
+		}
+	}
+
+	/**
+	 * The difference between the curve length up to a given parameter and the
+	 * requested length, as used by {@link Curve#getParameter(double[], double)}.
+	 */
+	private static class LengthFunction implements Numerical.Function {
+		private LengthIntegrand ds;
+		private double length;
+		private double start = 0;
+		private double current = 0;
+
+		LengthFunction(LengthIntegrand ds, double length) {
+			this.ds = ds;
+			this.length = length;
+		}
+
+		public double evaluate(double t) {
+			current += Numerical.integrate(ds, start, t,
+					getIterations(start, t));
+			start = t;
+			return current - length;
+		}
 	}
 
-	protected static double getParameter(double[][] curve, double x,
-			double y, double epsilon) {
+	protected static double getParameter(double[] v, double x, double y,
+			double epsilon) {
 		double txs[] = { 0, 0, 0 }; 
 		double tys[] = { 0, 0, 0 };
 
 		// Handle beginnings and end seperately, as they are not detected
 		// sometimes.
-		if (Math.abs(curve[0][0] - x) < epsilon
-				&& Math.abs(curve[0][1] - y) < epsilon)
+		if (Math.abs(v[0] - x) < epsilon && Math.abs(v[1] - y) < epsilon)
 			return 0;
-		if (Math.abs(curve[3][0] - x) < epsilon
-				&& Math.abs(curve[3][1] - y) < epsilon)
+		if (Math.abs(v[6] - x) < epsilon && Math.abs(v[7] - y) < epsilon)
 			return 1;
 
-		int sx = solveCubicRoots(curve[0][0], curve[1][0], curve[2][0],
-				curve[3][0], x, txs, epsilon);
-		int sy = solveCubicRoots(curve[0][1], curve[1][1], curve[2][1],
-				curve[3][1], y, tys, epsilon);
+		int sx = solveCubicRoots(v[0], v[2], v[4], v[6], x, txs, epsilon);
+		int sy = solveCubicRoots(v[1], v[3], v[5], v[7], y, tys, epsilon);
 
 		int cx = 0;
 		// sx, sy == -1 means infinite solutions:
@@ -988,7 +1817,7 @@ public class Curve implements ChangeReceiver {
 			roots[2] = q * Math.cos((theta - 2 * Math.PI) / 3) - b;
 			return 3;
 		} else { // One real root
-			double A = -Math.pow(Math.abs(R) + Math.sqrt(R2 - Q3), 1 / 3);
+			double A = -Math.pow(Math.abs(R) + Math.sqrt(R2 - Q3), 1.0 / 3);
 			if (R < 0) A = -A;
 			double B = (Math.abs(A) < tolerance) ? 0 : Q / A;
 			roots[0] = (A + B) - b;
@@ -32,6 +32,12 @@ public class CurveLocation {
 	private double parameter;
 	private Point point;
 	private Segment segment;
+	// For intersections, the location on the other curve
+	private Curve curve2;
+	private double parameter2;
+	private CurveLocation intersection;
+	// For nearest locations, the distance to the point
+	private double distance = -1;
 
 	protected CurveLocation() {
 	}
@@ -40,6 +46,19 @@ public class CurveLocation {
 		init(curve, parameter, point);
 	}
 
+	protected CurveLocation(Curve curve, double parameter, Point point,
+			Curve curve2, double parameter2) {
+		init(curve, parameter, point);
+		this.curve2 = curve2;
+		this.parameter2 = parameter2;
+	}
+
+	protected CurveLocation(Curve curve, double parameter, Point point,
+			double distance) {
+		init(curve, parameter, point);
+		this.distance = distance;
+	}
+
 	public CurveLocation(Curve curve, double parameter) {
 		init(curve, parameter, null);
 	}
@@ -184,6 +203,28 @@ public class CurveLocation {
 				: null;
 	}
 
+	/**
+	 * If this location was returned by one of the getIntersections() methods,
+	 * this is the location of the intersection on the other curve. Its point
+	 * is the same as this location's point.
+	 */
+	public CurveLocation getIntersection() {
+		if (intersection == null && curve2 != null) {
+			intersection = new CurveLocation(curve2, parameter2, getPoint(),
+					curve, parameter);
+			intersection.intersection = this;
+		}
+		return intersection;
+	}
+
+	/**
+	 * If this location was returned by one of the getNearestLocation()
+	 * methods, this is the distance to the point that was passed.
+	 */
+	public Double getDistance() {
+		return distance != -1 ? distance : null;
+	}
+
 	public double getCurvature() {
 		Double parameter = getParameter();
 		return parameter != null && curve != null
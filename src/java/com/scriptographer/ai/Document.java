@@ -28,7 +28,7 @@ import com.scratchdisk.list.ReadOnlyList;
 import com.scratchdisk.script.ChangeReceiver;
 import com.scratchdisk.util.ArrayList;
 import com.scratchdisk.util.IntegerEnumUtils;
-import com.scratchdisk.util.SoftIntMap;
+import com.scratchdisk.util.SoftIntHashMap;
 import com.scriptographer.CommitManager;
 import com.scriptographer.ScriptographerEngine;
 import com.scriptographer.ScriptographerException;
@@ -60,6 +60,18 @@ public class Document extends NativeObject implements ChangeReceiver {
 	private Dictionary data = null;
 	private Item currentStyleItem = null;
 
+	/**
+	 * The index used by getItems(), see {@link #getItemIndex()}.
+	 */
+	private ItemIndex itemIndex = null;
+	private static boolean indexItems = false;
+
+	/**
+	 * The spatial index used by getIntersectingItems(), getNearestItems() and
+	 * getItemsAt().
+	 */
+	private ItemTree itemTree = null;
+
 	/**
 	 * The current level in the undo history.
 	 */
@@ -182,10 +194,11 @@ public class Document extends NativeObject implements ChangeReceiver {
 	private static native int nativeCreate(String title, float width,
 			float height, int colorModel, int dialogStatus);
 	
-	// use a SoftIntMap to keep track of already wrapped documents:
-	private static SoftIntMap<Document> documents = new SoftIntMap<Document>();
+	// use a SoftIntHashMap to keep track of already wrapped documents:
+	private static SoftIntHashMap<Document> documents = new SoftIntHashMap<Document>();
 	
 	protected static Document wrapHandle(int handle) {
+		ScriptographerEngine.checkMainThread();
 		if (handle == 0)
 			return null;
 		Document doc = documents.get(handle);
@@ -204,6 +217,7 @@ public class Document extends NativeObject implements ChangeReceiver {
 	 * @jshide
 	 */
 	public static Document getActiveDocument() {
+		ScriptographerEngine.checkMainThread();
 		return Document.wrapHandle(nativeGetActiveDocumentHandle());
 	}
 
@@ -211,6 +225,7 @@ public class Document extends NativeObject implements ChangeReceiver {
 	 * @jshide
 	 */
 	public static Document getWorkingDocument() {
+		ScriptographerEngine.checkMainThread();
 		return Document.wrapHandle(nativeGetWorkingDocumentHandle());
 	}
 
@@ -411,16 +426,27 @@ public class Document extends NativeObject implements ChangeReceiver {
 	protected void addCreatedItem(Item item) {
 		createdItems.add(item);
 		createdState = true;
+		if (itemTree != null)
+			itemTree.add(item);
 	}
 
 	protected void addModifiedItem(Item item) {
 		modifiedItems.add(item);
 		modifiedState = true;
+		if (itemTree != null)
+			itemTree.update(item);
+	}
+
+	protected void addMovedItem(Item item) {
+		if (itemTree != null)
+			itemTree.move(item);
 	}
 
 	protected void addRemovedItem(Item item) {
 		removedItems.add(item);
 		removedState = true;
+		if (itemTree != null)
+			itemTree.remove(item);
 	}
 
 	/*
@@ -459,6 +485,7 @@ public class Document extends NativeObject implements ChangeReceiver {
 		// when documents get closed. This happens through a
 		// kDocumentClosedNotifier on the native side.
 		documents.remove(handle);
+		CommitManager.release(this);
 		handle = 0;
 		// Closing this document has invalidated depending Dictionaries.
 		// We need to call releaseInvalid now before the invalid dictionaries
@@ -471,6 +498,7 @@ public class Document extends NativeObject implements ChangeReceiver {
 			ScriptographerEngine.logConsole("Revert");
 		resetHistory();
 		Item.checkItems(this, Long.MAX_VALUE);
+		invalidateItemIndex();
 	}
 
 	/**
@@ -480,8 +508,10 @@ public class Document extends NativeObject implements ChangeReceiver {
 			int redoLevel) {
 		if (artHandles != null)
 			Item.updateIfWrapped(artHandles);
-		// TODO: Look into making CommitManager.version document dependent?
-		CommitManager.version++;
+		// Only invalidate values versioned for this document
+		CommitManager.increaseVersion(this);
+		// The user might have created or deleted items
+		invalidateItemIndex();
 		if (trackUndoHistory) {
 			setHistoryLevels(undoLevel, redoLevel, true);
 		}
@@ -508,6 +538,7 @@ public class Document extends NativeObject implements ChangeReceiver {
 			// updates handles form the handleHistory in modified items.
 			Item.checkItems(this, previousVersion);
 		}
+		invalidateItemIndex();
 	}
 
 	protected void onRedo(int undoLevel, int redoLevel) {
@@ -524,6 +555,7 @@ public class Document extends NativeObject implements ChangeReceiver {
 			}
 			setHistoryLevels(undoLevel, redoLevel, false);
 		}
+		invalidateItemIndex();
 	}
 
 	protected void onClear(int[] artHandles) {
@@ -531,6 +563,7 @@ public class Document extends NativeObject implements ChangeReceiver {
 			ScriptographerEngine.logConsole("Clear");
 		if (artHandles != null)
 			Item.removeIfWrapped(artHandles, false);
+		invalidateItemIndex();
 	}
 
 	private static native void nativeBeginExecution(boolean topDownCoordinates,
@@ -551,6 +584,10 @@ public class Document extends NativeObject implements ChangeReceiver {
 		int[] returnValues = new int[3]; // docHandle, undoLevel, redoLevel
 		nativeBeginExecution(topDownCoordinates, updateCoordinates,
 				returnValues);
+		// Between executions, items may have been changed without any
+		// notification, e.g. locked or hidden in the Layers palette, so the
+		// item index and the cached values need to be fetched again.
+		CommitManager.markUntrackedChange();
 		Document document = wrapHandle(returnValues[0]);
 		if (document != null)
 			document.setHistoryLevels(returnValues[1], returnValues[2], true);
@@ -645,10 +682,139 @@ public class Document extends NativeObject implements ChangeReceiver {
 	 */
 	public native ItemList getSelectedItems();
 
+	/**
+	 * Fetches the values of an {@link ItemSnapshot} of the item with the
+	 * given handle and its descendants, or of all layers if the handle is 0.
+	 * Computing the bounds of each item is the most expensive part, so it can
+	 * be skipped, in which case they are all 0.
+	 */
+	protected native int[] nativeGetSnapshot(int artHandle, boolean bounds);
+
+	/**
+	 * Returns a snapshot of all items in the document, fetched in one go. Use
+	 * it to walk or search large documents quickly.
+	 * 
+	 * Sample code:
+	 * <code>
+	 * var snapshot = document.snapshot();
+	 * print(snapshot.length); // The amount of items in the document
+	 * </code>
+	 */
+	public ItemSnapshot snapshot() {
+		return new ItemSnapshot(this, nativeGetSnapshot(0, true));
+	}
+
+	/**
+	 * Returns a snapshot without the bounds of the items, for uses that only
+	 * need the hierarchy, the types and the attributes.
+	 */
+	protected ItemSnapshot snapshotWithoutBounds() {
+		return new ItemSnapshot(this, nativeGetSnapshot(0, false));
+	}
+
 
 	protected native ItemList getMatchingItems(Class type, int whichAttributes,
 			int attributes);
 
+	/**
+	 * Returns the index that answers {@link #getItems(ItemAttributes)}
+	 * queries, or null if indexing is turned off.
+	 */
+	protected ItemIndex getItemIndex() {
+		if (!indexItems)
+			return null;
+		if (itemIndex == null)
+			itemIndex = new ItemIndex(this);
+		return itemIndex;
+	}
+
+	private void invalidateItemIndex() {
+		if (itemIndex != null)
+			itemIndex.invalidate();
+		if (itemTree != null)
+			itemTree.invalidate();
+	}
+
+	private ItemTree getItemTree() {
+		if (itemTree == null)
+			itemTree = new ItemTree(this);
+		return itemTree;
+	}
+
+	/**
+	 * Returns all items whose bounds intersect the rectangle. Groups and layers
+	 * are not returned themselves, and compound paths are returned instead of
+	 * their children.
+	 * 
+	 * Sample code:
+	 * <code>
+	 * var items = document.getIntersectingItems(new Rectangle(0, 0, 100, 100));
+	 * </code>
+	 * 
+	 * @param rect the rectangle to intersect with
+	 * @return the items whose bounds intersect the rectangle
+	 */
+	public ItemList getIntersectingItems(Rectangle rect) {
+		return getItemTree().getItems(rect.x, rect.y, rect.x + rect.width,
+				rect.y + rect.height);
+	}
+
+	/**
+	 * Returns the items whose bounds are closest to the point, ordered by
+	 * their distance, the closest item first. Items whose bounds contain the
+	 * point have a distance of 0. Groups and layers are not returned
+	 * themselves.
+	 * 
+	 * @param point the point to measure the distance from
+	 * @param count the maximum amount of items to return
+	 * @return the closest items
+	 */
+	public ItemList getNearestItems(Point point, int count) {
+		return getItemTree().getNearestItems(point.x, point.y, count);
+	}
+
+	/**
+	 * Returns the items whose bounds, expanded by the tolerance, contain the
+	 * point. This is a quick way to find the candidates for
+	 * {@link Item#hitTest(Point, HitRequest, float)}, as all other items can
+	 * be left out.
+	 * 
+	 * @param point the point to look at
+	 * @param tolerance the distance by which the bounds are expanded
+	 *        {@default 0}
+	 * @return the items that might be hit at the point
+	 */
+	public ItemList getItemsAt(Point point, float tolerance) {
+		return getItemTree().getItems(point.x - tolerance,
+				point.y - tolerance, point.x + tolerance, point.y + tolerance);
+	}
+
+	public ItemList getItemsAt(Point point) {
+		return getItemsAt(point, 0);
+	}
+
+	/**
+	 * Turns the use of a Java side index of all items for
+	 * {@link #getItems(ItemAttributes)} on and off. The index makes repeated
+	 * queries much faster, but needs to be fetched again after each change of
+	 * the document, and at least once per execution. It is off by default, as
+	 * scripts that change the document between queries would fetch it for
+	 * each of them. Turn it on for scripts that query many times between
+	 * changes.
+	 * 
+	 * @jshide
+	 */
+	public static void setIndexItems(boolean index) {
+		indexItems = index;
+	}
+
+	/**
+	 * @jshide
+	 */
+	public static boolean getIndexItems() {
+		return indexItems;
+	}
+
 	/**
 	 * Returns all items that match a set of attributes, as specified by the
 	 * passed map. For each of the keys in the map, the demanded value can
@@ -795,7 +961,13 @@ public class Document extends NativeObject implements ChangeReceiver {
 	 */
 	public native Point getPageOrigin();
 	
-	public native void setPageOrigin(Point pt);
+	private native void nativeSetPageOrigin(Point pt);
+
+	public void setPageOrigin(Point pt) {
+		nativeSetPageOrigin(pt);
+		// Cached item coordinates are relative to the origin.
+		CommitManager.markUntrackedChange();
+	}
 
 	/**
 	 * The point of the ruler origin of the document, relative to the bottom
@@ -803,7 +975,12 @@ public class Document extends NativeObject implements ChangeReceiver {
 	 */
 	public native Point getRulerOrigin();
 	
-	public native void setRulerOrigin(Point pt);
+	private native void nativeSetRulerOrigin(Point pt);
+
+	public void setRulerOrigin(Point pt) {
+		nativeSetRulerOrigin(pt);
+		CommitManager.markUntrackedChange();
+	}
 
 	/**
 	 * The size of the document.
@@ -811,10 +988,16 @@ public class Document extends NativeObject implements ChangeReceiver {
 	 */
 	public native Size getSize();
 
+	private native void nativeSetSize(double width, double height);
+
 	/**
 	 * @jshide
 	 */
-	public native void setSize(double width, double height);
+	public void setSize(double width, double height) {
+		nativeSetSize(width, height);
+		// Top-down coordinates depend on the size of the document.
+		CommitManager.markUntrackedChange();
+	}
 	
 	public void setSize(Size size) {
 		if (size != null)
@@ -1053,7 +1236,7 @@ public class Document extends NativeObject implements ChangeReceiver {
 		// When there is only one document, closing it and opening a new one
 		// results in the same document handle. Versioning seems the only way to
 		// keep story lists updated.
-		if (stories == null || stories.version != CommitManager.version) {
+		if (stories == null || stories.version != CommitManager.getVersion(this)) {
 			int handle = storyProvider != null
 					? nativeGetStories(storyProvider.getStoryHandle(), release)
 					: 0;
@@ -1097,9 +1280,19 @@ public class Document extends NativeObject implements ChangeReceiver {
 	 */
 	public native void redraw();
 
-	public native void undo();
+	private native void nativeUndo();
 
-	public native void redo();
+	private native void nativeRedo();
+
+	public void undo() {
+		nativeUndo();
+		CommitManager.markUntrackedChange();
+	}
+
+	public void redo() {
+		nativeRedo();
+		CommitManager.markUntrackedChange();
+	}
 
 	/**
 	 * Places a file in the document.
@@ -1114,7 +1307,13 @@ public class Document extends NativeObject implements ChangeReceiver {
 	 * @param linked when set to {@code true}, the placed object is a
 	 *        link to the file, otherwise it is embedded within the document
 	 */
-	public native Item place(File file, boolean linked);
+	public Item place(File file, boolean linked) {
+		Item item = nativePlace(file, linked);
+		CommitManager.markUntrackedChange();
+		return item;
+	}
+
+	private native Item nativePlace(File file, boolean linked);
 	
 	public Item place(File file) {
 		return place(file, true);
@@ -1196,6 +1395,8 @@ public class Document extends NativeObject implements ChangeReceiver {
 	public void selectAll() {
 		commitCurrentStyle();
 		nativeSelectAll();
+		// The selection is cached as an item attribute.
+		CommitManager.changeVersion++;
 	}
 
 	private native void nativeDeselectAll();
@@ -1206,6 +1407,7 @@ public class Document extends NativeObject implements ChangeReceiver {
 	public void deselectAll() {
 		commitCurrentStyle();
 		nativeDeselectAll();
+		CommitManager.changeVersion++;
 	}
 
 	/* TODO: make these
@@ -1224,6 +1426,11 @@ public class Document extends NativeObject implements ChangeReceiver {
 		return new CompoundPath();
 	}
 
+	protected Group createGroup(Item[] children) {
+		activate(false, true);
+		return new Group(children);
+	}
+
 	/**
 	 * Creates a PathItem from a given Java2D PathIterator. Determines weather a
 	 * CompoundPath or simple Path is sufficient.
@@ -1718,7 +1925,13 @@ public class Document extends NativeObject implements ChangeReceiver {
 	 * Text reflow is suspended during script execution. when reflowText() is
 	 * called, the reflow of text is forced.
 	 */
-	public native void reflowText();
+	public void reflowText() {
+		nativeReflowText();
+		// Reflowing changes the bounds of text items.
+		CommitManager.markUntrackedChange();
+	}
+
+	private native void nativeReflowText();
 
 	/**
 	 * Checks whether the document is valid, i.e. it hasn't been closed.
@@ -1742,7 +1955,12 @@ public class Document extends NativeObject implements ChangeReceiver {
 	 * 
 	 * Cuts the selected items to the clipboard.
 	 */
-	public native void cut();
+	public void cut() {
+		nativeCut();
+		CommitManager.markUntrackedChange();
+	}
+
+	private native void nativeCut();
 	
 	/**
 	 * Copies the selected items to the clipboard.
@@ -1753,7 +1971,12 @@ public class Document extends NativeObject implements ChangeReceiver {
 	 * Pastes the contents of the clipboard into the active layer of the
 	 * document.
 	 */
-	public native void paste();
+	public void paste() {
+		nativePaste();
+		CommitManager.markUntrackedChange();
+	}
+
+	private native void nativePaste();
 
 	/**
 	 * Returns a Graphics2D object that can be used to draw into the AI
@@ -26,7 +26,7 @@ import com.scratchdisk.list.ReadOnlyList;
 import com.scratchdisk.script.ChangeReceiver;
 import com.scratchdisk.util.ArrayList;
 import com.scratchdisk.util.IntegerEnumUtils;
-import com.scratchdisk.util.SoftIntMap;
+import com.scratchdisk.util.SoftIntHashMap;
 import com.scriptographer.CommitManager;
 import com.scriptographer.ScriptographerEngine;
 import com.scriptographer.ScriptographerException;
@@ -103,10 +103,40 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * Internal hash map that keeps track of already wrapped objects. defined
 	 * as soft.
 	 */
-	private static SoftIntMap<Item> items = new SoftIntMap<Item>();
+	private static SoftIntHashMap<Item> items = new SoftIntHashMap<Item>();
 
 	private PathStyle style = null;
 
+	/**
+	 * Property values cached by {@link #getCached(int)}, along with the
+	 * versions they were fetched at.
+	 */
+	private Object[] cachedValues = null;
+	private int[] cachedVersions = null;
+	private int[] cachedChangeVersions = null;
+
+	private static boolean cacheProperties = true;
+	private static int cacheHits = 0;
+	private static int cacheMisses = 0;
+
+	private static final int
+		CACHE_BOUNDS = 0,
+		CACHE_STROKE_BOUNDS = 1,
+		CACHE_CONTROL_BOUNDS = 2,
+		CACHE_POSITION = 3,
+		CACHE_ATTRIBUTES = 4,
+		CACHE_NAME = 5,
+		CACHE_OPACITY = 6,
+		CACHE_BLEND_MODE = 7,
+		CACHE_SIZE = 8;
+
+	/**
+	 * Values with an index below this may change through changes to other
+	 * items too, e.g. the bounds of a group when one of its children is
+	 * moved, so they also depend on {@link CommitManager#changeVersion}.
+	 */
+	private static final int CACHE_SHARED = CACHE_NAME;
+
 	/**
 	 * For Document#currentStyleItem
 	 */
@@ -198,6 +228,8 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 			// This item's versions need to be updated after the history cycle
 			// is finished.
 			document.addCreatedItem(this);
+			// New items change the bounds of their parents
+			CommitManager.changeVersion++;
 		} else {
 			// This is an existing item of which the creation level is unknown.
 			// set levels to -1
@@ -259,6 +291,7 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 */
 	protected static Item wrapHandle(int artHandle, short type, int textType,
 			int docHandle, boolean wrapped, boolean created) {
+		ScriptographerEngine.checkMainThread();
 		// ScriptographerEngine.logConsole("wrapHandle: @" + Integer.toHexString(artHandle));
 		// First see whether the object was already wrapped before:
 		Item item = null;
@@ -378,6 +411,7 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 					item.version++;
 			}
 		}
+		CommitManager.markUntrackedChange();
 	}
 
 	/**
@@ -437,6 +471,7 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 		}
 		// Update
 		version++;
+		CommitManager.markUntrackedChange();
 	}
 
 	/**
@@ -510,6 +545,95 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 		return this.needsUpdate(version);
 	}
 
+	/**
+	 * Returns the cached value of the property at index, or null if it was not
+	 * cached yet or needs to be fetched again because the item has changed
+	 * since, as determined by {@link #needsUpdate(int)}.
+	 */
+	private Object getCached(int index) {
+		if (cacheProperties && cachedValues != null) {
+			Object value = cachedValues[index];
+			if (value != null && !needsUpdate(cachedVersions[index])
+					&& (index >= CACHE_SHARED || cachedChangeVersions[index]
+							== CommitManager.changeVersion)) {
+				cacheHits++;
+				return value;
+			}
+		}
+		cacheMisses++;
+		return null;
+	}
+
+	private void setCached(int index, Object value) {
+		if (cacheProperties) {
+			if (cachedValues == null) {
+				cachedValues = new Object[CACHE_SIZE];
+				cachedVersions = new int[CACHE_SIZE];
+				cachedChangeVersions = new int[CACHE_SIZE];
+			}
+			cachedValues[index] = value;
+			cachedVersions[index] = version;
+			cachedChangeVersions[index] = CommitManager.changeVersion;
+		}
+	}
+
+	/**
+	 * Called by setters, to invalidate cached values after the item was
+	 * changed. As this may affect other items too, their shared values are
+	 * invalidated as well.
+	 */
+	private void clearCached(int index) {
+		if (cachedValues != null)
+			cachedValues[index] = null;
+		CommitManager.changeVersion++;
+	}
+
+	/**
+	 * Turns caching of native property values such as the bounds, the name or
+	 * the opacity of items on and off. Cached values are fetched again
+	 * whenever the item or the document's history changes.
+	 * 
+	 * @jshide
+	 */
+	public static void setCacheProperties(boolean cache) {
+		cacheProperties = cache;
+	}
+
+	/**
+	 * @jshide
+	 */
+	public static boolean getCacheProperties() {
+		return cacheProperties;
+	}
+
+	/**
+	 * Returns the amount of property reads that were answered from the cache
+	 * since the statistics were last reset.
+	 * 
+	 * @jshide
+	 */
+	public static int getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * Returns the amount of property reads that needed to be fetched from
+	 * the native side since the statistics were last reset.
+	 * 
+	 * @jshide
+	 */
+	public static int getCacheMisses() {
+		return cacheMisses;
+	}
+
+	/**
+	 * @jshide
+	 */
+	public static void resetCacheStatistics() {
+		cacheHits = 0;
+		cacheMisses = 0;
+	}
+
 	/**
 	 * Called by native methods through commitIfWrapped if all cached changes
 	 * need to be committed before the objects are modified.
@@ -522,6 +646,8 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 		// Increasing version by one causes refetching of cached data:
 		if (invalidate)
 			version++;
+		if (committed || invalidate)
+			CommitManager.changeVersion++;
 		return committed;
 	}
 
@@ -549,6 +675,7 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 			// This item's versions need to be updated after the history cycle
 			// is finished.
 			document.addRemovedItem(this);
+			CommitManager.changeVersion++;
 			return true;
 		}
 		return false;
@@ -590,14 +717,27 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * @param document the document to copy the item to
 	 * @return the new copy of the item
 	 */
-	public native Item copyTo(Document document);
+	public Item copyTo(Document document) {
+		Item item = nativeCopyTo(document);
+		// The copy changes the bounds of its new parents.
+		CommitManager.markUntrackedChange();
+		return item;
+	}
+
+	private native Item nativeCopyTo(Document document);
 
 	/**
 	 * Copies the item into the specified item.
 	 * 
 	 * @param item
 	 */
-	public native Item copyTo(Item item);
+	public Item copyTo(Item item) {
+		Item copy = nativeCopyTo(item);
+		CommitManager.markUntrackedChange();
+		return copy;
+	}
+
+	private native Item nativeCopyTo(Item item);
 
 	/**
 	 * Clones the item within the same document.
@@ -623,9 +763,24 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * print(layer.name); // 'A nice name'
 	 * </code>
 	 */
-	public native String getName();
+	public String getName() {
+		// Use an empty string for unnamed items, so they can be cached too
+		String name = (String) getCached(CACHE_NAME);
+		if (name == null) {
+			name = nativeGetName();
+			setCached(CACHE_NAME, name != null ? name : "");
+		}
+		return name != null && name.length() > 0 ? name : null;
+	}
 
-	public native void setName(String name);
+	public void setName(String name) {
+		nativeSetName(name);
+		clearCached(CACHE_NAME);
+	}
+
+	private native String nativeGetName();
+
+	private native void nativeSetName(String name);
 
 	/**
 	 * The item's position within the art board. This is the
@@ -644,7 +799,17 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * print(circle.position); // { x: 30, y: 20 }
 	 * </code>
 	 */
-	public native Point getPosition();
+	public Point getPosition() {
+		Point position = (Point) getCached(CACHE_POSITION);
+		if (position == null) {
+			position = nativeGetPosition();
+			setCached(CACHE_POSITION, position);
+		}
+		// Hand out copies, as points can be modified
+		return position != null ? new Point(position) : null;
+	}
+
+	private native Point nativeGetPosition();
 
 	public void setPosition(Point pt) {
 		translate(pt.subtract(getPosition()));
@@ -708,7 +873,12 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * after an operation that would change them.
 	 */
 	protected int getAttributes() {
-		return nativeGetAttributes(0xffffffff);
+		Integer attributes = (Integer) getCached(CACHE_ATTRIBUTES);
+		if (attributes == null) {
+			attributes = nativeGetAttributes(0xffffffff);
+			setCached(CACHE_ATTRIBUTES, attributes);
+		}
+		return attributes;
 	}
 
 	protected void setAttributes(int attributes) {
@@ -717,6 +887,7 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 		//	nativeSetAttributes(0xffffffff, attributes);
 		for (ItemAttribute attribute : ItemAttribute.values())
 			nativeSetAttributes(attribute.value, attributes & attribute.value);
+		clearCached(CACHE_ATTRIBUTES);
 	}
 
 	/**
@@ -724,7 +895,7 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 */
 	public boolean getAttribute(ItemAttribute attribute) {
 		if (attribute != null)
-			return (nativeGetAttributes(attribute.value) & attribute.value) != 0;
+			return (getAttributes() & attribute.value) != 0;
 		return false;
 	}
 
@@ -736,7 +907,12 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 			if (attribute == ItemAttribute.SELECTED
 					|| attribute == ItemAttribute.FULLY_SELECTED)
 				document.commitCurrentStyle();
+			int changeVersion = CommitManager.changeVersion;
 			nativeSetAttributes(attribute.value, value ? attribute.value : 0);
+			clearCached(CACHE_ATTRIBUTES);
+			ItemIndex index = document.getItemIndex();
+			if (index != null)
+				index.setAttribute(this, attribute, value, changeVersion);
 		}
 	}
 
@@ -912,11 +1088,18 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * </code>
 	 */
 	public BlendMode getBlendMode() {
-		return IntegerEnumUtils.get(BlendMode.class, nativeGetBlendMode());
+		BlendMode blendMode = (BlendMode) getCached(CACHE_BLEND_MODE);
+		if (blendMode == null) {
+			blendMode = IntegerEnumUtils.get(BlendMode.class,
+					nativeGetBlendMode());
+			setCached(CACHE_BLEND_MODE, blendMode);
+		}
+		return blendMode;
 	}
 
 	public void setBlendMode(BlendMode blend) {
 		nativeSetBlendMode(blend.value);
+		clearCached(CACHE_BLEND_MODE);
 	}
 
 	/**
@@ -933,9 +1116,23 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * 
 	 * @return the opacity of the item as a value between 0 and 1.
 	 */
-	public native float getOpacity();
+	public float getOpacity() {
+		Float opacity = (Float) getCached(CACHE_OPACITY);
+		if (opacity == null) {
+			opacity = nativeGetOpacity();
+			setCached(CACHE_OPACITY, opacity);
+		}
+		return opacity;
+	}
+
+	public void setOpacity(float opacity) {
+		nativeSetOpacity(opacity);
+		clearCached(CACHE_OPACITY);
+	}
 
-	public native void setOpacity(float opacity);
+	private native float nativeGetOpacity();
+
+	private native void nativeSetOpacity(float opacity);
 
 	public native boolean getIsolated();
 
@@ -999,8 +1196,11 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 			// The moment we pass params to nativeAddEffect, Illustrator
 			// will take care of the releasing, so set release to false.
 			params.release = false;
-			return nativeAddEffect(effect, params, position != null
+			boolean added = nativeAddEffect(effect, params, position != null
 					? position.value : effect.getPosition().value);
+			// Effects change the bounds of the item and its parents.
+			CommitManager.markUntrackedChange();
+			return added;
 		}
 		return false;
 	}
@@ -1022,17 +1222,31 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	private native boolean nativeAddEffect(LiveEffect effect,
 			LiveEffectParameters data, int position);
 
+	private native boolean nativeEditEffect(LiveEffect effect,
+			Map<String, Object> parameters);
+
 	/**
 	 * @jshide
 	 */
-	public native boolean editEffect(LiveEffect effect,
+	public boolean editEffect(LiveEffect effect,
+			Map<String, Object> parameters) {
+		boolean edited = nativeEditEffect(effect, parameters);
+		CommitManager.markUntrackedChange();
+		return edited;
+	}
+
+	private native boolean nativeRemoveEffect(LiveEffect effect,
 			Map<String, Object> parameters);
 
 	/**
 	 * @jshide
 	 */
-	public native boolean removeEffect(LiveEffect effect,
-			Map<String, Object> parameters);
+	public boolean removeEffect(LiveEffect effect,
+			Map<String, Object> parameters) {
+		boolean removed = nativeRemoveEffect(effect, parameters);
+		CommitManager.markUntrackedChange();
+		return removed;
+	}
 
 	/**
 	 * An object contained within the item which can be used to store data.
@@ -1146,6 +1360,21 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 		setChildren(Lists.asList(children));
 	}
 
+	/**
+	 * Returns a snapshot of the item and all its descendants, fetched in one
+	 * go. The item itself is the first node in the snapshot.
+	 * 
+	 * Sample code:
+	 * <code>
+	 * var snapshot = group.snapshot();
+	 * var paths = snapshot.find({ type: Path });
+	 * print(paths.length);
+	 * </code>
+	 */
+	public ItemSnapshot snapshot() {
+		return new ItemSnapshot(document, document.nativeGetSnapshot(handle, true));
+	}
+
 	/**
 	 * Reverses the order of this item's children
 	 */
@@ -1194,7 +1423,29 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * 
 	 * The bounding rectangle of the item excluding stroke width.
 	 */
-	public native Rectangle getBounds();
+	public Rectangle getBounds() {
+		return getCachedBounds(CACHE_BOUNDS);
+	}
+
+	/**
+	 * Returns a copy of the bounds at index, fetching them first if they are
+	 * not cached.
+	 */
+	private Rectangle getCachedBounds(int index) {
+		Rectangle bounds = (Rectangle) getCached(index);
+		if (bounds == null) {
+			bounds = nativeGetBounds(index);
+			setCached(index, bounds);
+		}
+		// Hand out copies, as rectangles can be modified
+		return bounds != null ? new Rectangle(bounds) : null;
+	}
+
+	/**
+	 * Fetches the bounds of the given type: CACHE_BOUNDS, CACHE_STROKE_BOUNDS
+	 * or CACHE_CONTROL_BOUNDS.
+	 */
+	private native Rectangle nativeGetBounds(int type);
 
 	/**
 	 * @jshide
@@ -1227,12 +1478,16 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	/**
 	 * The bounding rectangle of the item including stroke width.
 	 */
-	public native Rectangle getStrokeBounds();
+	public Rectangle getStrokeBounds() {
+		return getCachedBounds(CACHE_STROKE_BOUNDS);
+	}
 
 	/**
 	 * The bounding rectangle of the item including stroke width and controls.
 	 */
-	public native Rectangle getControlBounds();
+	public Rectangle getControlBounds() {
+		return getCachedBounds(CACHE_CONTROL_BOUNDS);
+	}
 
 	/*
 	 * Stroke Styles
@@ -1424,7 +1679,14 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * @return the newly created item containing the expanded artwork
 	 */
 	public Item expand(EnumSet<ExpandFlag> flags, int steps) {
-		return nativeExpand(IntegerEnumUtils.getFlags(flags), steps);
+		return expand(IntegerEnumUtils.getFlags(flags), steps);
+	}
+
+	private Item expand(int flags, int steps) {
+		Item item = nativeExpand(flags, steps);
+		// The item is replaced by the expanded artwork.
+		CommitManager.markUntrackedChange();
+		return item;
 	}
 
 	public Item expand(EnumSet<ExpandFlag> flags) {
@@ -1452,7 +1714,7 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * @return the newly created item containing the expanded artwork
 	 */
 	public Item expand() {
-		return nativeExpand(defaultExpandFlags, 0);
+		return expand(defaultExpandFlags, 0);
 	}
 
 	private native Raster nativeRasterize(int type, float resolution,
@@ -1471,8 +1733,10 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 */
 	public Raster rasterize(ColorType type, float resolution, int antialiasing,
 			float width, float height) {
-		return nativeRasterize(type != null ? type.value : -1, resolution,
-				antialiasing, width, height);
+		Raster raster = nativeRasterize(type != null ? type.value : -1,
+				resolution, antialiasing, width, height);
+		CommitManager.markUntrackedChange();
+		return raster;
 	}
 
 	public Raster rasterize(ColorType type, float resolution, int antialiasing) {
@@ -1507,8 +1771,10 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 */
 	public static Raster rasterize(Item[] items, ColorType type,
 			float resolution, int antialiasing, float width, float height) {
-		return nativeRasterize(items, type != null ? type.value : -1,
+		Raster raster = nativeRasterize(items, type != null ? type.value : -1,
 				resolution, antialiasing, width, height);
+		CommitManager.markUntrackedChange();
+		return raster;
 	}
 
 	public static Raster rasterize(Item[] items, ColorType type,
@@ -1566,6 +1832,8 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * @return {@true if the item is valid}
 	 */
 	public boolean isValid() {
+		// Checked before most native calls, see checkValid()
+		ScriptographerEngine.checkMainThread();
 		if (!Document.trackUndoHistory)
 			return Item.isValid(handle);
 		boolean valid = handle != 0
@@ -1644,7 +1912,17 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * 
 	 * @param item The item that will be appended as a child
 	 */
-	public native boolean appendTop(Item item);
+	public boolean appendTop(Item item) {
+		if (nativeAppendTop(item)) {
+			// Moving items changes the bounds of their old and new parents
+			CommitManager.changeVersion++;
+			document.addMovedItem(item);
+			return true;
+		}
+		return false;
+	}
+
+	private native boolean nativeAppendTop(Item item);
 
 	/*
 	public boolean appendTop(Item... items) {
@@ -1672,7 +1950,16 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * 
 	 * @param item The item that will be appended as a child
 	 */
-	public native boolean appendBottom(Item item);
+	public boolean appendBottom(Item item) {
+		if (nativeAppendBottom(item)) {
+			CommitManager.changeVersion++;
+			document.addMovedItem(item);
+			return true;
+		}
+		return false;
+	}
+
+	private native boolean nativeAppendBottom(Item item);
 
 	/**
 	 * A link to {@link #appendTop}
@@ -1698,7 +1985,16 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * @param item The item above which it should be moved
 	 * @return true if it was moved, false otherwise
 	 */
-	public native boolean moveAbove(Item item);
+	public boolean moveAbove(Item item) {
+		if (nativeMoveAbove(item)) {
+			CommitManager.changeVersion++;
+			document.addMovedItem(this);
+			return true;
+		}
+		return false;
+	}
+
+	private native boolean nativeMoveAbove(Item item);
 
 	/**
 	 * Moves the item below the specified item.
@@ -1715,7 +2011,16 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 * @param item the item below which it should be moved
 	 * @return true if it was moved, false otherwise
 	 */
-	public native boolean moveBelow(Item item);
+	public boolean moveBelow(Item item) {
+		if (nativeMoveBelow(item)) {
+			CommitManager.changeVersion++;
+			document.addMovedItem(this);
+			return true;
+		}
+		return false;
+	}
+
+	private native boolean nativeMoveBelow(Item item);
 
 	/**
 	 * {@grouptitle Hierarchy Tests}
@@ -1944,6 +2249,7 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 */
 	public void transform(Matrix matrix, EnumSet<TransformFlag> flags) {
 		nativeTransform(matrix, IntegerEnumUtils.getFlags(flags));
+		setModified();
 	}
 
 	/**
@@ -1968,6 +2274,7 @@ public class Item extends DocumentObject implements Style, ChangeReceiver {
 	 */
 	public void transform(Matrix matrix) {
 		nativeTransform(matrix, defaultTransformFlags);
+		setModified();
 	}
 
 	/* TODO:
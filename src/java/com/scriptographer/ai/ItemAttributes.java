@@ -74,23 +74,14 @@ public class ItemAttributes {
 	 * @return
 	 */
 	protected ItemList getItems(Document document) {
-		// Convert the attributes list to a new HashMap containing only
-		// integer -> boolean pairs.
-		int whichAttrs = 0, attrs = 0;
-		for (Map.Entry<ItemAttribute, Boolean> entry : attributes.entrySet()) {
-			ItemAttribute attribute = entry.getKey();
-			Boolean value = entry.getValue();
-			if (value != null) {
-				whichAttrs |= attribute.value;
-				if (value)
-					attrs |= attribute.value;
-			}
-		}
-		ItemList items = new ItemList();
-		
+		int whichAttrs = getWhichAttributes(), attrs = getAttributeValues();
 		// If no class was specified, match them all through Item.
 		Class[] types = this.types != null
 				? this.types : new Class[] { Item.class };
+		ItemIndex index = document.getItemIndex();
+		if (index != null && ItemIndex.canQuery(whichAttrs))
+			return index.getItems(getItemTypes(), whichAttrs, attrs);
+		ItemList items = new ItemList();
 		for (int i = 0; i < types.length; i++) {
 			Class type = types[i];
 			// Expand PathItem -> Path / CompoundPath
@@ -122,6 +113,31 @@ public class ItemAttributes {
 		return items;
 	}
 
+	/**
+	 * Returns the bits of the attributes that are to be checked.
+	 */
+	protected int getWhichAttributes() {
+		int whichAttrs = 0;
+		for (Map.Entry<ItemAttribute, Boolean> entry : attributes.entrySet()) {
+			if (entry.getValue() != null)
+				whichAttrs |= entry.getKey().value;
+		}
+		return whichAttrs;
+	}
+
+	/**
+	 * Returns the demanded values of the attributes that are to be checked.
+	 */
+	protected int getAttributeValues() {
+		int attrs = 0;
+		for (Map.Entry<ItemAttribute, Boolean> entry : attributes.entrySet()) {
+			Boolean value = entry.getValue();
+			if (value != null && value)
+				attrs |= entry.getKey().value;
+		}
+		return attrs;
+	}
+
 	/**
 	 * The type of items to search for. It can be set to any of the {@link Item}
 	 * classes, a {@code String} describing the name of such a class, or an
@@ -136,6 +152,21 @@ public class ItemAttributes {
 		return types;
 	}
 
+	/**
+	 * Returns the types as subclasses of Item, or Item itself to match all
+	 * items if no types were specified.
+	 */
+	@SuppressWarnings("unchecked")
+	protected Class<? extends Item>[] getItemTypes() {
+		if (types == null)
+			return (Class<? extends Item>[]) new Class<?>[] { Item.class };
+		// setType() only keeps classes inheriting Item.
+		Class<?>[] itemTypes = new Class<?>[types.length];
+		for (int i = 0; i < types.length; i++)
+			itemTypes[i] = types[i].asSubclass(Item.class);
+		return (Class<? extends Item>[]) itemTypes;
+	}
+
 	public void setType(Class[] types) {
 		if (types == null) {
 			this.types = null;
@@ -0,0 +1,197 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scriptographer.ai;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.scriptographer.CommitManager;
+
+/**
+ * An index of the items of a document, used by
+ * {@link Document#getItems(ItemAttributes)} instead of asking Illustrator to
+ * search the whole document for each query. It holds an {@link ItemSnapshot}
+ * of the document, along with one bitmap per item class and one per attribute
+ * bit, so queries are answered by combining bitmaps. It is only used when
+ * turned on through {@link Document#setIndexItems(boolean)}.
+ *
+ * The index is fetched again on the next query once the document was changed
+ * by the user, through undo and redo, or by scripts, see
+ * {@link CommitManager#changeVersion}. As Illustrator does not notify about
+ * all changes made in its palettes, e.g. locking or hiding items in the Layers
+ * palette, the version is also increased at the beginning of each execution,
+ * so the index is only ever reused within one execution. Changes of
+ * attributes that only concern the item itself are applied to the bitmaps
+ * directly.
+ *
+ * @author lehni
+ *
+ * @jshide
+ */
+class ItemIndex {
+	/**
+	 * Attributes that are only meaningful for Illustrator's own matching and
+	 * are not reported per item. Queries for these are not handled here.
+	 */
+	private static final int UNINDEXED_ATTRIBUTES =
+			ItemAttribute.SELECTED_TOPLEVEL_GROUPS.value
+			| ItemAttribute.SELECTED_LAYERS.value
+			| ItemAttribute.SELECTED_TOPLEVEL_WITH_PAINT.value;
+
+	/**
+	 * Attributes that can be changed without affecting other items. The
+	 * selection of an item changes the selection state of its parents too.
+	 */
+	private static final int LOCAL_ATTRIBUTES =
+			ItemAttribute.LOCKED.value
+			| ItemAttribute.HIDDEN.value
+			| ItemAttribute.EXPANDED.value
+			| ItemAttribute.CLIP_MASK.value
+			| ItemAttribute.TEXTWRAP.value;
+
+	private Document document;
+	private ItemSnapshot snapshot = null;
+	private int changeVersion;
+	private BitSet[] attributes = new BitSet[32];
+	private HashMap<Class<? extends Item>, BitSet> types =
+			new HashMap<Class<? extends Item>, BitSet>();
+
+	ItemIndex(Document document) {
+		this.document = document;
+	}
+
+	/**
+	 * Causes the index to be fetched again on the next query.
+	 */
+	protected void invalidate() {
+		snapshot = null;
+		types.clear();
+		for (int i = 0; i < attributes.length; i++)
+			attributes[i] = null;
+	}
+
+	/**
+	 * Returns true if queries for these attributes can be answered by the
+	 * index.
+	 */
+	protected static boolean canQuery(int whichAttributes) {
+		return (whichAttributes & UNINDEXED_ATTRIBUTES) == 0;
+	}
+
+	private void update() {
+		if (snapshot != null && changeVersion == CommitManager.changeVersion)
+			return;
+		invalidate();
+		// The bounds are not needed here, and fetching them is expensive
+		snapshot = document.snapshotWithoutBounds();
+		changeVersion = CommitManager.changeVersion;
+		for (int i = 0, l = snapshot.size(); i < l; i++) {
+			Class<? extends Item> type = snapshot.getItemClass(i);
+			if (type != null) {
+				BitSet bits = types.get(type);
+				if (bits == null) {
+					bits = new BitSet(l);
+					types.put(type, bits);
+				}
+				bits.set(i);
+			}
+			for (int values = snapshot.getAttributes(i), bit = 0; values != 0;
+					values >>>= 1, bit++) {
+				if ((values & 1) != 0)
+					getAttributeBits(bit).set(i);
+			}
+		}
+	}
+
+	private BitSet getAttributeBits(int bit) {
+		BitSet bits = attributes[bit];
+		if (bits == null)
+			attributes[bit] = bits = new BitSet(snapshot.size());
+		return bits;
+	}
+
+	/**
+	 * Returns the items that are instances of one of the types and whose
+	 * attributes match, with the same semantics as
+	 * {@link Document#getMatchingItems(Class, int, int)}: Layers are only
+	 * returned when asking for them explicitly, and items are left out if
+	 * their parent matches too.
+	 */
+	protected ItemList getItems(Class<? extends Item>[] types,
+			int whichAttributes, int attributes) {
+		update();
+		BitSet matches = new BitSet(snapshot.size());
+		for (Map.Entry<Class<? extends Item>, BitSet> entry
+				: this.types.entrySet()) {
+			Class<? extends Item> cls = entry.getKey();
+			for (int i = 0; i < types.length; i++) {
+				Class<? extends Item> type = types[i];
+				if (type == Layer.class ? cls == Layer.class
+						: cls != Layer.class && type.isAssignableFrom(cls)) {
+					matches.or(entry.getValue());
+					break;
+				}
+			}
+		}
+		for (int bit = 0; whichAttributes >>> bit != 0; bit++) {
+			int mask = 1 << bit;
+			if ((whichAttributes & mask) != 0) {
+				BitSet bits = this.attributes[bit];
+				if ((attributes & mask) != 0) {
+					if (bits != null)
+						matches.and(bits);
+					else
+						matches.clear();
+				} else if (bits != null) {
+					matches.andNot(bits);
+				}
+			}
+		}
+		ItemList items = new ItemList();
+		for (int i = matches.nextSetBit(0); i >= 0;
+				i = matches.nextSetBit(i + 1)) {
+			int parent = snapshot.getParentIndex(i);
+			if (parent == -1 || !matches.get(parent)) {
+				Item item = snapshot.get(i);
+				if (item != null)
+					items.add(item);
+			}
+		}
+		return items;
+	}
+
+	/**
+	 * Called when an attribute of the item was changed through
+	 * {@link Item#setAttribute}, to update the bitmaps rather than fetching
+	 * the whole index again.
+	 *
+	 * @param changeVersion the value of {@link CommitManager#changeVersion}
+	 *        before the change.
+	 */
+	protected void setAttribute(Item item, ItemAttribute attribute,
+			boolean value, int changeVersion) {
+		// Only if nothing else has changed since the index was fetched
+		if (snapshot != null && this.changeVersion == changeVersion
+				&& (attribute.value & LOCAL_ATTRIBUTES) != 0) {
+			int index = snapshot.indexOf(item);
+			if (index != -1) {
+				int bit = Integer.numberOfTrailingZeros(attribute.value);
+				getAttributeBits(bit).set(index, value);
+				this.changeVersion = CommitManager.changeVersion;
+			}
+		}
+	}
+}
@@ -0,0 +1,351 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scriptographer.ai;
+
+import com.scratchdisk.list.AbstractReadOnlyList;
+import com.scratchdisk.util.IntHashMap;
+
+/**
+ * An immutable model of an item tree, as returned by
+ * {@link Document#snapshot()} and {@link Item#snapshot()}. The whole tree is
+ * fetched in one go, and can then be walked, filtered and searched without
+ * calling into Illustrator. The nodes are stored in depth-first order, so
+ * each node comes before its children, and the descendants of a node follow
+ * it in one row. Nodes are addressed by their index.
+ *
+ * The items themselves are only wrapped when they are requested through
+ * {@link #get(int)}. The snapshot does not change when the document changes,
+ * so it should only be used as long as the document is not modified.
+ *
+ * Sample code:
+ * <code>
+ * var snapshot = document.snapshot();
+ * for (var i = 0; i < snapshot.length; i++) {
+ *     if (snapshot.getParentIndex(i) == -1)
+ *         print('Layer', snapshot[i].name);
+ * }
+ * </code>
+ *
+ * @author lehni
+ */
+public class ItemSnapshot extends AbstractReadOnlyList<Item> {
+	/**
+	 * The values of each node: the index of the parent or -1, the item type,
+	 * the text type, the art handle, the attribute bits and the bounds as x,
+	 * y, width and height in float bits.
+	 */
+	protected static final int VALUES_PER_NODE = 9;
+
+	protected static final int
+		VALUE_PARENT = 0,
+		VALUE_TYPE = 1,
+		VALUE_TEXT_TYPE = 2,
+		VALUE_HANDLE = 3,
+		VALUE_ATTRIBUTES = 4,
+		VALUE_BOUNDS = 5;
+
+	private Document document;
+	private int[] values;
+	private int size;
+	// Lazily created, see #get(), #getEnd() and #indexOf()
+	private Item[] items = null;
+	private int[] ends = null;
+	private IntHashMap<Integer> indices = null;
+
+	/**
+	 * Creates a snapshot from the passed values, VALUES_PER_NODE values per
+	 * node in depth-first order. If document is null, the items cannot be
+	 * accessed, but the snapshot can still be walked and searched, which
+	 * allows the use of synthetic snapshots.
+	 *
+	 * @jshide
+	 */
+	public ItemSnapshot(Document document, int[] values) {
+		this.document = document;
+		this.values = values != null ? values : new int[0];
+		size = this.values.length / VALUES_PER_NODE;
+	}
+
+	/**
+	 * Creates a synthetic snapshot that is not connected to a document, e.g.
+	 * for tests and measurements. The items cannot be accessed.
+	 *
+	 * @jshide
+	 */
+	public ItemSnapshot(int[] values) {
+		this(null, values);
+	}
+
+	/**
+	 * The amount of items in the snapshot.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @jshide
+	 */
+	public Class<?> getComponentType() {
+		return Item.class;
+	}
+
+	/**
+	 * Returns the item at the given index, wrapping it if it was not accessed
+	 * before.
+	 */
+	public Item get(int index) {
+		if (index < 0 || index >= size || document == null)
+			return null;
+		if (items == null)
+			items = new Item[size];
+		Item item = items[index];
+		if (item == null) {
+			item = Item.wrapHandle(getValue(index, VALUE_HANDLE),
+					document.handle, false, true);
+			items[index] = item;
+		}
+		return item;
+	}
+
+	/**
+	 * @jshide
+	 */
+	public Document getDocument() {
+		return document;
+	}
+
+	private int getValue(int index, int value) {
+		return values[index * VALUES_PER_NODE + value];
+	}
+
+	/**
+	 * Returns the index of the item's parent, or -1 if the parent is not part
+	 * of the snapshot.
+	 */
+	public int getParentIndex(int index) {
+		return getValue(index, VALUE_PARENT);
+	}
+
+	/**
+	 * Returns the amount of ancestors of the item that are part of the
+	 * snapshot.
+	 */
+	public int getDepth(int index) {
+		int depth = 0;
+		for (int i = getParentIndex(index); i != -1; i = getParentIndex(i))
+			depth++;
+		return depth;
+	}
+
+	/**
+	 * Returns the index after the last descendant of the item, so the
+	 * descendants are the nodes between index + 1 and this index.
+	 */
+	public int getEnd(int index) {
+		if (ends == null) {
+			// Walk backwards, so the ends of the children are known when the
+			// parent is reached, and skip from child to child.
+			ends = new int[size];
+			for (int i = size - 1; i >= 0; i--) {
+				int end = i + 1;
+				while (end < size && getParentIndex(end) == i)
+					end = ends[end];
+				ends[i] = end;
+			}
+		}
+		return ends[index];
+	}
+
+	/**
+	 * Returns the indices of the item's children.
+	 */
+	public int[] getChildIndices(int index) {
+		int count = 0;
+		int end = getEnd(index);
+		for (int i = index + 1; i < end; i = getEnd(i))
+			count++;
+		int[] children = new int[count];
+		for (int i = index + 1, j = 0; i < end; i = getEnd(i))
+			children[j++] = i;
+		return children;
+	}
+
+	/**
+	 * Returns the class of the item, without wrapping it.
+	 */
+	public Class<? extends Item> getItemClass(int index) {
+		return getItemClass((short) getValue(index, VALUE_TYPE),
+				getValue(index, VALUE_TEXT_TYPE));
+	}
+
+	/**
+	 * Returns the class that {@link Item#wrapHandle} uses for the given type,
+	 * or null for unsupported types.
+	 */
+	protected static Class<? extends Item> getItemClass(short type,
+			int textType) {
+		switch (type) {
+		case Item.TYPE_PATH:
+			return Path.class;
+		case Item.TYPE_GROUP:
+			return Group.class;
+		case Item.TYPE_RASTER:
+			return Raster.class;
+		case Item.TYPE_PLACED:
+			return PlacedFile.class;
+		case Item.TYPE_LAYER:
+			return Layer.class;
+		case Item.TYPE_COMPOUNDPATH:
+			return CompoundPath.class;
+		case Item.TYPE_TEXTFRAME:
+			switch (textType) {
+			case TextItem.TEXTTYPE_POINT:
+				return PointText.class;
+			case TextItem.TEXTTYPE_AREA:
+				return AreaText.class;
+			case TextItem.TEXTTYPE_PATH:
+				return PathText.class;
+			}
+			return TextItem.class;
+		case Item.TYPE_TRACING:
+			return Tracing.class;
+		case Item.TYPE_SYMBOL:
+			return PlacedSymbol.class;
+		}
+		return null;
+	}
+
+	/**
+	 * @jshide
+	 */
+	public int getHandle(int index) {
+		return getValue(index, VALUE_HANDLE);
+	}
+
+	/**
+	 * @jshide
+	 */
+	public int getAttributes(int index) {
+		return getValue(index, VALUE_ATTRIBUTES);
+	}
+
+	/**
+	 * Returns the state of the given attribute of the item at the time of the
+	 * snapshot.
+	 */
+	public boolean getAttribute(int index, ItemAttribute attribute) {
+		return (getAttributes(index) & attribute.value) != 0;
+	}
+
+	/**
+	 * Returns the bounds of the item at the time of the snapshot, excluding
+	 * stroke width, as returned by {@link Item#getBounds()}.
+	 */
+	public Rectangle getBounds(int index) {
+		int offset = index * VALUES_PER_NODE + VALUE_BOUNDS;
+		return new Rectangle(
+				Float.intBitsToFloat(values[offset]),
+				Float.intBitsToFloat(values[offset + 1]),
+				Float.intBitsToFloat(values[offset + 2]),
+				Float.intBitsToFloat(values[offset + 3]));
+	}
+
+	/**
+	 * Returns the index of the item in the snapshot, or -1 if it is not part
+	 * of it.
+	 */
+	public int indexOf(Item item) {
+		if (item == null || item.document != document)
+			return -1;
+		return indexOfHandle(item.handle);
+	}
+
+	/**
+	 * @jshide
+	 */
+	public int indexOfHandle(int handle) {
+		if (indices == null) {
+			indices = new IntHashMap<Integer>(size);
+			for (int i = 0; i < size; i++)
+				indices.put(getValue(i, VALUE_HANDLE), Integer.valueOf(i));
+		}
+		Integer index = indices.get(handle);
+		return index != null ? index : -1;
+	}
+
+	/**
+	 * Returns the indices of all items that are instances of one of the
+	 * types, and whose attributes match: For each attribute bit set in
+	 * whichAttributes, the bit in attributes specifies the required value.
+	 *
+	 * @param types the item classes to match, or null to match all items
+	 * @param topLevel if true, matching items are left out if their parent
+	 *        matches too, just like in {@link Document#getItems}
+	 *
+	 * @jshide
+	 */
+	public int[] find(Class<? extends Item>[] types, int whichAttributes,
+			int attributes, boolean topLevel) {
+		int[] found = new int[16];
+		int count = 0;
+		boolean[] matched = topLevel ? new boolean[size] : null;
+		for (int i = 0; i < size; i++) {
+			if ((getAttributes(i) & whichAttributes) == attributes
+					&& isInstance(i, types)) {
+				if (topLevel) {
+					matched[i] = true;
+					int parent = getParentIndex(i);
+					if (parent != -1 && matched[parent])
+						continue;
+				}
+				if (count == found.length) {
+					int[] grown = new int[count * 2];
+					System.arraycopy(found, 0, grown, 0, count);
+					found = grown;
+				}
+				found[count++] = i;
+			}
+		}
+		int[] result = new int[count];
+		System.arraycopy(found, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Returns the indices of all items that match the attributes, with the
+	 * same semantics as {@link Document#getItems(ItemAttributes)}.
+	 */
+	public int[] find(ItemAttributes attributes) {
+		return find(attributes.getItemTypes(), attributes.getWhichAttributes(),
+				attributes.getAttributeValues(), true);
+	}
+
+	private boolean isInstance(int index, Class<? extends Item>[] types) {
+		if (types == null)
+			return true;
+		Class<? extends Item> cls = getItemClass(index);
+		if (cls != null) {
+			for (int i = 0; i < types.length; i++) {
+				// Layers are only matched when asked for explicitly
+				Class<? extends Item> type = types[i];
+				if (type == Layer.class ? cls == Layer.class
+						: cls != Layer.class && type.isAssignableFrom(cls))
+					return true;
+			}
+		}
+		return false;
+	}
+}
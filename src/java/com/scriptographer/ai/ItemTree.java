@@ -0,0 +1,439 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scriptographer.ai;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import com.scratchdisk.util.ArrayList;
+import com.scriptographer.CommitManager;
+
+/**
+ * A spatial index over the bounds of the items of a document, used by
+ * {@link Document#getIntersectingItems(Rectangle)},
+ * {@link Document#getNearestItems(Point, int)} and
+ * {@link Document#getItemsAt(Point, float)}. It is an R-tree that is bulk
+ * loaded from an {@link ItemSnapshot} through Sort-Tile-Recursive packing.
+ *
+ * Only items that are not layers or groups are indexed, and the children of
+ * compound paths are represented by the compound path itself.
+ *
+ * Items that are created, modified, moved or removed by scripts are reported
+ * through {@link #add(Item)}, {@link #update(Item)}, {@link #move(Item)} and
+ * {@link #remove(Item)}. Their entries in the tree are disabled, and the items
+ * themselves are checked one by one, until there are enough of them to make
+ * packing the tree again worth it. Pending changes of the document, such as
+ * segment edits, are committed before each query, so they are reported
+ * before the tree is used.
+ *
+ * Changes that are not reported per item, such as native calls that create
+ * or replace artwork, undo and redo, or changes made in Illustrator's palettes
+ * between executions, increase {@link CommitManager#untrackedVersion}. The
+ * tree is fetched and packed again once it has moved.
+ *
+ * @author lehni
+ *
+ * @jshide
+ */
+class ItemTree {
+	/**
+	 * The amount of children per node.
+	 */
+	private static final int NODE_SIZE = 16;
+
+	/**
+	 * The minimum amount of items checked one by one before the tree is
+	 * packed again, see {@link #isOutdated()}.
+	 */
+	private static final int MIN_CHANGED = 64;
+
+	private Document document;
+	private ItemSnapshot snapshot = null;
+	// The value of CommitManager.untrackedVersion when the snapshot was
+	// fetched
+	private int untrackedVersion;
+	// The snapshot indices of the indexed items, in the order of the leaves
+	private int[] entries;
+	// The position of each snapshot index in entries, or -1
+	private int[] positions;
+	// Disabled entries, for items that have changed since
+	private BitSet disabled;
+	// The created or modified items that need to be checked one by one
+	private ArrayList<Item> changed = new ArrayList<Item>();
+	// The bounds of the entries and of the nodes in each level, four values
+	// each: left, top, right and bottom, where top is the smaller value. The
+	// entries are level 0, the root is the only node in the last level.
+	private double[][] bounds;
+	// For each node in each level above 0, the index of its first child in the
+	// level below. The children of a node end where the next node's start.
+	private int[][] starts;
+
+	ItemTree(Document document) {
+		this.document = document;
+	}
+
+	/**
+	 * Causes the tree to be fetched and packed again on the next query.
+	 */
+	protected void invalidate() {
+		snapshot = null;
+		changed.clear();
+	}
+
+	private boolean isOutdated() {
+		return snapshot == null
+				|| untrackedVersion != CommitManager.untrackedVersion
+				|| changed.size() > Math.max(MIN_CHANGED,
+						entries.length / NODE_SIZE);
+	}
+
+	protected void add(Item item) {
+		if (snapshot != null && isIndexed(item)) {
+			changed.add(item);
+			// Items created inside a compound path change its bounds
+			Item parent = item.getParent();
+			if (parent instanceof CompoundPath)
+				update(parent);
+		}
+	}
+
+	protected void update(Item item) {
+		if (snapshot != null) {
+			if (item instanceof Group || item instanceof Layer) {
+				// The bounds of all descendants may have changed
+				invalidate();
+			} else {
+				disable(item);
+				if (!changed.contains(item))
+					changed.add(item);
+				updateCompoundPath(item);
+			}
+		}
+	}
+
+	/**
+	 * Called after the item was moved to another place in the hierarchy,
+	 * which changes the bounds of compound paths it is moved in or out of.
+	 */
+	protected void move(Item item) {
+		if (snapshot != null && isIndexed(item)) {
+			// Items moved in from other documents are not in the snapshot
+			if (snapshot.indexOf(item) == -1 && !changed.contains(item))
+				changed.add(item);
+			updateCompoundPath(item);
+			Item parent = item.getParent();
+			if (parent instanceof CompoundPath) {
+				// Now represented by the compound path
+				disable(item);
+				update(parent);
+			}
+		}
+	}
+
+	protected void remove(Item item) {
+		if (snapshot != null) {
+			if (item instanceof Group || item instanceof Layer) {
+				invalidate();
+			} else {
+				disable(item);
+				changed.remove(item);
+				updateCompoundPath(item);
+			}
+		}
+	}
+
+	/**
+	 * Marks the compound path that contained the item at the time of the
+	 * snapshot as changed, as its entry represents the item.
+	 */
+	private void updateCompoundPath(Item item) {
+		int index = snapshot.indexOf(item);
+		if (index != -1) {
+			int parent = snapshot.getParentIndex(index);
+			if (parent != -1
+					&& snapshot.getItemClass(parent) == CompoundPath.class) {
+				Item compoundPath = snapshot.get(parent);
+				if (compoundPath != null) {
+					disable(compoundPath);
+					if (!changed.contains(compoundPath))
+						changed.add(compoundPath);
+				}
+			}
+		}
+	}
+
+	private void disable(Item item) {
+		int index = snapshot.indexOf(item);
+		if (index != -1) {
+			int position = positions[index];
+			if (position != -1)
+				disabled.set(position);
+		}
+	}
+
+	private static boolean isIndexed(Class<? extends Item> type) {
+		return type != null && type != Group.class && type != Layer.class;
+	}
+
+	private static boolean isIndexed(Item item) {
+		return !(item instanceof Group || item instanceof Layer);
+	}
+
+	private void update() {
+		// Commit first, so the native side knows about all changes and the
+		// modified items are reported before the tree is checked.
+		CommitManager.commitDocument(document);
+		if (!isOutdated())
+			return;
+		changed.clear();
+		snapshot = document.snapshot();
+		untrackedVersion = CommitManager.untrackedVersion;
+		int size = snapshot.size();
+		positions = new int[size];
+		Arrays.fill(positions, -1);
+		int count = 0;
+		int[] indices = new int[size];
+		for (int i = 0; i < size; i++) {
+			int parent = snapshot.getParentIndex(i);
+			if (isIndexed(snapshot.getItemClass(i)) && (parent == -1
+					|| snapshot.getItemClass(parent) != CompoundPath.class))
+				indices[count++] = i;
+		}
+		entries = new int[count];
+		System.arraycopy(indices, 0, entries, 0, count);
+		disabled = new BitSet(count);
+		final double[] entryBounds = new double[size * 4];
+		for (int i = 0; i < count; i++) {
+			int index = entries[i];
+			Rectangle rect = snapshot.getBounds(index);
+			setBounds(entryBounds, index, rect.x, rect.y, rect.x + rect.width,
+					rect.y + rect.height);
+		}
+		pack(entries, count, entryBounds, NODE_SIZE);
+		for (int i = 0; i < count; i++)
+			positions[entries[i]] = i;
+		// Now build the levels. The entries were packed so that consecutive
+		// entries are close together, and so are the nodes formed from them.
+		int levelCount = count;
+		double[] level = new double[count * 4];
+		for (int i = 0; i < count; i++)
+			System.arraycopy(entryBounds, entries[i] * 4, level, i * 4, 4);
+		ArrayList<double[]> levelBounds = new ArrayList<double[]>();
+		ArrayList<int[]> levelStarts = new ArrayList<int[]>();
+		levelBounds.add(level);
+		levelStarts.add(null);
+		while (levelCount > 1) {
+			int nodeCount = (levelCount + NODE_SIZE - 1) / NODE_SIZE;
+			double[] nodes = new double[nodeCount * 4];
+			int[] starts = new int[nodeCount + 1];
+			for (int i = 0; i < nodeCount; i++) {
+				int start = i * NODE_SIZE;
+				int end = Math.min(start + NODE_SIZE, levelCount);
+				starts[i] = start;
+				setBounds(nodes, i, Double.MAX_VALUE, Double.MAX_VALUE,
+						-Double.MAX_VALUE, -Double.MAX_VALUE);
+				for (int j = start; j < end; j++)
+					unite(nodes, i, level, j);
+			}
+			starts[nodeCount] = levelCount;
+			levelBounds.add(nodes);
+			levelStarts.add(starts);
+			level = nodes;
+			levelCount = nodeCount;
+		}
+		bounds = levelBounds.toArray(new double[levelBounds.size()][]);
+		this.starts = levelStarts.toArray(new int[levelStarts.size()][]);
+	}
+
+	/**
+	 * Sort-Tile-Recursive packing: Sorts the indices by the horizontal
+	 * center of their bounds, cuts them into vertical slices, and sorts each
+	 * slice by the vertical center, so that each run of nodeSize indices
+	 * covers a small area.
+	 */
+	private static void pack(int[] indices, int count, double[] bounds,
+			int nodeSize) {
+		sort(indices, 0, count, bounds, 0);
+		int nodeCount = (count + nodeSize - 1) / nodeSize;
+		int slices = (int) Math.ceil(Math.sqrt(nodeCount));
+		int sliceSize = slices * nodeSize;
+		for (int start = 0; start < count; start += sliceSize)
+			sort(indices, start, Math.min(start + sliceSize, count), bounds, 1);
+	}
+
+	/**
+	 * Sorts the indices between from and to by the center of their bounds on
+	 * the given axis, 0 for horizontal and 1 for vertical. The centers are
+	 * stored as sortable float bits in the upper half of longs with the
+	 * indices in the lower half, so the sort works on primitives. The
+	 * precision of floats is plenty for the order of the entries.
+	 */
+	private static void sort(int[] indices, int from, int to,
+			double[] bounds, int axis) {
+		long[] keys = new long[to - from];
+		for (int i = from; i < to; i++) {
+			int index = indices[i];
+			int bits = Float.floatToIntBits((float) (bounds[index * 4 + axis]
+					+ bounds[index * 4 + axis + 2]));
+			// Flip the bits of negative values so they order as ints
+			bits ^= (bits >> 31) & 0x7fffffff;
+			keys[i - from] = ((long) bits << 32) | (index & 0xffffffffL);
+		}
+		Arrays.sort(keys);
+		for (int i = from; i < to; i++)
+			indices[i] = (int) keys[i - from];
+	}
+
+	private static void setBounds(double[] bounds, int index, double left,
+			double top, double right, double bottom) {
+		int i = index * 4;
+		bounds[i] = left;
+		bounds[i + 1] = top;
+		bounds[i + 2] = right;
+		bounds[i + 3] = bottom;
+	}
+
+	private static void unite(double[] bounds, int index, double[] other,
+			int otherIndex) {
+		int i = index * 4, j = otherIndex * 4;
+		bounds[i] = Math.min(bounds[i], other[j]);
+		bounds[i + 1] = Math.min(bounds[i + 1], other[j + 1]);
+		bounds[i + 2] = Math.max(bounds[i + 2], other[j + 2]);
+		bounds[i + 3] = Math.max(bounds[i + 3], other[j + 3]);
+	}
+
+	private static boolean intersects(double[] bounds, int index, double left,
+			double top, double right, double bottom) {
+		int i = index * 4;
+		return bounds[i] <= right && bounds[i + 2] >= left
+				&& bounds[i + 1] <= bottom && bounds[i + 3] >= top;
+	}
+
+	/**
+	 * The squared distance of the point to the bounds, 0 if it lies inside.
+	 */
+	private static double getDistance(double[] bounds, int index, double x,
+			double y) {
+		int i = index * 4;
+		double dx = Math.max(Math.max(bounds[i] - x, x - bounds[i + 2]), 0);
+		double dy = Math.max(Math.max(bounds[i + 1] - y, y - bounds[i + 3]),
+				0);
+		return dx * dx + dy * dy;
+	}
+
+	private Item getChangedItem(int index) {
+		Item item = changed.get(index);
+		if (!item.isValid() || item instanceof Path
+				&& item.getParent() instanceof CompoundPath)
+			return null;
+		return item;
+	}
+
+	/**
+	 * Returns all indexed items whose bounds intersect the rectangle, the
+	 * edges included.
+	 */
+	protected ItemList getItems(double left, double top, double right,
+			double bottom) {
+		update();
+		ItemList items = new ItemList();
+		int level = bounds.length - 1;
+		if (entries.length > 0)
+			collect(level, 0, left, top, right, bottom, items);
+		double[] rect = new double[4];
+		for (int i = 0, l = changed.size(); i < l; i++) {
+			Item item = getChangedItem(i);
+			if (item != null && getBounds(item, rect)
+					&& intersects(rect, 0, left, top, right, bottom))
+				items.add(item);
+		}
+		return items;
+	}
+
+	private void collect(int level, int node, double left, double top,
+			double right, double bottom, ItemList items) {
+		if (!intersects(bounds[level], node, left, top, right, bottom))
+			return;
+		if (level == 0) {
+			if (!disabled.get(node)) {
+				Item item = snapshot.get(entries[node]);
+				if (item != null)
+					items.add(item);
+			}
+		} else {
+			int[] starts = this.starts[level];
+			for (int i = starts[node], l = starts[node + 1]; i < l; i++)
+				collect(level - 1, i, left, top, right, bottom, items);
+		}
+	}
+
+	private static boolean getBounds(Item item, double[] rect) {
+		Rectangle bounds = item.getBounds();
+		if (bounds == null)
+			return false;
+		setBounds(rect, 0, bounds.x, bounds.y, bounds.x + bounds.width,
+				bounds.y + bounds.height);
+		return true;
+	}
+
+	/**
+	 * Returns the count indexed items closest to the point, measured by the
+	 * distance to their bounds, closest first.
+	 */
+	protected ItemList getNearestItems(double x, double y, int count) {
+		update();
+		// Best first search: Nodes and entries are visited in the order of
+		// their distance, so the first entries reached are the nearest.
+		PriorityQueue<double[]> queue = new PriorityQueue<double[]>(64,
+				new Comparator<double[]>() {
+					public int compare(double[] a, double[] b) {
+						return Double.compare(a[0], b[0]);
+					}
+				});
+		// Queue entries are distance, level, node. Level -1 stands for the
+		// changed items.
+		int top = bounds.length - 1;
+		if (entries.length > 0)
+			queue.add(new double[] { getDistance(bounds[top], 0, x, y), top, 0 });
+		double[] rect = new double[4];
+		for (int i = 0, l = changed.size(); i < l; i++) {
+			if (getChangedItem(i) != null && getBounds(changed.get(i), rect))
+				queue.add(new double[] { getDistance(rect, 0, x, y), -1, i });
+		}
+		ItemList items = new ItemList();
+		while (!queue.isEmpty() && items.size() < count) {
+			double[] next = queue.poll();
+			int level = (int) next[1], node = (int) next[2];
+			if (level == -1) {
+				items.add(changed.get(node));
+			} else if (level == 0) {
+				if (!disabled.get(node)) {
+					Item item = snapshot.get(entries[node]);
+					if (item != null)
+						items.add(item);
+				}
+			} else {
+				int[] starts = this.starts[level];
+				double[] children = bounds[level - 1];
+				for (int i = starts[node], l = starts[node + 1]; i < l; i++)
+					queue.add(new double[] {
+							getDistance(children, i, x, y), level - 1, i });
+			}
+		}
+		return items;
+	}
+}
@@ -126,6 +126,24 @@ public class Line {
 		return null;
 	}
 
+	/**
+	 * Returns the signed distance of the point x, y to the infinite line
+	 * through the points p1 and p2. The sign describes on which side of the
+	 * line the point lies.
+	 * 
+	 * @jshide
+	 */
+	public static double getSignedDistance(double p1x, double p1y,
+			double p2x, double p2y, double x, double y) {
+		double vx = p2x - p1x;
+		double vy = p2y - p1y;
+		if (vx == 0)
+			return vy > 0 ? x - p1x : p1x - x;
+		if (vy == 0)
+			return vx < 0 ? y - p1y : p1y - y;
+		return ((x - p1x) * vy - (y - p1y) * vx) / Math.sqrt(vx * vx + vy * vy);
+	}
+
 	public static Point intersect(Point l1p1, Point l1p2, boolean extend1,
 			Point l2p1, Point l2p2, boolean extend2) {
 		return intersect(l1p1.x, l1p1.y, l1p2.x, l1p2.y, extend1,
@@ -22,6 +22,8 @@ import com.scratchdisk.util.IntegerEnumUtils;
 import com.scriptographer.CommitManager;
 import com.scriptographer.ScriptographerEngine;
 import com.scriptographer.ScriptographerException;
+import com.scriptographer.sg.ExecutionBudget;
+import com.scriptographer.sg.ExecutionStatistics;
 import com.scriptographer.ui.MenuItem;
 
 /**
@@ -367,7 +369,29 @@ public class LiveEffect extends NativeObject {
 	}
 
 	private Callable onCalculate = null;
-	
+	private ExecutionBudget budget = null;
+	private ExecutionStatistics statistics = new ExecutionStatistics();
+
+	/**
+	 * The budget each call of {@link #getOnCalculate()} may use. When it is
+	 * exceeded, the calculation is canceled. If it is {@code null}, the budget
+	 * of the script applies.
+	 */
+	public ExecutionBudget getBudget() {
+		return budget;
+	}
+
+	public void setBudget(ExecutionBudget budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * The statistics of all calls of {@link #getOnCalculate()}.
+	 */
+	public ExecutionStatistics getStatistics() {
+		return statistics;
+	}
+
 	public Callable getOnCalculate() {
 		return onCalculate;
 	}
@@ -378,7 +402,8 @@ public class LiveEffect extends NativeObject {
 
 	protected void onCalculate(LiveEffectEvent event) {
 		if (onCalculate != null)
-			ScriptographerEngine.invoke(onCalculate, this, event);
+			ScriptographerEngine.invokeHandler(onCalculate, budget,
+					statistics, this, event);
 	}
 
 	private Callable onGetInputType = null;
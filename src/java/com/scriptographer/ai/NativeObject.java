@@ -17,7 +17,7 @@ package com.scriptographer.ai;
 import java.lang.reflect.Constructor;
 import java.util.HashMap;
 
-import com.scratchdisk.util.SoftIntMap;
+import com.scratchdisk.util.SoftIntHashMap;
 import com.scriptographer.ScriptographerException;
 
 /**
@@ -117,8 +117,8 @@ abstract class NativeObject implements ValidationObject {
 			= new HashMap<Class, WrapFactory>();
 
 	private static class WrapFactory {
-		// Use a SoftIntMap to keep track of already wrapped objects per factory:
-		SoftIntMap<NativeObject> wrappers = new SoftIntMap<NativeObject>();
+		// Use a SoftIntHashMap to keep track of already wrapped objects per factory:
+		SoftIntHashMap<NativeObject> wrappers = new SoftIntHashMap<NativeObject>();
 
 		boolean hasDocument;
 		Constructor ctor;
@@ -0,0 +1,146 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ * 
+ * File created on Oct 16, 2026.
+ */
+
+package com.scriptographer.ai;
+
+/**
+ * Numerical helpers used by the bezier math in {@link Curve} and {@link Path},
+ * ported back from Paper.js. None of these call into native code, so they can
+ * be used without Illustrator running.
+ * 
+ * @author lehni
+ * 
+ * @jshide
+ */
+public class Numerical {
+
+	private Numerical() {
+		// Don't let anyone instantiate this class.
+	}
+
+	/**
+	 * Used as a tolerance for parameter values, e.g. when solving for a curve
+	 * parameter at a given length.
+	 */
+	public static final double EPSILON = 10e-12;
+
+	/**
+	 * Used as a tolerance for geometric values such as coordinates and
+	 * lengths.
+	 */
+	public static final double TOLERANCE = 10e-6;
+
+	/**
+	 * A one dimensional function that can be passed to {@link #integrate} and
+	 * {@link #findRoot}.
+	 */
+	public interface Function {
+		double evaluate(double x);
+	}
+
+	// Lookup tables for abscissas and weights with values for n = 2 .. 16.
+	// As values are symmetric, only store half of them and adapt the algorithm
+	// to factor in the symmetry.
+	private static final double[][] ABSCISSAS = {
+		{ 0.57735026918962576451 },
+		{ 0.00000000000000000000, 0.77459666924148337704 },
+		{ 0.33998104358485626480, 0.86113631159405257522 },
+		{ 0.00000000000000000000, 0.53846931010568309104, 0.90617984593866399280 },
+		{ 0.23861918608319690863, 0.66120938646626451366, 0.93246951420315202781 },
+		{ 0.00000000000000000000, 0.40584515137739716691, 0.74153118559939443986, 0.94910791234275852453 },
+		{ 0.18343464249564980494, 0.52553240991632898582, 0.79666647741362673959, 0.96028985649753623168 },
+		{ 0.00000000000000000000, 0.32425342340380892904, 0.61337143270059039731, 0.83603110732663579430, 0.96816023950762608984 },
+		{ 0.14887433898163121088, 0.43339539412924719080, 0.67940956829902440623, 0.86506336668898451073, 0.97390652851717172008 },
+		{ 0.00000000000000000000, 0.26954315595234497233, 0.51909612920681181593, 0.73015200557404932409, 0.88706259976809529908, 0.97822865814605699280 },
+		{ 0.12523340851146891547, 0.36783149899818019375, 0.58731795428661744730, 0.76990267419430468704, 0.90411725637047485668, 0.98156063424671925069 },
+		{ 0.00000000000000000000, 0.23045831595513479407, 0.44849275103644685288, 0.64234933944034022064, 0.80157809073330991279, 0.91759839922297796521, 0.98418305471858814947 },
+		{ 0.10805494870734366207, 0.31911236892788976044, 0.51524863635815409197, 0.68729290481168547015, 0.82720131506976499319, 0.92843488366357351734, 0.98628380869681233884 },
+		{ 0.00000000000000000000, 0.20119409399743452230, 0.39415134707756336990, 0.57097217260853884754, 0.72441773136017004742, 0.84820658341042721620, 0.93727339240070590431, 0.98799251802048542849 },
+		{ 0.09501250983763744019, 0.28160355077925891323, 0.45801677765722738634, 0.61787624440264374845, 0.75540440835500303390, 0.86563120238783174388, 0.94457502307323257608, 0.98940093499164993260 },
+	};
+	private static final double[][] WEIGHTS = {
+		{ 1.00000000000000000000 },
+		{ 0.88888888888888888889, 0.55555555555555555556 },
+		{ 0.65214515486254614263, 0.34785484513745385737 },
+		{ 0.56888888888888888889, 0.47862867049936646804, 0.23692688505618908751 },
+		{ 0.46791393457269104739, 0.36076157304813860757, 0.17132449237917034504 },
+		{ 0.41795918367346938776, 0.38183005050511894495, 0.27970539148927666790, 0.12948496616886969327 },
+		{ 0.36268378337836198297, 0.31370664587788728734, 0.22238103445337447054, 0.10122853629037625915 },
+		{ 0.33023935500125976316, 0.31234707704000284007, 0.26061069640293546232, 0.18064816069485740406, 0.08127438836157441197 },
+		{ 0.29552422471475287017, 0.26926671930999635509, 0.21908636251598204400, 0.14945134915058059315, 0.06667134430868813759 },
+		{ 0.27292508677790063071, 0.26280454451024666218, 0.23319376459199047992, 0.18629021092773425143, 0.12558036946490462463, 0.05566856711617366648 },
+		{ 0.24914704581340278500, 0.23349253653835480876, 0.20316742672306592175, 0.16007832854334622633, 0.10693932599531843096, 0.04717533638651182719 },
+		{ 0.23255155323087391019, 0.22628318026289723841, 0.20781604753688850231, 0.17814598076194573828, 0.13887351021978723846, 0.09212149983772844791, 0.04048400476531587952 },
+		{ 0.21526385346315779020, 0.20519846372129560397, 0.18553839747793781374, 0.15720316715819353457, 0.12151857068790318469, 0.08015808715976020981, 0.03511946033175186303 },
+		{ 0.20257824192556127288, 0.19843148532711157646, 0.18616100001556221103, 0.16626920581699393355, 0.13957067792615431445, 0.10715922046717193501, 0.07036604748810812471, 0.03075324199611726835 },
+		{ 0.18945061045506849629, 0.18260341504492358887, 0.16915651939500253819, 0.14959598881657673208, 0.12462897125553387205, 0.09515851168249278481, 0.06225352393864789286, 0.02715245941175409485 },
+	};
+
+	/**
+	 * Gauss-Legendre Numerical Integration of f between a and b, using n
+	 * sample points. n needs to be between 2 and 16.
+	 */
+	public static double integrate(Function f, double a, double b, int n) {
+		double[] x = ABSCISSAS[n - 2];
+		double[] w = WEIGHTS[n - 2];
+		double A = 0.5 * (b - a);
+		double B = A + a;
+		int i = 0;
+		int m = (n + 1) >> 1;
+		double sum = (n & 1) == 1 ? w[i++] * f.evaluate(B) : 0;
+		while (i < m) {
+			double Ax = A * x[i];
+			sum += w[i++] * (f.evaluate(B + Ax) + f.evaluate(B - Ax));
+		}
+		return A * sum;
+	}
+
+	/**
+	 * Root finding using Newton-Raphson Method combined with Bisection, within
+	 * the interval [a, b], starting with the initial guess x. f needs to be
+	 * monotonically increasing within the interval.
+	 * 
+	 * @param f the function
+	 * @param df the derivative of f
+	 * @param x the initial guess
+	 * @param n the maximum amount of iterations
+	 */
+	public static double findRoot(Function f, Function df, double x,
+			double a, double b, int n, double tolerance) {
+		for (int i = 0; i < n; i++) {
+			double fx = f.evaluate(x);
+			double dfx = df.evaluate(x);
+			// Fall back to bisection if the derivative does not allow a
+			// Newton-Raphson step:
+			double nx = dfx != 0 ? x - fx / dfx : Double.NaN;
+			if (fx == 0 || Math.abs(x - nx) < tolerance)
+				return fx == 0 ? x : clamp(nx, a, b);
+			// Update the root-bounding interval and test for divergence:
+			// If the Newton-Raphson step lands outside the interval or is not
+			// defined, bisect instead.
+			if (fx > 0) {
+				b = x;
+				x = nx > a ? nx : 0.5 * (a + b);
+			} else {
+				a = x;
+				x = nx < b ? nx : 0.5 * (a + b);
+			}
+		}
+		return clamp(x, a, b);
+	}
+
+	public static double clamp(double value, double min, double max) {
+		return value < min ? min : value > max ? max : value;
+	}
+}
@@ -22,6 +22,7 @@ import com.scratchdisk.list.List;
 import com.scratchdisk.list.Lists;
 import com.scratchdisk.list.ReadOnlyList;
 import com.scriptographer.CommitManager;
+import com.scriptographer.ScriptographerEngine;
 
 /**
  * The Path item represents a path in an Illustrator document.
@@ -44,6 +45,28 @@ public class Path extends PathItem {
 	private SegmentList segments = null;
 	private CurveList curves = null;
 
+	/**
+	 * The cumulative lengths of the curves, used for offset based lookups.
+	 * offsets[i] is the length of the path up to the beginning of curve i,
+	 * the last entry holds the length of all curves together.
+	 */
+	private double[] curveOffsets = null;
+	private int curveOffsetsVersion = -1;
+
+	/**
+	 * The values of all curves, 8 per curve, as returned by
+	 * {@link Curve#getCurveValues()}.
+	 */
+	private double[] curveValues = null;
+	private int curveValuesVersion = -1;
+
+	/**
+	 * The tight bounds of the path as minX, minY, maxX, maxY, followed by its
+	 * signed area.
+	 */
+	private double[] geometry = null;
+	private int geometryVersion = -1;
+
 	/**
 	 * Wraps an AIArtHandle in a Path object
 	 */
@@ -265,6 +288,7 @@ public class Path extends PathItem {
 		nativeSetClosed(closed);
 		if (curves != null)
 			curves.updateSize();
+		clearCurveCache();
 	}
 	
 	/**
@@ -277,13 +301,36 @@ public class Path extends PathItem {
 	/**
 	 * The length of the perimeter of the path.
 	 */
-	public native double getLength();
+	public double getLength() {
+		double[] offsets = getCurveOffsets();
+		return offsets[offsets.length - 1];
+	}
 
 	/**
 	 * The area of the path in square points. Self-intersecting paths can
-	 * contain sub-areas that cancel each other out.
+	 * contain sub-areas that cancel each other out. Open paths are measured
+	 * as if they were closed by a straight line. Like in Illustrator, the area
+	 * is positive for paths that run counter-clockwise on the screen and
+	 * negative for clockwise ones, in both coordinate systems.
+	 */
+	public double getArea() {
+		double area = getGeometry()[4];
+		// The curve values are in script coordinates, so with the y-axis
+		// pointing down the sign of the integral is flipped.
+		return ScriptographerEngine.topDownCoordinates ? -area : area;
+	}
+
+	/**
+	 * The bounding rectangle of the path excluding stroke width, calculated
+	 * from the extrema of its curves.
 	 */
-	public native float getArea();
+	public Rectangle getBounds() {
+		double[] geometry = getGeometry();
+		if (geometry[0] > geometry[2])
+			return super.getBounds();
+		return new Rectangle(geometry[0], geometry[1],
+				geometry[2] - geometry[0], geometry[3] - geometry[1]);
+	}
 
 	private native void nativeReverse();
 
@@ -321,6 +368,8 @@ public class Path extends PathItem {
 	 */
 	public void pointsToCurves(float tolerance, float threshold,
 			int cornerRadius, float scale) {
+		// Segments need to be committed first, as they are read natively
+		CommitManager.commit(this);
 		updateSize(nativePointsToCurves(tolerance, threshold, cornerRadius,
 				scale));
 	}
@@ -354,6 +403,7 @@ public class Path extends PathItem {
 	 *        {@default 0.1}
 	 */
 	public void curvesToPoints(double maxPointDistance, double flatness) {
+		CommitManager.commit(this);
 		int size = nativeCurvesToPoints((float) maxPointDistance, (float) flatness);
 		updateSize(size);
 	}
@@ -375,6 +425,7 @@ public class Path extends PathItem {
 	 *        {@default 0.1}
 	 */
 	public void reduceSegments(double flatness) {
+		CommitManager.commit(this);
 		nativeReduceSegments((float) flatness);
 		updateSize(-1);
 	}
@@ -382,6 +433,98 @@ public class Path extends PathItem {
 	public void reduceSegments() {
 		reduceSegments(0.1f);
 	}
+
+	/**
+	 * Converts the curves in the path to straight lines, like
+	 * {@link #curvesToPoints(double, double)}, but flattened adaptively in
+	 * Java and written back to the path in one go. See {@link PathFlattener}
+	 * for working on segment values without a path.
+	 * 
+	 * @param flatness the maximum distance between the curves and the lines
+	 *        {@default 0.1}
+	 * @param maxPointDistance the maximum distance between the generated
+	 *        points {@default 1000}
+	 */
+	public void flatten(double flatness, double maxPointDistance) {
+		SegmentList segments = getSegments();
+		double[] points = PathFlattener.flatten(segments.getValues(),
+				segments.size(), isClosed(), flatness, maxPointDistance);
+		segments.setValues(PathFlattener.toSegments(points),
+				points.length / 2);
+	}
+
+	public void flatten(double flatness) {
+		flatten(flatness, 1000);
+	}
+
+	public void flatten() {
+		flatten(0.1, 1000);
+	}
+
+	/**
+	 * Reduces the amount of segments in the path with the Douglas-Peucker
+	 * algorithm, treating the path as a polyline through its segment points.
+	 * The remaining segments are straight corners.
+	 * 
+	 * @param tolerance the maximum distance of the removed points from the
+	 *        resulting lines {@default 1}
+	 */
+	public void reducePoints(double tolerance) {
+		double[] points = PathFlattener.reduce(getPoints(), tolerance);
+		getSegments().setValues(PathFlattener.toSegments(points),
+				points.length / 2);
+	}
+
+	public void reducePoints() {
+		reducePoints(1);
+	}
+
+	/**
+	 * Fits smooth curves through the segment points of the path, like
+	 * {@link #pointsToCurves(float)}, but in Java, with {@link PathFitter}.
+	 * The result is written back to the path in one go.
+	 * 
+	 * @param error the maximum distance of the segment points from the
+	 *        resulting curves {@default 2.5}
+	 */
+	public void fitCurves(double error) {
+		double[] points = getPoints();
+		boolean closed = isClosed();
+		PathFitter fitter = new PathFitter(points);
+		// Fit closed paths back to the first point, and merge the last
+		// segment into the first one afterwards.
+		if (closed && points.length > 0)
+			fitter.add(points[0], points[1]);
+		float[] values = fitter.fit(error);
+		int count = values.length / SegmentList.VALUES_PER_SEGMENT;
+		if (closed && count > 1) {
+			count--;
+			int last = count * SegmentList.VALUES_PER_SEGMENT;
+			values[2] = values[last + 2];
+			values[3] = values[last + 3];
+		}
+		getSegments().setValues(values, count);
+	}
+
+	public void fitCurves() {
+		fitCurves(2.5);
+	}
+
+	/**
+	 * Returns the segment points as x and y values.
+	 */
+	private double[] getPoints() {
+		SegmentList segments = getSegments();
+		float[] values = segments.getValues();
+		int count = segments.size();
+		double[] points = new double[count * 2];
+		for (int i = 0; i < count; i++) {
+			int j = i * SegmentList.VALUES_PER_SEGMENT;
+			points[i * 2] = values[j];
+			points[i * 2 + 1] = values[j + 1];
+		}
+		return points;
+	}
 	
 	public Path split(double offset) {
 		return split(getLocation(offset));
@@ -409,9 +552,7 @@ public class Path extends PathItem {
 			if (hasTabletData) {
 				length = getLength();
 				// Add up length of the new path by getting the curves lengths
-				partLength = 0;
-				for (int i = 0; i < index; i++)
-					partLength += curves.get(i).getLength();
+				partLength = getCurveOffsets()[index];
 			} else {
 				length = partLength = 0;
 			}
@@ -533,24 +674,236 @@ public class Path extends PathItem {
 		return getLocation(point, Curve.EPSILON);
 	}
 
+	/**
+	 * Samples points along the path at equal distances, starting at its
+	 * beginning, and writes their coordinates into out as x and y values.
+	 * Sampling stops at the end of the path or once out is full. No objects
+	 * are created per point, which makes this suitable for tight loops.
+	 * 
+	 * @param spacing the distance between the samples along the path
+	 * @param out the array receiving two values per point
+	 * @return the number of points written
+	 */
+	public int sample(double spacing, double[] out) {
+		if (spacing <= 0)
+			throw new IllegalArgumentException("spacing needs to be positive");
+		double[] offsets = getCurveOffsets();
+		double[] curveValues = getCurveValues();
+		int size = offsets.length - 1, max = out.length / 2, count = 0;
+		double[] values = new double[8];
+		Curve.LengthIntegrand ds = new Curve.LengthIntegrand();
+		// The distance of the next sample from the beginning of the path
+		double next = 0;
+		for (int i = 0; i < size && count < max; i++) {
+			double length = offsets[i + 1] - offsets[i];
+			double start = next - offsets[i];
+			if (start > length + Numerical.TOLERANCE)
+				continue;
+			System.arraycopy(curveValues, i * 8, values, 0, 8);
+			int n = Curve.sample(values, start, spacing, length, ds, out,
+					count * 2, max - count);
+			count += n;
+			next += n * spacing;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the cumulative lengths of the curves, as described by
+	 * {@link #curveOffsets}. The values are cached until the path changes.
+	 */
+	protected double[] getCurveOffsets() {
+		if (curveOffsets == null || needsUpdate(curveOffsetsVersion)) {
+			double[] values = getCurveValues();
+			int size = values.length / 8;
+			double[] offsets = new double[size + 1];
+			double[] v = new double[8];
+			double offset = 0;
+			for (int i = 0; i < size; i++) {
+				System.arraycopy(values, i * 8, v, 0, 8);
+				offset += Curve.getLength(v);
+				offsets[i + 1] = offset;
+			}
+			curveOffsets = offsets;
+			curveOffsetsVersion = version;
+		}
+		return curveOffsets;
+	}
+
+	/**
+	 * Called whenever segments are modified, added or removed on the Java
+	 * side, as these changes are not reflected in the item's version until
+	 * they are committed.
+	 */
+	protected void clearCurveCache() {
+		curveOffsets = null;
+		curveValues = null;
+		geometry = null;
+		// The cached bounds of this path and its parents are outdated too
+		CommitManager.changeVersion++;
+	}
+
+	/**
+	 * Returns the bounds and area of the path, as described by
+	 * {@link #geometry}. Both are calculated in one pass over the curve values
+	 * and cached until the path changes.
+	 */
+	private double[] getGeometry() {
+		if (geometry == null || needsUpdate(geometryVersion)) {
+			double[] values = getCurveValues();
+			double[] result = {
+				Double.MAX_VALUE, Double.MAX_VALUE,
+				-Double.MAX_VALUE, -Double.MAX_VALUE, 0
+			};
+			int size = values.length / 8;
+			if (size > 0) {
+				double area = 0;
+				for (int i = 0; i < size; i++) {
+					Curve.getBounds(values, i * 8, result);
+					area += Curve.getArea(values, i * 8);
+				}
+				if (!isClosed()) {
+					// Close the contour with a straight line
+					int last = values.length - 2;
+					area += (values[last] * values[1]
+							- values[0] * values[last + 1]) / 2;
+				}
+				result[4] = area;
+			} else {
+				SegmentList segments = getSegments();
+				if (segments.size() > 0) {
+					Point point = segments.get(0).getPoint();
+					result[0] = result[2] = point.x;
+					result[1] = result[3] = point.y;
+				}
+			}
+			geometry = result;
+			geometryVersion = version;
+		}
+		return geometry;
+	}
+
+	/**
+	 * Returns the values of all curves in one array, as described by
+	 * {@link #curveValues}. The values are cached until the path changes.
+	 */
+	protected double[] getCurveValues() {
+		if (curveValues == null || needsUpdate(curveValuesVersion)) {
+			SegmentList segments = getSegments();
+			double[] values;
+			if (segments.isPacked()) {
+				// Avoid creating curve and segment objects for all curves
+				values = segments.getCurveValues();
+			} else {
+				CurveList curves = getCurves();
+				int size = curves.size();
+				curves.fetch(0, size);
+				values = new double[size * 8];
+				for (int i = 0; i < size; i++)
+					curves.get(i).getCurveValues(values, i * 8);
+			}
+			curveValues = values;
+			curveValuesVersion = version;
+		}
+		return curveValues;
+	}
+
+	/**
+	 * Returns the location on the path that is nearest to the specified
+	 * point. Curves whose control bounds are further away than the nearest
+	 * location found so far are skipped.
+	 * 
+	 * @param point the point for which to find the nearest location
+	 * @return the location on the path that is nearest to the point
+	 */
+	public CurveLocation getNearestLocation(Point point) {
+		double[] values = getCurveValues();
+		int size = values.length / 8;
+		if (size == 0)
+			return null;
+		double x = point.x, y = point.y;
+		// Start with the nearest end point, as an upper bound for the
+		// distance.
+		int index = 0;
+		double parameter = 0, distance = Double.MAX_VALUE;
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < 2; j++) {
+				int o = i * 8 + j * 6;
+				double dx = values[o] - x, dy = values[o + 1] - y;
+				double dist = dx * dx + dy * dy;
+				if (dist < distance) {
+					distance = dist;
+					index = i;
+					parameter = j;
+				}
+			}
+		}
+		Curve.NearestBuffer buffer = new Curve.NearestBuffer();
+		double[] v = new double[8];
+		for (int i = 0; i < size; i++) {
+			int o = i * 8;
+			// The distance to the control bounds is a lower bound for the
+			// distance to the curve.
+			double minX = Math.min(Math.min(values[o], values[o + 2]),
+					Math.min(values[o + 4], values[o + 6]));
+			double maxX = Math.max(Math.max(values[o], values[o + 2]),
+					Math.max(values[o + 4], values[o + 6]));
+			double minY = Math.min(Math.min(values[o + 1], values[o + 3]),
+					Math.min(values[o + 5], values[o + 7]));
+			double maxY = Math.max(Math.max(values[o + 1], values[o + 3]),
+					Math.max(values[o + 5], values[o + 7]));
+			double dx = x < minX ? minX - x : x > maxX ? x - maxX : 0;
+			double dy = y < minY ? minY - y : y > maxY ? y - maxY : 0;
+			if (dx * dx + dy * dy >= distance)
+				continue;
+			System.arraycopy(values, o, v, 0, 8);
+			double t = Curve.getNearestParameter(v, x, y, buffer);
+			if (buffer.distance < distance) {
+				distance = buffer.distance;
+				index = i;
+				parameter = t;
+			}
+		}
+		System.arraycopy(values, index * 8, v, 0, 8);
+		return new CurveLocation(getCurves().get(index), parameter,
+				Curve.getPoint(v, 0, parameter), Math.sqrt(distance));
+	}
+
+	/**
+	 * Returns the point on the path that is nearest to the specified point.
+	 * 
+	 * @param point the point for which to find the nearest point
+	 * @return the point on the path that is nearest to the specified point
+	 */
+	public Point getNearestPoint(Point point) {
+		CurveLocation location = getNearestLocation(point);
+		return location != null ? location.getPoint() : null;
+	}
+
 	// TODO: move to CurveList, to make accessible when not using
 	// paths directly too?
 	public CurveLocation getLocation(double offset) {
 		CurveList curves = getCurves();
-		double currentLength = 0;
-		for (int i = 0, l = curves.size(); i < l; i++) {
-			double startLength = currentLength;
-			Curve curve = curves.get(i);
-			currentLength += curve.getLength();
-			if (currentLength >= offset) {
-				// found the segment within which the length lies
-				double t = curve.getParameter(offset - startLength);
-				return new CurveLocation(curve, t);
+		double[] offsets = getCurveOffsets();
+		int size = offsets.length - 1;
+		if (size > 0 && offset <= offsets[size]) {
+			// Binary search for the first curve that ends at or after offset
+			int lo = 0, hi = size - 1;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (offsets[mid + 1] >= offset)
+					hi = mid;
+				else
+					lo = mid + 1;
 			}
+			// Found the curve within which the length lies
+			Curve curve = curves.get(lo);
+			double t = curve.getParameter(offset - offsets[lo]);
+			return new CurveLocation(curve, t);
 		}
 		// it may be that through impreciseness of getLength, that the end of
 		// the curves was missed:
-		if (curves.size() > 0 && offset <= getLength()) {
+		if (size > 0 && offset <= getLength()) {
 			Curve curve = curves.getLast();
 			return new CurveLocation(curve, 1);
 		}
@@ -567,11 +920,8 @@ public class Path extends PathItem {
 	protected Double getOffset(CurveLocation location) {
 		Integer index = location.getIndex();
 		if (index != null) {
-			double offset = 0;
-			CurveList curves = getCurves();
-			for (int i = 0; i < index; i++)
-				offset += curves.get(i).getLength();
-			Curve curve = curves.get(index);
+			double offset = getCurveOffsets()[index];
+			Curve curve = getCurves().get(index);
 			return offset + curve.getLength(0, location.getParameter());
 		}
 		return null;
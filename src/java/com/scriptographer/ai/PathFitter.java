@@ -0,0 +1,376 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scriptographer.ai;
+
+/**
+ * PathFitter fits a series of smooth cubic curves through a polyline, with
+ * Philip J. Schneider's least-squares algorithm from Graphics Gems, 1990,
+ * An Algorithm for Automatically Fitting Digitized Curves. Ported back from
+ * Paper.js.
+ *
+ * Points can be added while fitting, e.g. during a drag: Each call of
+ * {@link #fit(double)} keeps the curves fitted so far, apart from the last
+ * one, and only fits the points from there on again.
+ *
+ * The result is returned as segment values in the format used by
+ * {@link SegmentList}, see {@link PathFlattener}.
+ *
+ * @author lehni
+ *
+ * @jshide
+ */
+public class PathFitter {
+	private double[] points;
+	private int count = 0;
+	private double error;
+	// The fitted segments, as x, y, inX, inY, outX, outY with absolute handle
+	// positions, and the index of the point each one ends at.
+	private double[] segments = new double[6 * 16];
+	private int[] indices = new int[16];
+	private int segmentCount = 0;
+
+	public PathFitter() {
+		points = new double[64];
+	}
+
+	/**
+	 * @param points the polyline to fit, as x and y values per point
+	 */
+	public PathFitter(double[] points) {
+		this.points = new double[Math.max(points.length, 2)];
+		for (int i = 0; i < points.length; i += 2)
+			add(points[i], points[i + 1]);
+	}
+
+	/**
+	 * Adds a point to the polyline. Points that equal the previous one are
+	 * ignored.
+	 */
+	public void add(double x, double y) {
+		int i = count * 2;
+		if (count > 0 && points[i - 2] == x && points[i - 1] == y)
+			return;
+		if (i + 2 > points.length) {
+			double[] grown = new double[points.length * 2];
+			System.arraycopy(points, 0, grown, 0, i);
+			points = grown;
+		}
+		points[i] = x;
+		points[i + 1] = y;
+		count++;
+	}
+
+	public int getPointCount() {
+		return count;
+	}
+
+	/**
+	 * Fits curves through the points, keeping the curves of previous calls
+	 * apart from the last one, as the points there may have changed the fit.
+	 *
+	 * @param error the maximum distance of the points from the curves
+	 * @return the segment values of the fitted curves
+	 */
+	public float[] fit(double error) {
+		// Fitting with a different error invalidates all previous curves.
+		if (error != this.error) {
+			this.error = error;
+			segmentCount = 0;
+		}
+		if (count > 0) {
+			int first;
+			double tan1x = 0, tan1y = 0;
+			if (segmentCount > 2) {
+				// Continue from the beginning of the last curve, in the
+				// direction opposite to its in handle, so the result stays
+				// smooth.
+				segmentCount--;
+				int s = (segmentCount - 1) * 6;
+				first = indices[segmentCount - 1];
+				tan1x = segments[s] - segments[s + 2];
+				tan1y = segments[s + 1] - segments[s + 3];
+			} else {
+				segmentCount = 0;
+				first = 0;
+				addSegment(points[0], points[1], 0);
+			}
+			int last = count - 1;
+			if (last > first) {
+				int f = first * 2, l = last * 2;
+				if (tan1x == 0 && tan1y == 0) {
+					tan1x = points[f + 2] - points[f];
+					tan1y = points[f + 3] - points[f + 1];
+				}
+				double length1 = Math.sqrt(tan1x * tan1x + tan1y * tan1y);
+				double tan2x = points[l - 2] - points[l];
+				double tan2y = points[l - 1] - points[l + 1];
+				double length2 = Math.sqrt(tan2x * tan2x + tan2y * tan2y);
+				fitCubic(first, last, tan1x / length1, tan1y / length1,
+						tan2x / length2, tan2y / length2);
+			}
+		}
+		int v = SegmentList.VALUES_PER_SEGMENT;
+		float[] values = new float[segmentCount * v];
+		for (int i = 0; i < segmentCount; i++) {
+			for (int j = 0; j < 6; j++)
+				values[i * v + j] = (float) segments[i * 6 + j];
+		}
+		return values;
+	}
+
+	private void addSegment(double x, double y, int index) {
+		if (segmentCount == indices.length) {
+			double[] grownSegments = new double[segments.length * 2];
+			System.arraycopy(segments, 0, grownSegments, 0, segments.length);
+			segments = grownSegments;
+			int[] grownIndices = new int[indices.length * 2];
+			System.arraycopy(indices, 0, grownIndices, 0, indices.length);
+			indices = grownIndices;
+		}
+		int s = segmentCount * 6;
+		for (int i = 0; i < 6; i += 2) {
+			segments[s + i] = x;
+			segments[s + i + 1] = y;
+		}
+		indices[segmentCount++] = index;
+	}
+
+	private void addCurve(double[] curve, int last) {
+		int s = (segmentCount - 1) * 6;
+		segments[s + 4] = curve[2];
+		segments[s + 5] = curve[3];
+		addSegment(curve[6], curve[7], last);
+		s += 6;
+		segments[s + 2] = curve[4];
+		segments[s + 3] = curve[5];
+	}
+
+	private void fitCubic(int first, int last, double tan1x, double tan1y,
+			double tan2x, double tan2y) {
+		double[] curve = new double[8];
+		// Use heuristic if region only has two points in it
+		if (last - first == 1) {
+			double x1 = points[first * 2], y1 = points[first * 2 + 1];
+			double x2 = points[last * 2], y2 = points[last * 2 + 1];
+			double dx = x2 - x1, dy = y2 - y1;
+			double dist = Math.sqrt(dx * dx + dy * dy) / 3;
+			curve[0] = x1;
+			curve[1] = y1;
+			curve[2] = x1 + tan1x * dist;
+			curve[3] = y1 + tan1y * dist;
+			curve[4] = x2 + tan2x * dist;
+			curve[5] = y2 + tan2y * dist;
+			curve[6] = x2;
+			curve[7] = y2;
+			addCurve(curve, last);
+			return;
+		}
+		// Parameterize points, and attempt to fit curve
+		double[] uPrime = chordLengthParameterize(first, last);
+		double error2 = error * error;
+		// Allow reparameterization up to twice the error
+		double maxError = 4 * error2;
+		int split = (first + last) / 2;
+		boolean parametersInOrder = true;
+		// Try 4 iterations
+		for (int i = 0; i <= 4; i++) {
+			generateBezier(first, last, uPrime, tan1x, tan1y, tan2x, tan2y,
+					curve);
+			// Find max deviation of points to fitted curve
+			double max = 0;
+			int index = (first + last + 1) / 2;
+			for (int j = first + 1; j < last; j++) {
+				double u = uPrime[j - first];
+				double dx = evaluate(curve, 0, u) - points[j * 2];
+				double dy = evaluate(curve, 1, u) - points[j * 2 + 1];
+				double dist = dx * dx + dy * dy;
+				if (dist >= max) {
+					max = dist;
+					index = j;
+				}
+			}
+			if (max < error2 && parametersInOrder) {
+				addCurve(curve, last);
+				return;
+			}
+			split = index;
+			// If error not too large, try reparameterization and iteration
+			if (max >= maxError)
+				break;
+			parametersInOrder = reparameterize(first, last, uPrime, curve);
+			maxError = max;
+		}
+		// Fitting failed -- split at max error point and fit recursively
+		int s = split * 2;
+		double tanx = (points[s - 2] - points[s + 2]) / 2;
+		double tany = (points[s - 1] - points[s + 3]) / 2;
+		double length = Math.sqrt(tanx * tanx + tany * tany);
+		if (length > 0) {
+			tanx /= length;
+			tany /= length;
+		}
+		fitCubic(first, split, tan1x, tan1y, tanx, tany);
+		fitCubic(split, last, -tanx, -tany, tan2x, tan2y);
+	}
+
+	/**
+	 * Uses least-squares to find the handle lengths of the curve between the
+	 * points first and last, along the given tangents.
+	 */
+	private void generateBezier(int first, int last, double[] uPrime,
+			double tan1x, double tan1y, double tan2x, double tan2y,
+			double[] curve) {
+		double epsilon = Numerical.EPSILON;
+		double x1 = points[first * 2], y1 = points[first * 2 + 1];
+		double x2 = points[last * 2], y2 = points[last * 2 + 1];
+		// Create the C and X matrices
+		double c00 = 0, c01 = 0, c11 = 0, x0 = 0, xl = 0;
+		for (int i = 0, l = last - first + 1; i < l; i++) {
+			double u = uPrime[i], t = 1 - u, b = 3 * u * t;
+			double b0 = t * t * t, b1 = b * t, b2 = b * u, b3 = u * u * u;
+			double a1x = tan1x * b1, a1y = tan1y * b1;
+			double a2x = tan2x * b2, a2y = tan2y * b2;
+			int p = (first + i) * 2;
+			double tmpx = points[p] - x1 * (b0 + b1) - x2 * (b2 + b3);
+			double tmpy = points[p + 1] - y1 * (b0 + b1) - y2 * (b2 + b3);
+			c00 += a1x * a1x + a1y * a1y;
+			c01 += a1x * a2x + a1y * a2y;
+			c11 += a2x * a2x + a2y * a2y;
+			x0 += a1x * tmpx + a1y * tmpy;
+			xl += a2x * tmpx + a2y * tmpy;
+		}
+		// Compute the determinants of C and X
+		double detC0C1 = c00 * c11 - c01 * c01;
+		double alpha1, alpha2;
+		if (Math.abs(detC0C1) > epsilon) {
+			// Kramer's rule
+			alpha1 = (x0 * c11 - xl * c01) / detC0C1;
+			alpha2 = (c00 * xl - c01 * x0) / detC0C1;
+		} else {
+			// Matrix is under-determined, try assuming alpha1 == alpha2
+			double c0 = c00 + c01, c1 = c01 + c11;
+			if (Math.abs(c0) > epsilon) {
+				alpha1 = alpha2 = x0 / c0;
+			} else if (Math.abs(c1) > epsilon) {
+				alpha1 = alpha2 = xl / c1;
+			} else {
+				// Handle below
+				alpha1 = alpha2 = 0;
+			}
+		}
+		// If alpha negative, use the Wu/Barsky heuristic (see text)
+		// (if alpha is 0, you get coincident control points that lead to
+		// divide by zero in any subsequent findRoot() call.
+		double dx = x2 - x1, dy = y2 - y1;
+		double segLength = Math.sqrt(dx * dx + dy * dy);
+		double eps = epsilon * segLength;
+		if (alpha1 < eps || alpha2 < eps) {
+			// fall back on standard (probably inaccurate) formula, and
+			// subdivide further if needed.
+			alpha1 = alpha2 = segLength / 3;
+		} else {
+			// Check if the found control points are in the right order when
+			// projected onto the line through pt1 and pt2.
+			double dot1 = tan1x * alpha1 * dx + tan1y * alpha1 * dy;
+			double dot2 = tan2x * alpha2 * dx + tan2y * alpha2 * dy;
+			if (dot1 - dot2 > segLength * segLength)
+				alpha1 = alpha2 = segLength / 3;
+		}
+		// First and last control points of the Bezier curve are positioned
+		// exactly at the first and last data points. Control points 1 and 2
+		// are positioned an alpha distance out on the tangent vectors, left
+		// and right, respectively
+		curve[0] = x1;
+		curve[1] = y1;
+		curve[2] = x1 + tan1x * alpha1;
+		curve[3] = y1 + tan1y * alpha1;
+		curve[4] = x2 + tan2x * alpha2;
+		curve[5] = y2 + tan2y * alpha2;
+		curve[6] = x2;
+		curve[7] = y2;
+	}
+
+	/**
+	 * Given set of points and their parameterization, try to find a better
+	 * parameterization, using Newton-Raphson.
+	 *
+	 * @return {@true if the new parameters are still in order}
+	 */
+	private boolean reparameterize(int first, int last, double[] u,
+			double[] curve) {
+		for (int i = first; i <= last; i++)
+			u[i - first] = findRoot(curve, points[i * 2], points[i * 2 + 1],
+					u[i - first]);
+		// Detect if the new parameterization has reordered the points.
+		// In that case, we would fit the points of the path in the wrong
+		// order.
+		for (int i = 1, l = u.length; i < l; i++) {
+			if (u[i] <= u[i - 1])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Uses Newton-Raphson iteration to find a better root.
+	 */
+	private static double findRoot(double[] curve, double x, double y,
+			double u) {
+		// Q(u), Q'(u) and Q''(u) in power basis
+		double t = 1 - u;
+		double px = evaluate(curve, 0, u), py = evaluate(curve, 1, u);
+		double d1x = 3 * (t * t * (curve[2] - curve[0])
+				+ 2 * t * u * (curve[4] - curve[2])
+				+ u * u * (curve[6] - curve[4]));
+		double d1y = 3 * (t * t * (curve[3] - curve[1])
+				+ 2 * t * u * (curve[5] - curve[3])
+				+ u * u * (curve[7] - curve[5]));
+		double d2x = 6 * (t * (curve[4] - 2 * curve[2] + curve[0])
+				+ u * (curve[6] - 2 * curve[4] + curve[2]));
+		double d2y = 6 * (t * (curve[5] - 2 * curve[3] + curve[1])
+				+ u * (curve[7] - 2 * curve[5] + curve[3]));
+		double diffx = px - x, diffy = py - y;
+		double df = d1x * d1x + d1y * d1y + diffx * d2x + diffy * d2y;
+		// u = u - f(u) / f'(u)
+		return Math.abs(df) < Numerical.TOLERANCE ? u
+				: u - (diffx * d1x + diffy * d1y) / df;
+	}
+
+	/**
+	 * Evaluates the x (coordinate 0) or y (1) value of the curve at t.
+	 */
+	private static double evaluate(double[] curve, int coordinate, double t) {
+		double u = 1 - t;
+		return u * u * u * curve[coordinate]
+				+ 3 * u * u * t * curve[coordinate + 2]
+				+ 3 * u * t * t * curve[coordinate + 4]
+				+ t * t * t * curve[coordinate + 6];
+	}
+
+	/**
+	 * Assigns parameter values to the points, using relative distances.
+	 */
+	private double[] chordLengthParameterize(int first, int last) {
+		double[] u = new double[last - first + 1];
+		for (int i = first + 1; i <= last; i++) {
+			double dx = points[i * 2] - points[i * 2 - 2];
+			double dy = points[i * 2 + 1] - points[i * 2 - 1];
+			u[i - first] = u[i - first - 1] + Math.sqrt(dx * dx + dy * dy);
+		}
+		for (int i = 1, m = last - first; i <= m; i++)
+			u[i] /= u[m];
+		return u;
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scriptographer.ai;
+
+/**
+ * PathFlattener converts segment values into polylines and reduces the
+ * amount of points in polylines. It works on plain arrays, so it does not
+ * need a document and can be used on any thread.
+ *
+ * Segment values are in the format used by {@link SegmentList}, seven values
+ * per segment: the point, the absolute positions of the in and out handles,
+ * and a corner flag. Polylines are stored as x and y values per point.
+ *
+ * @author lehni
+ *
+ * @jshide
+ */
+public final class PathFlattener {
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private PathFlattener() {
+	}
+
+	private static final int MAX_DEPTH = 32;
+
+	/**
+	 * Converts the segments into a polyline, subdividing each curve
+	 * adaptively until it is flat enough and its chord is not longer than
+	 * maxPointDistance.
+	 *
+	 * @param segments the segment values
+	 * @param count the amount of segments
+	 * @param closed whether the closing curve is to be flattened too. The
+	 *        polyline does not repeat the first point at the end.
+	 * @param flatness the maximum distance of the curve from the polyline
+	 * @param maxPointDistance the maximum distance between points
+	 * @return the polyline
+	 */
+	public static double[] flatten(float[] segments, int count,
+			boolean closed, double flatness, double maxPointDistance) {
+		if (count == 0)
+			return new double[0];
+		int v = SegmentList.VALUES_PER_SEGMENT;
+		Points points = new Points(count * 2);
+		points.add(segments[0], segments[1]);
+		// One section per recursion level, holding the curve and the right
+		// half of its subdivision.
+		double[] stack = new double[(MAX_DEPTH + 1) * 16];
+		int curves = closed ? count : count - 1;
+		double maxDistance = maxPointDistance * maxPointDistance;
+		double tolerance = 16 * flatness * flatness;
+		for (int i = 0; i < curves; i++) {
+			int i1 = i * v, i2 = ((i + 1) % count) * v;
+			stack[0] = segments[i1];
+			stack[1] = segments[i1 + 1];
+			stack[2] = segments[i1 + 4];
+			stack[3] = segments[i1 + 5];
+			stack[4] = segments[i2 + 2];
+			stack[5] = segments[i2 + 3];
+			stack[6] = segments[i2];
+			stack[7] = segments[i2 + 1];
+			flatten(stack, 0, tolerance, maxDistance, points);
+		}
+		// Do not repeat the first point for closed paths.
+		if (closed && points.size > 2)
+			points.size -= 2;
+		return points.toArray();
+	}
+
+	private static void flatten(double[] stack, int depth, double tolerance,
+			double maxDistance, Points points) {
+		int o = depth * 16;
+		double p1x = stack[o], p1y = stack[o + 1];
+		double p2x = stack[o + 6], p2y = stack[o + 7];
+		// Thanks to Kaspar Fischer and Roger Willcocks for the following:
+		// http://hcklbrrfnn.files.wordpress.com/2012/08/bez.pdf
+		double ux = 3 * stack[o + 2] - 2 * p1x - p2x;
+		double uy = 3 * stack[o + 3] - 2 * p1y - p2y;
+		double vx = 3 * stack[o + 4] - 2 * p2x - p1x;
+		double vy = 3 * stack[o + 5] - 2 * p2y - p1y;
+		double dx = p2x - p1x, dy = p2y - p1y;
+		if (depth < MAX_DEPTH
+				&& (Math.max(ux * ux, vx * vx) + Math.max(uy * uy, vy * vy)
+						> tolerance
+					|| dx * dx + dy * dy > maxDistance)) {
+			// The left half goes to the next level, the right half is kept
+			// in this level's section until the left one is done.
+			int next = o + 16;
+			Curve.subdivide(stack, o, 0.5, stack, next, stack, o + 8);
+			flatten(stack, depth + 1, tolerance, maxDistance, points);
+			System.arraycopy(stack, o + 8, stack, next, 8);
+			flatten(stack, depth + 1, tolerance, maxDistance, points);
+		} else {
+			points.add(p2x, p2y);
+		}
+	}
+
+	/**
+	 * Reduces the amount of points in the polyline with the Douglas-Peucker
+	 * algorithm, keeping all points that are further than the tolerance away
+	 * from the simplified polyline.
+	 *
+	 * @param points the polyline
+	 * @param tolerance the maximum distance of removed points from the result
+	 * @return the reduced polyline
+	 */
+	public static double[] reduce(double[] points, double tolerance) {
+		int count = points.length / 2;
+		if (count < 3)
+			return points.clone();
+		boolean[] keep = new boolean[count];
+		keep[0] = keep[count - 1] = true;
+		double tolerance2 = tolerance * tolerance;
+		// Ranges left to process, as pairs of first and last index
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = count - 1;
+		while (top > 0) {
+			int last = stack[--top], first = stack[--top];
+			double x1 = points[first * 2], y1 = points[first * 2 + 1];
+			double dx = points[last * 2] - x1, dy = points[last * 2 + 1] - y1;
+			double length2 = dx * dx + dy * dy;
+			double max = 0;
+			int index = -1;
+			for (int i = first + 1; i < last; i++) {
+				double px = points[i * 2] - x1, py = points[i * 2 + 1] - y1;
+				// Squared distance to the line segment between first and last
+				double t = length2 > 0
+						? Numerical.clamp((px * dx + py * dy) / length2, 0, 1)
+						: 0;
+				double ex = px - t * dx, ey = py - t * dy;
+				double dist = ex * ex + ey * ey;
+				if (dist > max) {
+					max = dist;
+					index = i;
+				}
+			}
+			if (index != -1 && max > tolerance2) {
+				keep[index] = true;
+				if (top + 4 > stack.length) {
+					int[] grown = new int[stack.length * 2];
+					System.arraycopy(stack, 0, grown, 0, top);
+					stack = grown;
+				}
+				stack[top++] = first;
+				stack[top++] = index;
+				stack[top++] = index;
+				stack[top++] = last;
+			}
+		}
+		Points reduced = new Points(count);
+		for (int i = 0; i < count; i++) {
+			if (keep[i])
+				reduced.add(points[i * 2], points[i * 2 + 1]);
+		}
+		return reduced.toArray();
+	}
+
+	/**
+	 * Converts the polyline into segment values for straight lines, with all
+	 * segments marked as corners.
+	 */
+	public static float[] toSegments(double[] points) {
+		int count = points.length / 2, v = SegmentList.VALUES_PER_SEGMENT;
+		float[] segments = new float[count * v];
+		for (int i = 0; i < count; i++) {
+			float x = (float) points[i * 2], y = (float) points[i * 2 + 1];
+			int j = i * v;
+			segments[j] = segments[j + 2] = segments[j + 4] = x;
+			segments[j + 1] = segments[j + 3] = segments[j + 5] = y;
+			segments[j + 6] = 1;
+		}
+		return segments;
+	}
+
+	/**
+	 * A growable array of point coordinates.
+	 */
+	private static class Points {
+		double[] values;
+		int size;
+
+		Points(int capacity) {
+			values = new double[Math.max(capacity, 2) * 2];
+		}
+
+		void add(double x, double y) {
+			if (size + 2 > values.length) {
+				double[] grown = new double[values.length * 2];
+				System.arraycopy(values, 0, grown, 0, size);
+				values = grown;
+			}
+			values[size++] = x;
+			values[size++] = y;
+		}
+
+		double[] toArray() {
+			double[] array = new double[size];
+			System.arraycopy(values, 0, array, 0, size);
+			return array;
+		}
+	}
+}
@@ -0,0 +1,424 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scriptographer.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.scratchdisk.list.List;
+import com.scriptographer.ScriptographerException;
+
+/**
+ * PathIntersector finds all crossings among any number of {@link Path} and
+ * {@link CompoundPath} items, including the self-intersections of each item.
+ *
+ * All curves are split into parts that are monotone in x and y, so that their
+ * bounding boxes are tight. A sweep along the x-axis over the sorted boxes
+ * then only leaves pairs of parts with overlapping boxes to be intersected.
+ * For large amounts of curves, these pairs are processed in parallel.
+ *
+ * @author lehni
+ */
+public final class PathIntersector {
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private PathIntersector() {
+	}
+
+	/**
+	 * The amount of curves from which on curve pairs are intersected in
+	 * parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 2048;
+
+	private static ExecutorService executor = null;
+
+	/**
+	 * Returns all intersections among the curves of the passed items, each
+	 * as a {@link CurveLocation} on the first curve, with the location on the
+	 * second curve as its {@link CurveLocation#getIntersection()}. Both
+	 * intersections between different items and self-intersections are
+	 * included. The locations are sorted by their curves and parameters.
+	 */
+	public static CurveLocation[] getIntersections(PathItem[] items) {
+		// Collect all curves and their values, along with the information
+		// needed to skip the points where neighboring curves meet. This needs
+		// to happen here, as it may require native calls.
+		ArrayList<Curve> curveList = new ArrayList<Curve>();
+		ArrayList<Integer> nextList = new ArrayList<Integer>();
+		for (int i = 0; i < items.length; i++) {
+			List<Curve> curves = items[i].getAllCurves();
+			int start = curveList.size();
+			for (int j = 0, l = curves.size(); j < l; j++) {
+				Curve curve = curves.get(j);
+				Path path = curve.getPath();
+				curveList.add(curve);
+				if (j + 1 < l && curves.get(j + 1).getPath() == path) {
+					nextList.add(curveList.size());
+				} else {
+					nextList.add(path != null && path.isClosed()
+							? start : -1);
+					start = curveList.size();
+				}
+			}
+		}
+		int curveCount = curveList.size();
+		int[] next = new int[curveCount];
+		for (int i = 0; i < curveCount; i++)
+			next[i] = nextList.get(i);
+		return getIntersections(curveList.toArray(new Curve[curveCount]),
+				next);
+	}
+
+	/**
+	 * Returns all intersections among the passed curves.
+	 * 
+	 * @param next for each curve, the index of the curve following it in its
+	 *        path, or -1. The joints of such curves are not reported.
+	 */
+	protected static CurveLocation[] getIntersections(Curve[] curves,
+			int[] next) {
+		int curveCount = curves.length;
+		double[] values = new double[curveCount * 8];
+		for (int i = 0; i < curveCount; i++)
+			curves[i].getCurveValues(values, i * 8);
+		Parts parts = new Parts(values, curveCount);
+		int[] pairs = parts.sweep();
+		int pairCount = pairs.length / 2;
+		ArrayList<CurveLocation> locations;
+		if (curveCount < PARALLEL_THRESHOLD) {
+			locations = parts.intersect(pairs, 0, pairCount, curves, next);
+		} else {
+			locations = new ArrayList<CurveLocation>();
+			ExecutorService executor = getExecutor();
+			int taskCount = Runtime.getRuntime().availableProcessors() * 4;
+			int chunk = (pairCount + taskCount - 1) / taskCount;
+			ArrayList<Future<ArrayList<CurveLocation>>> futures =
+					new ArrayList<Future<ArrayList<CurveLocation>>>();
+			for (int from = 0; from < pairCount; from += chunk)
+				futures.add(executor.submit(new IntersectTask(parts, pairs,
+						from, Math.min(from + chunk, pairCount), curves, next)));
+			try {
+				for (Future<ArrayList<CurveLocation>> future : futures)
+					locations.addAll(future.get());
+			} catch (Exception e) {
+				for (Future<ArrayList<CurveLocation>> future : futures)
+					future.cancel(true);
+				throw new ScriptographerException(e);
+			}
+		}
+		return removeDuplicates(locations, curves);
+	}
+
+	/**
+	 * Returns all intersections among the curves of a single item.
+	 *
+	 * @see #getIntersections(PathItem[])
+	 */
+	public static CurveLocation[] getIntersections(PathItem item) {
+		return getIntersections(new PathItem[] { item });
+	}
+
+	protected static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(
+					Runtime.getRuntime().availableProcessors(),
+					new ThreadFactory() {
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable,
+									"PathIntersector");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return executor;
+	}
+
+	/**
+	 * Crossings that lie on the boundaries of monotone parts are found once
+	 * for each part that touches them. Filter these out by sorting by point
+	 * and comparing neighbors, then bring the result into curve order.
+	 */
+	private static CurveLocation[] removeDuplicates(
+			ArrayList<CurveLocation> locations, final Curve[] curves) {
+		Collections.sort(locations, new Comparator<CurveLocation>() {
+			public int compare(CurveLocation loc1, CurveLocation loc2) {
+				return Double.compare(loc1.getPoint().x, loc2.getPoint().x);
+			}
+		});
+		ArrayList<CurveLocation> unique = new ArrayList<CurveLocation>();
+		for (int i = 0, l = locations.size(); i < l; i++) {
+			CurveLocation loc = locations.get(i);
+			Point point = loc.getPoint();
+			boolean duplicate = false;
+			for (int j = unique.size() - 1; j >= 0; j--) {
+				CurveLocation other = unique.get(j);
+				Point otherPoint = other.getPoint();
+				if (point.x - otherPoint.x >= Numerical.TOLERANCE)
+					break;
+				if (Math.abs(point.y - otherPoint.y) < Numerical.TOLERANCE
+						&& isSamePathPair(loc, other)) {
+					duplicate = true;
+					break;
+				}
+			}
+			if (!duplicate)
+				unique.add(loc);
+		}
+		// Determine the curve order by index in the curves array, as curves
+		// of different items may have the same index in their paths.
+		final IdentityHashMap<Curve, Integer> indices =
+				new IdentityHashMap<Curve, Integer>();
+		for (int i = 0; i < curves.length; i++)
+			indices.put(curves[i], i);
+		Collections.sort(unique, new Comparator<CurveLocation>() {
+			public int compare(CurveLocation loc1, CurveLocation loc2) {
+				int cmp = indices.get(loc1.getCurve())
+						- indices.get(loc2.getCurve());
+				return cmp != 0 ? cmp
+						: Double.compare(loc1.getParameter(),
+								loc2.getParameter());
+			}
+		});
+		return unique.toArray(new CurveLocation[unique.size()]);
+	}
+
+	private static boolean isSamePathPair(CurveLocation loc1,
+			CurveLocation loc2) {
+		Path path1 = loc1.getCurve().getPath();
+		Path path2 = loc1.getIntersection().getCurve().getPath();
+		Path other1 = loc2.getCurve().getPath();
+		Path other2 = loc2.getIntersection().getCurve().getPath();
+		return path1 == other1 && path2 == other2
+				|| path1 == other2 && path2 == other1;
+	}
+
+	/**
+	 * The monotone parts of all curves, with their values, bounding boxes and
+	 * parameter ranges on their curves.
+	 */
+	private static class Parts {
+		int count;
+		double[] values;
+		double[] bounds;
+		double[] ranges;
+		int[] curves;
+		// The index of the part within its curve
+		int[] indices;
+
+		Parts(double[] curveValues, int curveCount) {
+			int capacity = curveCount * 2;
+			values = new double[capacity * 8];
+			bounds = new double[capacity * 4];
+			ranges = new double[capacity * 2];
+			curves = new int[capacity];
+			indices = new int[capacity];
+			double[] params = new double[6];
+			for (int i = 0; i < curveCount; i++) {
+				int offset = i * 8;
+				int n = Curve.getMonotoneParameters(curveValues, offset,
+						params);
+				// Add the ends, shifting the parameters found.
+				System.arraycopy(params, 0, params, 1, n);
+				params[0] = 0;
+				params[n + 1] = 1;
+				for (int j = 0; j <= n; j++)
+					add(curveValues, offset, i, j, params[j], params[j + 1]);
+			}
+		}
+
+		void add(double[] curveValues, int offset, int curve, int index,
+				double from, double to) {
+			if (count == curves.length) {
+				int capacity = count * 3 / 2 + 1;
+				values = grow(values, capacity * 8);
+				bounds = grow(bounds, capacity * 4);
+				ranges = grow(ranges, capacity * 2);
+				curves = grow(curves, capacity);
+				indices = grow(indices, capacity);
+			}
+			int o = count * 8;
+			Curve.getPart(curveValues, offset, from, to, values, o);
+			// The parts are monotone, so their end points define the bounds.
+			int b = count * 4;
+			bounds[b] = Math.min(values[o], values[o + 6]);
+			bounds[b + 1] = Math.min(values[o + 1], values[o + 7]);
+			bounds[b + 2] = Math.max(values[o], values[o + 6]);
+			bounds[b + 3] = Math.max(values[o + 1], values[o + 7]);
+			ranges[count * 2] = from;
+			ranges[count * 2 + 1] = to;
+			curves[count] = curve;
+			indices[count] = index;
+			count++;
+		}
+
+		/**
+		 * Sorts the parts by their minimum x and sweeps over them, keeping a
+		 * list of active parts whose x-extent overlaps the current one.
+		 *
+		 * @return the indices of all pairs of parts with overlapping bounds,
+		 *         excluding neighboring parts on the same curve
+		 */
+		int[] sweep() {
+			Integer[] order = new Integer[count];
+			for (int i = 0; i < count; i++)
+				order[i] = i;
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer part1, Integer part2) {
+					return Double.compare(bounds[part1 * 4],
+							bounds[part2 * 4]);
+				}
+			});
+			int[] active = new int[16];
+			int activeCount = 0;
+			int[] pairs = new int[count * 2];
+			int pairCount = 0;
+			for (int i = 0; i < count; i++) {
+				int part = order[i];
+				int b = part * 4;
+				double minX = bounds[b], minY = bounds[b + 1],
+						maxY = bounds[b + 3];
+				int remaining = 0;
+				for (int j = 0; j < activeCount; j++) {
+					int other = active[j];
+					int o = other * 4;
+					// Parts that end before this one starts are done, since
+					// all following parts start further right.
+					if (bounds[o + 2] < minX)
+						continue;
+					active[remaining++] = other;
+					if (bounds[o + 1] <= maxY && bounds[o + 3] >= minY
+							&& (curves[part] != curves[other]
+								|| Math.abs(indices[part] - indices[other])
+									> 1)) {
+						if (pairCount * 2 == pairs.length)
+							pairs = grow(pairs, pairs.length * 2);
+						pairs[pairCount * 2] = other;
+						pairs[pairCount * 2 + 1] = part;
+						pairCount++;
+					}
+				}
+				activeCount = remaining;
+				if (activeCount == active.length)
+					active = grow(active, active.length * 2);
+				active[activeCount++] = part;
+			}
+			return pairCount * 2 == pairs.length ? pairs
+					: grow(pairs, pairCount * 2);
+		}
+
+		/**
+		 * Intersects the pairs of parts between from and to, mapping the
+		 * resulting parameters back to the curves. Locations at the shared
+		 * end points of neighboring curves are skipped.
+		 */
+		ArrayList<CurveLocation> intersect(int[] pairs, int from, int to,
+				Curve[] curveObjects, int[] next) {
+			ArrayList<CurveLocation> locations =
+					new ArrayList<CurveLocation>();
+			ArrayList<CurveLocation> found = new ArrayList<CurveLocation>();
+			Curve.ClippingBuffer buffer = new Curve.ClippingBuffer();
+			double[] v1 = new double[8], v2 = new double[8];
+			for (int i = from; i < to; i++) {
+				int part1 = pairs[i * 2], part2 = pairs[i * 2 + 1];
+				// Keep the curve that comes first as the first one.
+				if (curves[part1] > curves[part2]) {
+					int tmp = part1;
+					part1 = part2;
+					part2 = tmp;
+				}
+				int index1 = curves[part1], index2 = curves[part2];
+				Curve curve1 = curveObjects[index1];
+				Curve curve2 = curveObjects[index2];
+				System.arraycopy(values, part1 * 8, v1, 0, 8);
+				System.arraycopy(values, part2 * 8, v2, 0, 8);
+				found.clear();
+				Curve.getIntersections(curve1, v1, curve2, v2, found, buffer);
+				for (int j = 0, l = found.size(); j < l; j++) {
+					CurveLocation loc = found.get(j);
+					double t1 = map(part1, loc.getParameter());
+					double t2 = map(part2, loc.getIntersection().getParameter());
+					if (!isJoint(index1, t1, index2, t2, next)
+							&& !isJoint(index2, t2, index1, t1, next))
+						locations.add(new CurveLocation(curve1, t1,
+								loc.getPoint(), curve2, t2));
+				}
+			}
+			return locations;
+		}
+
+		double map(int part, double t) {
+			double from = ranges[part * 2], to = ranges[part * 2 + 1];
+			return from + (to - from) * t;
+		}
+
+		/**
+		 * Checks if the two locations describe the same point where curves
+		 * meet, or the same location on one curve.
+		 */
+		static boolean isJoint(int index1, double t1, int index2, double t2,
+				int[] next) {
+			return index1 == index2 && Math.abs(t1 - t2) < Numerical.TOLERANCE
+					|| next[index1] == index2 && t1 > 1 - Numerical.TOLERANCE
+					&& t2 < Numerical.TOLERANCE;
+		}
+
+		static double[] grow(double[] array, int length) {
+			double[] grown = new double[length];
+			System.arraycopy(array, 0, grown, 0, Math.min(array.length, length));
+			return grown;
+		}
+
+		static int[] grow(int[] array, int length) {
+			int[] grown = new int[length];
+			System.arraycopy(array, 0, grown, 0, Math.min(array.length, length));
+			return grown;
+		}
+	}
+
+	private static class IntersectTask
+			implements Callable<ArrayList<CurveLocation>> {
+		Parts parts;
+		int[] pairs;
+		int from;
+		int to;
+		Curve[] curves;
+		int[] next;
+
+		IntersectTask(Parts parts, int[] pairs, int from, int to,
+				Curve[] curves, int[] next) {
+			this.parts = parts;
+			this.pairs = pairs;
+			this.from = from;
+			this.to = to;
+			this.curves = curves;
+			this.next = next;
+		}
+
+		public ArrayList<CurveLocation> call() {
+			return parts.intersect(pairs, from, to, curves, next);
+		}
+	}
+}
@@ -372,22 +372,62 @@ public abstract class PathItem extends Item {
 		List<Curve> curves1 = getAllCurves(), curves2 = path.getAllCurves();
 		int length1 = curves1.size(), length2 = curves2.size();
 		// Convert curves2 to curve values, as we're looping through them for
-		// each curve in curves1.
-		double[][][] curvesValues2 = new double[length2][][];
-		for (int i = 0; i < length2; i++)
-			curvesValues2[i] = curves2.get(i).getCurveValues();
+		// each curve in curves1, and keep their control bounds along, so
+		// pairs of curves that can't intersect can be skipped right away.
+		double[][] curvesValues2 = new double[length2][];
+		double[] bounds2 = new double[length2 * 4];
+		for (int i = 0; i < length2; i++) {
+			double[] values = curves2.get(i).getCurveValues();
+			curvesValues2[i] = values;
+			getControlBounds(values, bounds2, i * 4);
+		}
 		// Now loop through each curve in curves1 and get intersections with
-		// the curves in curves2.
+		// the curves in curves2. The buffer used for clipping is shared
+		// between all calls.
+		Curve.ClippingBuffer buffer = new Curve.ClippingBuffer();
+		double[] bounds1 = new double[4];
 		for (int i = 0; i < length1; i++) {
-			Curve curve = curves1.get(i);
-			double[][] curveValues = curve.getCurveValues();
-			for (int j = 0; j < length2; j++)
-				Curve.getIntersections(curve, curveValues, curvesValues2[j],
-						locations);
+			Curve curve1 = curves1.get(i);
+			double[] curveValues = curve1.getCurveValues();
+			getControlBounds(curveValues, bounds1, 0);
+			for (int j = 0; j < length2; j++) {
+				int k = j * 4;
+				if (bounds1[2] >= bounds2[k] && bounds1[3] >= bounds2[k + 1]
+						&& bounds1[0] <= bounds2[k + 2]
+						&& bounds1[1] <= bounds2[k + 3])
+					Curve.getIntersections(curve1, curveValues,
+							curves2.get(j), curvesValues2[j], locations,
+							buffer);
+			}
 		}
 		return locations.toArray(new CurveLocation[locations.size()]);
 	}
 
+	/**
+	 * Writes the control bounds of the curve values as minX, minY, maxX, maxY
+	 * into bounds at offset.
+	 */
+	private static void getControlBounds(double[] values, double[] bounds,
+			int offset) {
+		double minX = values[0], minY = values[1];
+		double maxX = minX, maxY = minY;
+		for (int i = 2; i < 8; i += 2) {
+			double x = values[i], y = values[i + 1];
+			if (x < minX)
+				minX = x;
+			else if (x > maxX)
+				maxX = x;
+			if (y < minY)
+				minY = y;
+			else if (y > maxY)
+				maxY = y;
+		}
+		bounds[offset] = minX;
+		bounds[offset + 1] = minY;
+		bounds[offset + 2] = maxX;
+		bounds[offset + 3] = maxY;
+	}
+
 	/**
 	 * Draws the path's content into a Graphics2D object. Useful for
 	 * conversions.
@@ -0,0 +1,629 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scriptographer.ai;
+
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.scratchdisk.list.ExtendedList;
+import com.scriptographer.ScriptographerException;
+
+/**
+ * PathOperations performs the same boolean operations as {@link Pathfinder},
+ * but in Java, on {@link java.awt.Shape} geometry as returned by
+ * {@link PathItem#toShape()}. The shape based methods do not touch the
+ * document, so they can be used on in-memory geometry, off the main thread
+ * and for many independent sets of operands in parallel. The item based
+ * methods convert the items, perform the operation and replace them with the
+ * result, like Pathfinder does.
+ *
+ * Shapes are expected in back to front order, the first one being the
+ * backmost. Items are sorted by their paint order first.
+ *
+ * The operations are computed by {@link java.awt.geom.Area}, which PathItem
+ * already uses for its own intersect, unite and exclude methods. It clips
+ * quadratic and cubic curves exactly and handles the winding rules and
+ * degenerate cases that a new clipping engine over
+ * {@link Curve#getIntersections(Curve)} and {@link Curve#split(double)} would
+ * have to deal with again. This results in a few differences to Pathfinder:
+ * The results may contain more anchor points than Illustrator's, as Area
+ * splits curves at their extrema, and instead of Pathfinder's precision, a
+ * tolerance decides what is too small to keep, see
+ * {@link #process(Operation, Shape[], float)}.
+ *
+ * @author lehni
+ */
+public final class PathOperations {
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private PathOperations() {
+	}
+
+	public enum Operation {
+		UNITE,
+		INTERSECT,
+		EXCLUDE,
+		BACK_MINUS_FRONT,
+		DIVIDE,
+		OUTLINE
+	}
+
+	/**
+	 * The default tolerance in points, a hundredth of a point, which is far
+	 * below anything visible but above the rounding errors of the computed
+	 * intersections.
+	 */
+	private static final float DEFAULT_TOLERANCE = 0.01f;
+	private static final boolean DEFAULT_REMOVE_POINTS = false;
+
+	/**
+	 * Performs the operation on the shapes. {@link Operation#DIVIDE} returns
+	 * one area for each of the pieces that the shapes are divided into,
+	 * {@link Operation#OUTLINE} one open path for each of the edges between
+	 * the points where the outlines of the pieces meet. All other operations
+	 * return one area. Empty results are omitted.
+	 *
+	 * Since areas are computed exactly, there is no precision to choose like
+	 * in Illustrator. Instead, the tolerance is the size under which results
+	 * are treated as numerical noise: Pieces of divided shapes with a width
+	 * and height below it are dropped, and edges of outlines whose points lie
+	 * closer than it are merged.
+	 *
+	 * @param tolerance the tolerance in points
+	 */
+	public static Shape[] process(Operation operation, Shape[] shapes,
+			float tolerance) {
+		ArrayList<Shape> result = new ArrayList<Shape>();
+		if (shapes.length > 0) {
+			switch (operation) {
+				case DIVIDE:
+					result.addAll(divide(shapes, tolerance));
+					break;
+				case OUTLINE:
+					new Outline(tolerance).process(divide(shapes, tolerance),
+							result);
+					break;
+				default:
+					Area area = new Area(shapes[0]);
+					for (int i = 1; i < shapes.length; i++) {
+						Area operand = new Area(shapes[i]);
+						switch (operation) {
+							case UNITE:
+								area.add(operand);
+								break;
+							case INTERSECT:
+								area.intersect(operand);
+								break;
+							case EXCLUDE:
+								area.exclusiveOr(operand);
+								break;
+							case BACK_MINUS_FRONT:
+								area.subtract(operand);
+								break;
+						}
+					}
+					if (!area.isEmpty())
+						result.add(area);
+			}
+		}
+		return result.toArray(new Shape[result.size()]);
+	}
+
+	public static Shape[] process(Operation operation, Shape[] shapes) {
+		return process(operation, shapes, DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 * Performs the operation on each of the independent sets of shapes,
+	 * processing them in parallel.
+	 *
+	 * @return the results of {@link #process(Operation, Shape[], float)} for
+	 *         each set, in the same order
+	 */
+	public static Shape[][] process(final Operation operation,
+			Shape[][] shapeSets, final float tolerance) {
+		ExecutorService executor = PathIntersector.getExecutor();
+		ArrayList<Future<Shape[]>> futures = new ArrayList<Future<Shape[]>>();
+		for (int i = 0; i < shapeSets.length; i++) {
+			final Shape[] shapes = shapeSets[i];
+			futures.add(executor.submit(new Callable<Shape[]>() {
+				public Shape[] call() {
+					return process(operation, shapes, tolerance);
+				}
+			}));
+		}
+		Shape[][] results = new Shape[shapeSets.length][];
+		try {
+			for (int i = 0; i < results.length; i++)
+				results[i] = futures.get(i).get();
+		} catch (Exception e) {
+			for (Future<Shape[]> future : futures)
+				future.cancel(true);
+			throw new ScriptographerException(e);
+		}
+		return results;
+	}
+
+	public static Shape[][] process(Operation operation,
+			Shape[][] shapeSets) {
+		return process(operation, shapeSets, DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 * Divides the shapes into all the pieces formed by their overlaps. Each
+	 * new shape splits the pieces found so far into the parts inside and
+	 * outside of it, and adds what is left of itself as a new piece.
+	 */
+	private static ArrayList<Area> divide(Shape[] shapes, float tolerance) {
+		ArrayList<Area> pieces = new ArrayList<Area>();
+		Area covered = new Area();
+		for (int i = 0; i < shapes.length; i++) {
+			Area operand = new Area(shapes[i]);
+			ArrayList<Area> divided = new ArrayList<Area>();
+			for (Area piece : pieces) {
+				Area inside = (Area) piece.clone();
+				inside.intersect(operand);
+				piece.subtract(operand);
+				addPiece(piece, tolerance, divided);
+				addPiece(inside, tolerance, divided);
+			}
+			Area remaining = (Area) operand.clone();
+			remaining.subtract(covered);
+			addPiece(remaining, tolerance, divided);
+			covered.add(operand);
+			pieces = divided;
+		}
+		return pieces;
+	}
+
+	private static void addPiece(Area piece, float tolerance,
+			ArrayList<Area> pieces) {
+		if (!piece.isEmpty()) {
+			Rectangle2D bounds = piece.getBounds2D();
+			if (bounds.getWidth() >= tolerance
+					|| bounds.getHeight() >= tolerance)
+				pieces.add(piece);
+		}
+	}
+
+	/**
+	 * Performs the operation on the passed items in their paint order and
+	 * replaces them with the result, like Pathfinder does. The result is
+	 * placed where the frontmost item was and receives its style, except for
+	 * {@link Operation#BACK_MINUS_FRONT}, where it takes the place and the
+	 * style of the backmost item. Items that are not {@link PathItem} objects
+	 * are ignored.
+	 *
+	 * @param removePoints if true, anchor points closer than the tolerance to
+	 *        the previous one are removed from the result
+	 * @return the resulting item, a {@link Group} of closed paths for
+	 *         {@link Operation#DIVIDE} and of open paths for
+	 *         {@link Operation#OUTLINE}, or {@code null} if the result is
+	 *         empty, in which case the items are left in place
+	 */
+	public static Item process(Operation operation, Object[] items,
+			float tolerance, boolean removePoints) {
+		ArrayList<PathItem> pathItems = new ArrayList<PathItem>();
+		for (int i = 0; i < items.length; i++) {
+			if (items[i] instanceof PathItem)
+				pathItems.add((PathItem) items[i]);
+		}
+		if (pathItems.isEmpty())
+			return null;
+		Collections.sort(pathItems, new Comparator<PathItem>() {
+			public int compare(PathItem item1, PathItem item2) {
+				return item1.isBelow(item2) ? -1
+						: item2.isBelow(item1) ? 1 : 0;
+			}
+		});
+		Shape[] shapes = new Shape[pathItems.size()];
+		for (int i = 0; i < shapes.length; i++)
+			shapes[i] = pathItems.get(i).toShape();
+		Shape[] processed = process(operation, shapes, tolerance);
+		if (processed.length == 0)
+			return null;
+		PathItem target = pathItems.get(operation == Operation.BACK_MINUS_FRONT
+				? 0 : pathItems.size() - 1);
+		Document document = target.document;
+		PathStyle style = target.getStyle();
+		PathItem[] results = new PathItem[processed.length];
+		for (int i = 0; i < processed.length; i++) {
+			PathIterator iter = processed[i].getPathIterator(null);
+			PathItem result = document.createPathItem(removePoints
+					? new RedundantPointsFilter(iter, tolerance) : iter);
+			result.setStyle(style);
+			if (operation == Operation.OUTLINE) {
+				// Outlines are stroked with the fill color.
+				result.setStrokeColor(result.getFillColor());
+				result.setFillColor(Color.NONE);
+			}
+			results[i] = result;
+		}
+		Item item = operation == Operation.DIVIDE
+				|| operation == Operation.OUTLINE
+				? document.createGroup(results) : results[0];
+		item.moveAbove(target);
+		for (PathItem pathItem : pathItems)
+			pathItem.remove();
+		return item;
+	}
+
+	public static Item process(Operation operation, Object[] items) {
+		return process(operation, items, DEFAULT_TOLERANCE,
+				DEFAULT_REMOVE_POINTS);
+	}
+
+	public static Item process(Operation operation,
+			ExtendedList<? extends Item> items, float tolerance,
+			boolean removePoints) {
+		return process(operation, items.toArray(), tolerance, removePoints);
+	}
+
+	public static Item process(Operation operation,
+			ExtendedList<? extends Item> items) {
+		return process(operation, items.toArray());
+	}
+
+	public static Item unite(Object[] items, float tolerance,
+			boolean removePoints) {
+		return process(Operation.UNITE, items, tolerance, removePoints);
+	}
+
+	public static Item unite(Object[] items) {
+		return process(Operation.UNITE, items);
+	}
+
+	public static Item intersect(Object[] items, float tolerance,
+			boolean removePoints) {
+		return process(Operation.INTERSECT, items, tolerance, removePoints);
+	}
+
+	public static Item intersect(Object[] items) {
+		return process(Operation.INTERSECT, items);
+	}
+
+	public static Item exclude(Object[] items, float tolerance,
+			boolean removePoints) {
+		return process(Operation.EXCLUDE, items, tolerance, removePoints);
+	}
+
+	public static Item exclude(Object[] items) {
+		return process(Operation.EXCLUDE, items);
+	}
+
+	public static Item backMinusFront(Object[] items, float tolerance,
+			boolean removePoints) {
+		return process(Operation.BACK_MINUS_FRONT, items, tolerance,
+				removePoints);
+	}
+
+	public static Item backMinusFront(Object[] items) {
+		return process(Operation.BACK_MINUS_FRONT, items);
+	}
+
+	public static Item divide(Object[] items, float tolerance,
+			boolean removePoints) {
+		return process(Operation.DIVIDE, items, tolerance, removePoints);
+	}
+
+	public static Item divide(Object[] items) {
+		return process(Operation.DIVIDE, items);
+	}
+
+	public static Item outline(Object[] items, float tolerance,
+			boolean removePoints) {
+		return process(Operation.OUTLINE, items, tolerance, removePoints);
+	}
+
+	public static Item outline(Object[] items) {
+		return process(Operation.OUTLINE, items);
+	}
+
+	/**
+	 * Splits the outlines of divided pieces into open edges. Edges shared by
+	 * neighbouring pieces are only added once, and edges are joined into one
+	 * path where no other edge meets them. The points are matched in grid
+	 * cells the size of the tolerance.
+	 */
+	private static class Outline {
+		private double tolerance;
+		private ArrayList<Edge> edges = new ArrayList<Edge>();
+		// The points where edges start or end, and the edges at each of them
+		private ArrayList<double[]> nodes = new ArrayList<double[]>();
+		private ArrayList<ArrayList<Edge>> nodeEdges =
+				new ArrayList<ArrayList<Edge>>();
+		private HashMap<Long, ArrayList<Integer>> cells =
+				new HashMap<Long, ArrayList<Integer>>();
+
+		Outline(double tolerance) {
+			// Avoid empty cells for a tolerance of 0
+			this.tolerance = Math.max(tolerance, 1e-9);
+		}
+
+		/**
+		 * One curve of an outline, with the coordinates of all its points,
+		 * from the start to the end point.
+		 */
+		private static class Edge {
+			double[] coords;
+			int start;
+			int end;
+			boolean visited;
+		}
+
+		void process(ArrayList<Area> pieces, ArrayList<Shape> result) {
+			double[] coords = new double[6];
+			for (Area piece : pieces) {
+				double startX = 0, startY = 0, x = 0, y = 0;
+				for (PathIterator iter = piece.getPathIterator(null);
+						!iter.isDone(); iter.next()) {
+					int type = iter.currentSegment(coords);
+					int count;
+					switch (type) {
+						case PathIterator.SEG_MOVETO:
+							startX = x = coords[0];
+							startY = y = coords[1];
+							continue;
+						case PathIterator.SEG_CLOSE:
+							coords[0] = startX;
+							coords[1] = startY;
+							count = 1;
+							break;
+						case PathIterator.SEG_QUADTO:
+							count = 2;
+							break;
+						case PathIterator.SEG_CUBICTO:
+							count = 3;
+							break;
+						default:
+							count = 1;
+					}
+					double[] values = new double[(count + 1) * 2];
+					values[0] = x;
+					values[1] = y;
+					System.arraycopy(coords, 0, values, 2, count * 2);
+					addEdge(values);
+					x = values[count * 2];
+					y = values[count * 2 + 1];
+				}
+			}
+			// First follow the edges from the points where more or less than
+			// two edges meet, then the closed loops that are left.
+			for (int i = 0, l = nodes.size(); i < l; i++) {
+				ArrayList<Edge> list = nodeEdges.get(i);
+				if (list.size() != 2) {
+					for (int j = 0; j < list.size(); j++) {
+						Edge edge = list.get(j);
+						if (!edge.visited)
+							result.add(follow(edge, i));
+					}
+				}
+			}
+			for (Edge edge : edges) {
+				if (!edge.visited)
+					result.add(follow(edge, edge.start));
+			}
+		}
+
+		private void addEdge(double[] values) {
+			int last = values.length - 2;
+			boolean degenerate = true;
+			for (int i = 2; i <= last && degenerate; i += 2)
+				degenerate = isClose(values, 0, values, i);
+			if (degenerate)
+				return;
+			int start = getNode(values[0], values[1]);
+			int end = getNode(values[last], values[last + 1]);
+			// Skip edges that the neighbouring piece added already, usually
+			// in the reverse direction.
+			for (Edge other : nodeEdges.get(start)) {
+				if (other.coords.length == values.length
+						&& (other.start == start && other.end == end
+								&& isSame(other.coords, values, false)
+							|| other.start == end && other.end == start
+								&& isSame(other.coords, values, true)))
+					return;
+			}
+			Edge edge = new Edge();
+			edge.coords = values;
+			edge.start = start;
+			edge.end = end;
+			edges.add(edge);
+			nodeEdges.get(start).add(edge);
+			if (end != start)
+				nodeEdges.get(end).add(edge);
+		}
+
+		private boolean isClose(double[] a, int i, double[] b, int j) {
+			return Math.abs(a[i] - b[j]) < tolerance
+					&& Math.abs(a[i + 1] - b[j + 1]) < tolerance;
+		}
+
+		private boolean isSame(double[] a, double[] b, boolean reversed) {
+			int last = a.length - 2;
+			for (int i = 0; i <= last; i += 2) {
+				if (!isClose(a, i, b, reversed ? last - i : i))
+					return false;
+			}
+			return true;
+		}
+
+		private long getCell(double value) {
+			return (long) Math.floor(value / tolerance);
+		}
+
+		private static Long getKey(long x, long y) {
+			return x * 0x9e3779b97f4a7c15L + y;
+		}
+
+		/**
+		 * Returns the index of the node within the tolerance of the point,
+		 * adding a new one if there is none yet.
+		 */
+		private int getNode(double x, double y) {
+			long cx = getCell(x), cy = getCell(y);
+			double[] point = new double[] { x, y };
+			for (long i = cx - 1; i <= cx + 1; i++) {
+				for (long j = cy - 1; j <= cy + 1; j++) {
+					ArrayList<Integer> cell = cells.get(getKey(i, j));
+					if (cell != null) {
+						for (int index : cell) {
+							if (isClose(nodes.get(index), 0, point, 0))
+								return index;
+						}
+					}
+				}
+			}
+			int index = nodes.size();
+			nodes.add(point);
+			nodeEdges.add(new ArrayList<Edge>());
+			Long key = getKey(cx, cy);
+			ArrayList<Integer> cell = cells.get(key);
+			if (cell == null) {
+				cell = new ArrayList<Integer>(1);
+				cells.put(key, cell);
+			}
+			cell.add(index);
+			return index;
+		}
+
+		/**
+		 * Creates an open path from the node along the edge, continuing
+		 * through the nodes where only two edges meet.
+		 */
+		private GeneralPath follow(Edge edge, int node) {
+			GeneralPath path = new GeneralPath();
+			double[] point = nodes.get(node);
+			path.moveTo((float) point[0], (float) point[1]);
+			while (edge != null && !edge.visited) {
+				edge.visited = true;
+				boolean reversed = edge.start != node;
+				double[] c = edge.coords;
+				int last = c.length - 2;
+				float[] f = new float[last];
+				for (int i = 2, j = 0; i <= last; i += 2, j += 2) {
+					int k = reversed ? last - i : i;
+					f[j] = (float) c[k];
+					f[j + 1] = (float) c[k + 1];
+				}
+				switch (f.length) {
+					case 2:
+						path.lineTo(f[0], f[1]);
+						break;
+					case 4:
+						path.quadTo(f[0], f[1], f[2], f[3]);
+						break;
+					default:
+						path.curveTo(f[0], f[1], f[2], f[3], f[4], f[5]);
+				}
+				node = reversed ? edge.start : edge.end;
+				ArrayList<Edge> list = nodeEdges.get(node);
+				if (list.size() != 2)
+					break;
+				edge = list.get(0) != edge ? list.get(0) : list.get(1);
+			}
+			return path;
+		}
+	}
+
+	/**
+	 * Skips line and curve segments that end closer than the tolerance to the
+	 * previous point, along with their control points.
+	 */
+	private static class RedundantPointsFilter implements PathIterator {
+		private PathIterator iter;
+		private double tolerance;
+		private double[] coords = new double[6];
+		private int type;
+		private double x, y;
+
+		RedundantPointsFilter(PathIterator iter, double tolerance) {
+			this.iter = iter;
+			this.tolerance = tolerance;
+			skip();
+		}
+
+		private void skip() {
+			while (!iter.isDone()) {
+				type = iter.currentSegment(coords);
+				int end;
+				switch (type) {
+					case SEG_LINETO:
+						end = 0;
+						break;
+					case SEG_QUADTO:
+						end = 2;
+						break;
+					case SEG_CUBICTO:
+						end = 4;
+						break;
+					default:
+						end = -1;
+				}
+				if (end != -1) {
+					boolean redundant = true;
+					for (int i = 0; i <= end && redundant; i += 2)
+						redundant = Math.abs(coords[i] - x) < tolerance
+								&& Math.abs(coords[i + 1] - y) < tolerance;
+					if (redundant) {
+						iter.next();
+						continue;
+					}
+				}
+				if (type != SEG_CLOSE) {
+					int last = end != -1 ? end : 0;
+					x = coords[last];
+					y = coords[last + 1];
+				}
+				break;
+			}
+		}
+
+		public int getWindingRule() {
+			return iter.getWindingRule();
+		}
+
+		public boolean isDone() {
+			return iter.isDone();
+		}
+
+		public void next() {
+			iter.next();
+			skip();
+		}
+
+		public int currentSegment(float[] coords) {
+			for (int i = 0; i < 6; i++)
+				coords[i] = (float) this.coords[i];
+			return type;
+		}
+
+		public int currentSegment(double[] coords) {
+			System.arraycopy(this.coords, 0, coords, 0, 6);
+			return type;
+		}
+	}
+}
@@ -14,6 +14,8 @@
 
 package com.scriptographer.ai;
 
+import java.nio.ByteBuffer;
+
 import com.scratchdisk.script.ArgumentReader;
 import com.scratchdisk.script.ChangeReceiver;
 import com.scriptographer.Committable;
@@ -242,6 +244,52 @@ public class Segment implements Committable, ChangeReceiver {
 		corner = values[valueIndex + 6] != 0;
 	}
 
+	/**
+	 * Reads the values from the direct buffer used for bulk fetching, in the
+	 * same layout as {@link #setValues(float[], int)}. The corner flag is
+	 * read as an int, since only its first byte is set.
+	 */
+	protected void setValues(ByteBuffer buffer, int valueIndex) {
+		int offset = valueIndex * 4;
+		float x = buffer.getFloat(offset);
+		float y = buffer.getFloat(offset + 4);
+		point.x = x;
+		point.y = y;
+		handleIn.x = buffer.getFloat(offset + 8) - x;
+		handleIn.y = buffer.getFloat(offset + 12) - y;
+		handleOut.x = buffer.getFloat(offset + 16) - x;
+		handleOut.y = buffer.getFloat(offset + 20) - y;
+		corner = buffer.getInt(offset + 24) != 0;
+	}
+
+	/**
+	 * Reads the values from the packed storage of a {@link SegmentList}, in
+	 * the same layout as {@link #setValues(float[], int)}.
+	 */
+	protected void setValues(double[] values, int valueIndex) {
+		double x = values[valueIndex];
+		double y = values[valueIndex + 1];
+		point.x = x;
+		point.y = y;
+		handleIn.x = values[valueIndex + 2] - x;
+		handleIn.y = values[valueIndex + 3] - y;
+		handleOut.x = values[valueIndex + 4] - x;
+		handleOut.y = values[valueIndex + 5] - y;
+		corner = values[valueIndex + 6] != 0;
+	}
+
+	protected void getValues(double[] values, int valueIndex) {
+		double x = point.x;
+		double y = point.y;
+		values[valueIndex] = x;
+		values[valueIndex + 1] = y;
+		values[valueIndex + 2] = handleIn.x + x;
+		values[valueIndex + 3] = handleIn.y + y;
+		values[valueIndex + 4] = handleOut.x + x;
+		values[valueIndex + 5] = handleOut.y + y;
+		values[valueIndex + 6] = corner ? 1 : 0;
+	}
+
 	protected void getValues(float[] values, int valueIndex) {
 		double x = point.x;
 		double y = point.y;
@@ -260,6 +308,7 @@ public class Segment implements Committable, ChangeReceiver {
 		if (dirty != DIRTY_NONE && segments != null && segments.path != null) {
 			Path path = segments.path;
 			path.checkValid();
+			int index = getIndex();
 			if ((dirty & DIRTY_POINTS) != 0) {
 				SegmentList.nativeSet(path.handle, path.document.handle, index,
 						(float) point.x,
@@ -307,10 +356,21 @@ public class Segment implements Committable, ChangeReceiver {
 	protected void markDirty(int dirty) {
 		// Only mark it as dirty if it's attached to a path already and
 		// if the given dirty flags are not already set
-		if ((this.dirty & dirty) != dirty && segments != null
-				&& segments.path != null) {
-			CommitManager.markDirty(segments.path, this);
-			this.dirty |= dirty;
+		if (segments != null && segments.path != null) {
+			// Cached curve offsets depend on the point values, so clear them on
+			// each change, even if the segment is already dirty.
+			if ((dirty & DIRTY_POINTS) != 0) {
+				segments.path.clearCurveCache();
+				// Packed lists keep track of changed points themselves
+				if (segments.isPacked()) {
+					segments.markDirty(this);
+					dirty &= ~DIRTY_POINTS;
+				}
+			}
+			if ((this.dirty & dirty) != dirty) {
+				CommitManager.markDirty(segments.path, this);
+				this.dirty |= dirty;
+			}
 		}
 	}
 	
@@ -318,24 +378,26 @@ public class Segment implements Committable, ChangeReceiver {
 		if ((dirty & DIRTY_POINTS) == 0 && segments != null
 				&& segments.path != null && segments.path.needsUpdate(version)) {
 			// This handles all the updating automatically:
-			segments.get(index);
+			segments.get(getIndex());
 			// Version has changed, force getting of selection state:
 			selectionState = SELECTION_FETCH;
 		} else if ((dirty & DIRTY_SELECTION) == 0 // Only fetch if not dirty
-				&& selectionVersion != CommitManager.version) {
+				&& selectionVersion != CommitManager.getVersion(
+						segments != null ? segments.path : null)) {
 			selectionState = SELECTION_FETCH;
 		}
 		if (updateSelection && selectionState == SELECTION_FETCH) {
 			if (segments != null && segments.path != null) {
 				segments.path.checkValid();
 				selectionState = SegmentList.nativeGetSelectionState(
-						segments.path.handle, index);
+						segments.path.handle, getIndex());
 			} else {
 				selectionState = SELECTION_NONE;
 			}
 			// Selection uses its own version number as it might change
 			// regardless of whether the path itself changes or not.
-			selectionVersion = CommitManager.version;
+			selectionVersion = CommitManager.getVersion(
+					segments != null ? segments.path : null);
 		}
 	}
 
@@ -420,6 +482,9 @@ public class Segment implements Committable, ChangeReceiver {
 	 * segment belongs to.
 	 */
 	public int getIndex() {
+		// Indices are updated lazily after structural changes of the list
+		if (segments != null)
+			segments.updateIndices();
 		return index;
 	}
 	
@@ -436,7 +501,7 @@ public class Segment implements Committable, ChangeReceiver {
 	public Curve getCurve() {
 		if (segments  != null && segments.path != null) {
 			CurveList curves = segments.path.getCurves();
-			int index = this.index;
+			int index = getIndex();
 			// The last segment of an open path belongs to the last curve
 			if (!segments.path.isClosed() && index == segments.size() - 1)
 				index--;
@@ -457,6 +522,7 @@ public class Segment implements Committable, ChangeReceiver {
 	 */
 	public Segment getNext() {
 		if (segments != null) {
+			int index = getIndex();
 			if (index + 1 < segments.size()) {
 				return segments.get(index + 1);
 			} else {
@@ -474,6 +540,7 @@ public class Segment implements Committable, ChangeReceiver {
 	 */
 	public Segment getPrevious() {
 		if (segments != null) {
+			int index = getIndex();
 			if (index > 0) {
 				return segments.get(index - 1);
 			} else {
@@ -604,7 +671,7 @@ public class Segment implements Committable, ChangeReceiver {
 
 	public boolean remove() {
 		if (segments != null)
-			return segments.remove(index) != null;
+			return segments.remove(getIndex()) != null;
 		return false;
 	}
 }
\ No newline at end of file
@@ -14,7 +14,18 @@
 
 package com.scriptographer.ai;
 
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
 import com.scratchdisk.list.ReadOnlyList;
+import com.scratchdisk.util.ArrayList;
+import com.scriptographer.CommitManager;
+import com.scriptographer.Committable;
+import com.scriptographer.ScriptographerEngine;
 import com.scriptographer.ScriptographerException;
 import com.scriptographer.list.AbstractFetchList;
 
@@ -23,7 +34,8 @@ import com.scriptographer.list.AbstractFetchList;
  * 
  * @jshide
  */
-public class SegmentList extends AbstractFetchList<Segment> {
+public class SegmentList extends AbstractFetchList<Segment>
+		implements Committable {
 	protected Path path;
 	protected CurveList curves = null;
 
@@ -41,6 +53,51 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	// that's all we want in the java environment:
 	protected static final int VALUES_PER_SEGMENT = 7;
 
+	/**
+	 * The amount of segments from which on blocks are fetched through
+	 * {@link #buffer} in one native call, rather than into a new float array.
+	 */
+	protected static final int BULK_FETCH_THRESHOLD = 16;
+
+	/**
+	 * The direct buffer that bulk fetches are read into, in native byte order
+	 * and with the segment layout described above. It is reused across all
+	 * lists, as segments are only fetched from the main thread.
+	 */
+	private static ByteBuffer buffer = null;
+
+	/**
+	 * In packed mode, the values of all segments are kept in packedValues,
+	 * VALUES_PER_SEGMENT per segment, in the layout described above. Segment
+	 * objects are only created when requested, and only weakly referenced from
+	 * views, so they can be collected again once scripts stop using them.
+	 * Changed points are written through to packedValues, and their indices
+	 * are tracked in dirtySegments until they are committed.
+	 */
+	private boolean packed = false;
+	private double[] packedValues = null;
+	private int packedVersion = -1;
+	private BitSet dirtySegments = null;
+	private ArrayList<WeakReference<Segment>> views = null;
+
+	/**
+	 * Segments appended through the drawing commands (moveTo, lineTo, etc.)
+	 * are collected in pendingValues, in the layout described above, and
+	 * inserted with one native call by {@link #flush()} once they are
+	 * accessed or committed. They are the last pendingCount segments of the
+	 * list and are already included in size.
+	 */
+	private float[] pendingValues = null;
+	private int pendingCount = 0;
+
+	/**
+	 * Structural changes do not renumber the following segments right away.
+	 * Instead the first index from which on the indices may be outdated is
+	 * remembered here, and {@link #updateIndices()} fixes them in one pass
+	 * when they are needed.
+	 */
+	private int indexUpdateFrom = Integer.MAX_VALUE;
+
 	public SegmentList() {
 	}
 
@@ -68,12 +125,13 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	 */
 	protected void updateSize(int newSize) {
 		if (path != null) {
+			flush();
 			if (newSize != size) {
 				if (newSize == -1) {
 					path.checkValid();
 					newSize = nativeGetSize(path.handle);
 				}
-				list.setSize(newSize);
+				setCachedSize(newSize);
 				size = newSize;
 				if (curves != null)
 					curves.updateSize();
@@ -95,6 +153,39 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	protected static native void nativeGet(int handle, int index, int count,
 			float[] values);
 
+	protected static native void nativeGetBuffer(int handle, int index,
+			int count, ByteBuffer buffer);
+
+	/**
+	 * Reads count segments starting at index into values. All native reads
+	 * of {@link #fetch(int, int)} go through this method and
+	 * {@link #readValues(int, int, ByteBuffer)}.
+	 */
+	protected void readValues(int index, int count, float[] values) {
+		nativeGet(path.handle, index, count, values);
+	}
+
+	protected void readValues(int index, int count, ByteBuffer buffer) {
+		nativeGetBuffer(path.handle, index, count, buffer);
+	}
+
+	/**
+	 * Returns the shared bulk fetch buffer, growing it if it cannot hold the
+	 * values of count segments.
+	 */
+	protected static ByteBuffer getBuffer(int count) {
+		// The buffer is shared, and only used on the main thread.
+		ScriptographerEngine.checkMainThread();
+		int capacity = count * VALUES_PER_SEGMENT * 4;
+		if (buffer == null || buffer.capacity() < capacity) {
+			// Grow in steps, to avoid reallocations for slowly growing paths
+			buffer = ByteBuffer.allocateDirect(Math.max(capacity,
+					buffer != null ? buffer.capacity() * 2 : 0));
+			buffer.order(ByteOrder.nativeOrder());
+		}
+		return buffer;
+	}
+
 	// docHandle seems to be only needed for modifying code!
 	protected static native void nativeSet(int handle, int docHandle,
 			int index, float pointX, float pointY, float inX, float inY,
@@ -123,7 +214,11 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	 * @param toIndex
 	 */
 	protected void fetch(int fromIndex, int toIndex) {
-		if (path != null) {
+		ScriptographerEngine.checkMainThread();
+		flush();
+		if (packed) {
+			fetchPacked();
+		} else if (path != null) {
 			path.checkValid();
 			// To reduced needsUpdate calls, see if path needs an update
 			// regardless of the version, and then compare with that each time.
@@ -160,10 +255,18 @@ public class SegmentList extends AbstractFetchList<Segment> {
 				int count = end - start;
 				if (count > 0) {
 					fetchCount -= count;
-					int length =  count * VALUES_PER_SEGMENT;
-					if (values == null || values.length < length)
-						values = new float[length];
-					nativeGet(path.handle, start, count, values);
+					// Larger blocks are read in one call into the shared
+					// direct buffer, which requires no copying on this side.
+					ByteBuffer buffer = null;
+					if (count >= BULK_FETCH_THRESHOLD) {
+						buffer = getBuffer(count);
+						readValues(start, count, buffer);
+					} else {
+						int length =  count * VALUES_PER_SEGMENT;
+						if (values == null || values.length < length)
+							values = new float[length];
+						readValues(start, count, values);
+					}
 					int valueIndex = 0;
 					for (int i = start; i < end; i++) {
 						segment = list.get(i);
@@ -171,7 +274,10 @@ public class SegmentList extends AbstractFetchList<Segment> {
 							segment = new Segment(this, i);
 							list.set(i, segment);
 						}
-						segment.setValues(values, valueIndex);
+						if (buffer != null)
+							segment.setValues(buffer, valueIndex);
+						else
+							segment.setValues(values, valueIndex);
 						segment.version = pathVersion;
 						valueIndex += VALUES_PER_SEGMENT;
 					}
@@ -187,6 +293,368 @@ public class SegmentList extends AbstractFetchList<Segment> {
 		}
 	}
 
+	/**
+	 * Returns the values of all segments, in the format used by
+	 * {@link #nativeGet} and {@link #nativeInsert}.
+	 */
+	protected float[] getValues() {
+		fetch(0, size);
+		int length = size * VALUES_PER_SEGMENT;
+		float[] values = new float[length];
+		if (packed) {
+			for (int i = 0; i < length; i++)
+				values[i] = (float) packedValues[i];
+		} else {
+			for (int i = 0; i < size; i++)
+				list.get(i).getValues(values, i * VALUES_PER_SEGMENT);
+		}
+		return values;
+	}
+
+	/**
+	 * Replaces all segments with the ones described by the values, in the
+	 * format used by {@link #nativeGet} and {@link #nativeInsert}. This only
+	 * requires one native call to remove the old segments and one to insert
+	 * the new ones. The new segment objects are created lazily.
+	 */
+	protected void setValues(float[] values, int count) {
+		flush();
+		for (int i = 0; i < size; i++) {
+			Segment segment = getCached(i);
+			if (segment != null) {
+				segment.segments = null;
+				segment.index = -1;
+			}
+		}
+		setCachedSize(0);
+		if (path != null) {
+			path.checkValid();
+			if (size > 0)
+				nativeRemove(path.handle, path.document.handle, 0, size);
+			if (count > 0)
+				nativeInsert(path.handle, path.document.handle, 0, count,
+						values);
+			path.clearCurveCache();
+			setCachedSize(count);
+		} else {
+			for (int i = 0; i < count; i++) {
+				Segment segment = new Segment(this, i);
+				segment.setValues(values, i * VALUES_PER_SEGMENT);
+				list.add(segment);
+			}
+		}
+		size = count;
+		if (curves != null)
+			curves.updateSize();
+	}
+
+	/**
+	 * Commits the passed dirty segments, which all need to belong to the same
+	 * list. They are sorted by index, and changed points of neighboring
+	 * segments are written in one native call per contiguous run, rather than
+	 * one call per segment.
+	 * 
+	 * @return the amount of native calls used to write the points
+	 * 
+	 * @jshide
+	 */
+	public static int commit(Segment[] segments, boolean endExecution) {
+		for (int i = 0; i < segments.length; i++) {
+			SegmentList list = segments[i].segments;
+			if (list != null)
+				list.updateIndices();
+		}
+		Arrays.sort(segments, new Comparator<Segment>() {
+			public int compare(Segment s1, Segment s2) {
+				return s1.index - s2.index;
+			}
+		});
+		int calls = 0;
+		float[] values = null;
+		for (int i = 0; i < segments.length;) {
+			Segment first = segments[i];
+			// Find the end of the run of segments with changed points at
+			// consecutive indices in the same list.
+			int end = i + 1;
+			if ((first.dirty & Segment.DIRTY_POINTS) != 0
+					&& first.segments != null && first.segments.path != null) {
+				while (end < segments.length) {
+					Segment next = segments[end];
+					if ((next.dirty & Segment.DIRTY_POINTS) == 0
+							|| next.segments != first.segments
+							|| next.index != first.index + end - i)
+						break;
+					end++;
+				}
+			}
+			int count = end - i;
+			if (count == 1) {
+				if ((first.dirty & Segment.DIRTY_POINTS) != 0)
+					calls++;
+				first.commit(endExecution);
+			} else {
+				Path path = first.segments.path;
+				path.checkValid();
+				int length = count * VALUES_PER_SEGMENT;
+				if (values == null || values.length < length)
+					values = new float[length];
+				for (int j = i; j < end; j++)
+					segments[j].getValues(values, (j - i) * VALUES_PER_SEGMENT);
+				nativeSet(path.handle, path.document.handle, first.index, count,
+						values);
+				calls++;
+				for (int j = i; j < end; j++) {
+					Segment segment = segments[j];
+					// Only the selection state is left to commit, if at all
+					segment.dirty &= ~Segment.DIRTY_POINTS;
+					segment.commit(endExecution);
+					segment.version = path.version;
+				}
+				path.setModified();
+			}
+			i = end;
+		}
+		return calls;
+	}
+
+	/**
+	 * Specifies whether the list keeps the values of its segments in one
+	 * packed array rather than in a segment object per index. This saves a
+	 * lot of memory for large paths, as segment objects are only created for
+	 * the segments that are actually used, and released again once they are
+	 * not referenced anymore.
+	 * 
+	 * @jshide
+	 */
+	public boolean isPacked() {
+		return packed;
+	}
+
+	public void setPacked(boolean packed) {
+		if (path != null && packed != this.packed) {
+			flush();
+			if (packed) {
+				// Commit all changes first, so the segments do not need to
+				// remember them.
+				CommitManager.commit(path);
+				views = new ArrayList<WeakReference<Segment>>(size);
+				views.setSize(size);
+				for (int i = 0; i < size; i++) {
+					Segment segment = list.get(i);
+					if (segment != null)
+						views.set(i, new WeakReference<Segment>(segment));
+				}
+				list.clear();
+				dirtySegments = new BitSet();
+			} else {
+				commit(false);
+				list.setSize(size);
+				for (int i = 0; i < size; i++)
+					list.set(i, getCached(i));
+				views = null;
+				packedValues = null;
+				dirtySegments = null;
+			}
+			this.packed = packed;
+		}
+	}
+
+	/**
+	 * Fetches the values of all segments into packedValues in one native call,
+	 * if they are not there yet or the path has changed, and updates the
+	 * segments that are still in use. Segments with uncommitted changes are
+	 * left untouched.
+	 */
+	private void fetchPacked() {
+		flush();
+		path.checkValid();
+		if (packedValues == null || path.needsUpdate(packedVersion)) {
+			int length = size * VALUES_PER_SEGMENT;
+			double[] values = packedValues != null
+					&& packedValues.length >= length
+					? packedValues : new double[length];
+			if (size > 0) {
+				ByteBuffer buffer = getBuffer(size);
+				readValues(0, size, buffer);
+				for (int i = 0; i < size; i++) {
+					if (!dirtySegments.get(i)) {
+						int index = i * VALUES_PER_SEGMENT;
+						for (int j = 0; j < 6; j++)
+							values[index + j] = buffer.getFloat((index + j) * 4);
+						values[index + 6] =
+								buffer.getInt((index + 6) * 4) != 0 ? 1 : 0;
+					}
+				}
+			}
+			packedValues = values;
+			packedVersion = path.version;
+			for (int i = 0; i < size; i++) {
+				Segment segment = getCached(i);
+				if (segment != null && !dirtySegments.get(i)) {
+					segment.setValues(values, i * VALUES_PER_SEGMENT);
+					segment.version = packedVersion;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called by {@link Segment#markDirty(int)} in packed mode, to write the
+	 * changed points of the segment through to packedValues.
+	 */
+	protected void markDirty(Segment segment) {
+		int index = segment.getIndex();
+		// Mark it first, so fetching does not overwrite the new values
+		dirtySegments.set(index);
+		fetchPacked();
+		segment.getValues(packedValues, index * VALUES_PER_SEGMENT);
+		CommitManager.markDirty(path, this);
+	}
+
+	/**
+	 * Commits the changed segments of a packed list, one native call per run
+	 * of consecutive changed segments.
+	 * 
+	 * @jshide
+	 */
+	public void commit(boolean endExecution) {
+		flush();
+		if (packed && !dirtySegments.isEmpty() && path != null) {
+			path.checkValid();
+			float[] values = null;
+			int start = dirtySegments.nextSetBit(0);
+			while (start >= 0) {
+				int end = dirtySegments.nextClearBit(start);
+				int count = end - start;
+				int length = count * VALUES_PER_SEGMENT;
+				if (values == null || values.length < length)
+					values = new float[length];
+				for (int i = 0; i < length; i++)
+					values[i] = (float) packedValues[start * VALUES_PER_SEGMENT
+							+ i];
+				nativeSet(path.handle, path.document.handle, start, count,
+						values);
+				start = dirtySegments.nextSetBit(end);
+			}
+			dirtySegments.clear();
+			path.setModified();
+		}
+	}
+
+	/**
+	 * Returns the values of all curves, 8 per curve, as described by
+	 * {@link Curve#getCurveValues()}, directly from packedValues.
+	 */
+	protected double[] getCurveValues() {
+		fetchPacked();
+		int count = size == 0 ? 0 : path.isClosed() ? size : size - 1;
+		double[] values = new double[count * 8];
+		for (int i = 0; i < count; i++) {
+			int i1 = i * VALUES_PER_SEGMENT,
+					i2 = ((i + 1) % size) * VALUES_PER_SEGMENT,
+					j = i * 8;
+			// The point and the absolute handle out of the first segment,
+			// the absolute handle in and the point of the second one.
+			values[j] = packedValues[i1];
+			values[j + 1] = packedValues[i1 + 1];
+			values[j + 2] = packedValues[i1 + 4];
+			values[j + 3] = packedValues[i1 + 5];
+			values[j + 4] = packedValues[i2 + 2];
+			values[j + 5] = packedValues[i2 + 3];
+			values[j + 6] = packedValues[i2];
+			values[j + 7] = packedValues[i2 + 1];
+		}
+		return values;
+	}
+
+	/*
+	 * Access to the segment objects that were created already, which are
+	 * kept in list, or in views in packed mode. In packed mode, structural
+	 * changes are applied to packedValues and dirtySegments too.
+	 */
+
+	private Segment getCached(int index) {
+		if (packed) {
+			WeakReference<Segment> ref = views.get(index);
+			return ref != null ? ref.get() : null;
+		}
+		return list.get(index);
+	}
+
+	private void setCached(int index, Segment segment) {
+		if (packed) {
+			views.set(index, segment != null
+					? new WeakReference<Segment>(segment) : null);
+		} else {
+			list.set(index, segment);
+		}
+	}
+
+	private void addCached(int index, Segment segment) {
+		if (packed) {
+			views.add(index, new WeakReference<Segment>(segment));
+			if (packedValues != null) {
+				int length = (views.size() - 1) * VALUES_PER_SEGMENT;
+				double[] values = packedValues;
+				if (values.length < length + VALUES_PER_SEGMENT) {
+					values = new double[(length + VALUES_PER_SEGMENT) * 3 / 2];
+					System.arraycopy(packedValues, 0, values, 0, length);
+				}
+				int from = index * VALUES_PER_SEGMENT;
+				System.arraycopy(values, from, values,
+						from + VALUES_PER_SEGMENT, length - from);
+				segment.getValues(values, from);
+				packedValues = values;
+			}
+			shiftDirtySegments(index, 1);
+		} else {
+			list.add(index, segment);
+		}
+	}
+
+	private void removeCached(int fromIndex, int toIndex) {
+		if (packed) {
+			views.remove(fromIndex, toIndex);
+			if (packedValues != null) {
+				int from = fromIndex * VALUES_PER_SEGMENT,
+						to = toIndex * VALUES_PER_SEGMENT;
+				System.arraycopy(packedValues, to, packedValues, from,
+						(views.size() - fromIndex) * VALUES_PER_SEGMENT);
+			}
+			dirtySegments.clear(fromIndex, toIndex);
+			shiftDirtySegments(toIndex, fromIndex - toIndex);
+		} else {
+			list.remove(fromIndex, toIndex);
+		}
+	}
+
+	private void setCachedSize(int newSize) {
+		if (packed) {
+			views.setSize(newSize);
+			if (newSize != size) {
+				// The values need to be fetched again.
+				packedValues = null;
+				dirtySegments.clear();
+			}
+		} else {
+			list.setSize(newSize);
+		}
+	}
+
+	/**
+	 * Moves the dirty flags of all segments from index on by amount.
+	 */
+	private void shiftDirtySegments(int index, int amount) {
+		int last = dirtySegments.length() - 1;
+		if (last >= index) {
+			BitSet shifted = dirtySegments.get(0, index);
+			for (int i = dirtySegments.nextSetBit(index); i >= 0;
+					i = dirtySegments.nextSetBit(i + 1))
+				shifted.set(i + amount);
+			dirtySegments = shifted;
+		}
+	}
+
 	public Segment get(int index) {
 		// as fetching doesn't cost so much but calling JNI functions does,
 		// fetch a few elements in the neighborhood at a time:
@@ -198,15 +666,26 @@ public class SegmentList extends AbstractFetchList<Segment> {
 		if (toIndex > size)
 			toIndex = size;
 		fetch(fromIndex, toIndex);
+		if (packed) {
+			Segment segment = getCached(index);
+			if (segment == null) {
+				segment = new Segment(this, index);
+				segment.setValues(packedValues, index * VALUES_PER_SEGMENT);
+				segment.version = path.version;
+				setCached(index, segment);
+			}
+			return segment;
+		}
 		return list.get(index);
 	}
 
 	public Segment add(int index, Segment segment) {
+		flush();
 		// Copy it if it comes from another list:
 		if (segment.segments != null)
 			segment = new Segment(segment);
 		// Add to internal structure
-		list.add(index, segment);
+		addCached(index, segment);
 		// Update version:
 		if (path != null)
 			segment.version = path.version;
@@ -216,26 +695,22 @@ public class SegmentList extends AbstractFetchList<Segment> {
 		segment.index = index;
 		// And add to illustrator as well
 		segment.insert();
+		if (path != null)
+			path.clearCurveCache();
 
 		// Increase size
 		size++;
 		if (curves != null)
 			curves.updateSize();
 		
-		// Update segment and curve indices above
-		for (int i = index; i < size; i++) {
-			Segment seg = list.get(i);
-			if (seg != null) {
-				seg.index = i;
-				// Only update curve index if curve is created already
-				if (curves != null)
-					curves.updateIndex(i);
-			}
-		}
+		// The indices of the segments above are updated when needed
+		if (index + 1 < indexUpdateFrom)
+			indexUpdateFrom = index + 1;
 		return segment;
 	}
 
 	public boolean addAll(int index, ReadOnlyList<? extends Segment> elements) {
+		flush();
 		if (index < 0 || index > size)
 			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
 					+ size);
@@ -266,7 +741,7 @@ public class SegmentList extends AbstractFetchList<Segment> {
 				if (segment.segments != null)
 					segment = new Segment(segment);
 				// add to internal structure
-				list.add(addIndex, segment);
+				addCached(addIndex, segment);
 				// update version:
 				segment.version = commitVersion;
 				// and link segment to this list
@@ -285,18 +760,16 @@ public class SegmentList extends AbstractFetchList<Segment> {
 		if (values != null && addCount > 0) {
 			SegmentList.nativeInsert(path.handle, path.document.handle, index,
 					addCount, values);
+			path.clearCurveCache();
 
 			// update size
 			size += addCount;
 			if (curves != null)
 				curves.updateSize();
 
-			// update Segment indices
-			for (int i = addIndex; i < size; i++) {
-				Segment segment = list.get(i);
-				if (segment != null)
-					segment.index = i;
-			}
+			// The indices of the segments above are updated when needed
+			if (addIndex < indexUpdateFrom)
+				indexUpdateFrom = addIndex;
 
 			return true;
 		}
@@ -309,7 +782,16 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	}
 
 	public Segment set(int index, Segment segment) {
-		Segment ret = list.set(index, segment);
+		flush();
+		Segment ret;
+		if (packed) {
+			// Make sure the values are there to write the new points into
+			fetchPacked();
+			ret = getCached(index);
+			setCached(index, segment);
+		} else {
+			ret = list.set(index, segment);
+		}
 		segment.segments = this;
 		segment.index = index;
 		segment.markDirty(Segment.DIRTY_POINTS);
@@ -343,9 +825,10 @@ public class SegmentList extends AbstractFetchList<Segment> {
 			int index, int count);
 
 	public void remove(int fromIndex, int toIndex) {
+		flush();
 		if (fromIndex < toIndex) {
 			for (int i = fromIndex; i < toIndex; i++) {
-				Segment seg = list.get(i);
+				Segment seg = getCached(i);
 				if (seg != null) {
 					seg.segments = null;
 					seg.index = -1;
@@ -355,25 +838,147 @@ public class SegmentList extends AbstractFetchList<Segment> {
 				path.checkValid();
 				size = nativeRemove(path.handle, path.document.handle,
 						fromIndex, toIndex - fromIndex);
+				path.clearCurveCache();
 			} else {
 				size -= toIndex - fromIndex;
 			}
-			list.remove(fromIndex, toIndex);
-			// Update segment and curve indices of the left entries
-			for (int i = fromIndex; i < size; i++) {
-				Segment seg = list.get(i);
-				if (seg != null) {
-					seg.index = i;
-					// Only update curve index if curve is created already
-					if (curves != null)
-						curves.updateIndex(i);
-				}
-			}
+			removeCached(fromIndex, toIndex);
+			// The indices of the segments left are updated when needed
+			if (fromIndex < indexUpdateFrom)
+				indexUpdateFrom = fromIndex;
 			if (curves != null)
 				curves.updateSize();
 		}
 	}
 	
+	/**
+	 * Updates the indices of the segment objects and their curves after
+	 * structural changes, in one pass from the lowest changed index on.
+	 */
+	protected void updateIndices() {
+		// Reset the marker before updating, as updating the curves calls back
+		// into this method through Curve#updateSegments()
+		int from = indexUpdateFrom;
+		if (from == Integer.MAX_VALUE)
+			return;
+		indexUpdateFrom = Integer.MAX_VALUE;
+		// Pending segments do not have objects yet
+		int count = size - pendingCount;
+		for (int i = from; i < count; i++) {
+			Segment segment = getCached(i);
+			if (segment != null) {
+				segment.index = i;
+				// Only update curve index if curve is created already
+				if (curves != null)
+					curves.updateIndex(i);
+			}
+		}
+	}
+
+	/**
+	 * Inserts the segments that were appended through the drawing commands
+	 * into the path, with one native call.
+	 */
+	protected void flush() {
+		if (pendingCount > 0) {
+			int count = pendingCount, index = size - count;
+			pendingCount = 0;
+			for (int i = 0; i < count; i++) {
+				// Calculate the corners like the Segment constructors do
+				int j = i * VALUES_PER_SEGMENT;
+				float x = pendingValues[j], y = pendingValues[j + 1];
+				double inX = pendingValues[j + 2] - x,
+						inY = pendingValues[j + 3] - y,
+						outX = pendingValues[j + 4] - x,
+						outY = pendingValues[j + 5] - y;
+				pendingValues[j + 6] =
+						inX * outY - inY * outX < Numerical.TOLERANCE ? 0 : 1;
+			}
+			path.checkValid();
+			nativeInsert(path.handle, path.document.handle, index, count,
+					pendingValues);
+			// Make room for the segment objects, which are created when
+			// requested.
+			if (packed) {
+				views.setSize(size);
+				if (packedValues != null) {
+					int length = size * VALUES_PER_SEGMENT;
+					if (packedValues.length < length) {
+						double[] values = new double[length * 3 / 2];
+						System.arraycopy(packedValues, 0, values, 0,
+								index * VALUES_PER_SEGMENT);
+						packedValues = values;
+					}
+					for (int i = 0, j = index * VALUES_PER_SEGMENT,
+							l = count * VALUES_PER_SEGMENT; i < l; i++, j++)
+						packedValues[j] = pendingValues[i];
+				}
+			} else {
+				list.setSize(size);
+			}
+			path.setModified();
+		}
+	}
+
+	/**
+	 * Appends a segment through the drawing commands. Handles are absolute.
+	 */
+	private void append(double x, double y, double inX, double inY,
+			double outX, double outY) {
+		if (path == null) {
+			add(new Segment(x, y, inX - x, inY - y, outX - x, outY - y));
+			return;
+		}
+		if (pendingCount == 0)
+			CommitManager.markDirty(path, this);
+		int index = pendingCount * VALUES_PER_SEGMENT;
+		if (pendingValues == null
+				|| pendingValues.length < index + VALUES_PER_SEGMENT) {
+			float[] values = new float[Math.max(16 * VALUES_PER_SEGMENT,
+					pendingValues != null ? pendingValues.length * 2 : 0)];
+			if (pendingValues != null)
+				System.arraycopy(pendingValues, 0, values, 0, index);
+			pendingValues = values;
+		}
+		pendingValues[index] = (float) x;
+		pendingValues[index + 1] = (float) y;
+		pendingValues[index + 2] = (float) inX;
+		pendingValues[index + 3] = (float) inY;
+		pendingValues[index + 4] = (float) outX;
+		pendingValues[index + 5] = (float) outY;
+		pendingCount++;
+		size++;
+		if (curves != null)
+			curves.updateSize();
+		path.clearCurveCache();
+	}
+
+	/**
+	 * Returns the point of the last segment, without flushing pending ones.
+	 */
+	protected Point getCurrentPoint() {
+		if (pendingCount > 0) {
+			int index = (pendingCount - 1) * VALUES_PER_SEGMENT;
+			return new Point(pendingValues[index], pendingValues[index + 1]);
+		}
+		return getCurrentSegment().point;
+	}
+
+	/**
+	 * Sets the handle out of the last segment, relative to its point, without
+	 * flushing pending ones.
+	 */
+	protected void setCurrentHandleOut(double x, double y) {
+		if (pendingCount > 0) {
+			int index = (pendingCount - 1) * VALUES_PER_SEGMENT;
+			pendingValues[index + 4] = (float) (pendingValues[index] + x);
+			pendingValues[index + 5] = (float) (pendingValues[index + 1] + y);
+			path.clearCurveCache();
+		} else {
+			getCurrentSegment().handleOut.set(x, y);
+		}
+	}
+
 	/*
 	 *  PostScript-like interface: moveTo, lineTo, curveTo, arcTo
 	 */
@@ -396,7 +1001,7 @@ public class SegmentList extends AbstractFetchList<Segment> {
 		if (size > 0)
 			throw new ScriptographerException(
 					"moveTo() can only be called at the beginning of a list of segments");
-		add(new Segment(x, y));
+		append(x, y, x, y, x, y);
 	}
 	
 	public void lineTo(Point pt) {
@@ -407,7 +1012,7 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	public void lineTo(double x, double y) {
 		// Let's not be so picky about calling moveTo() first for now:
 		// getCurrentSegment();
-		add(new Segment(x, y));
+		append(x, y, x, y, x, y);
 	}
 
 	/**
@@ -425,13 +1030,11 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	public void cubicCurveTo(double handle1X, double handle1Y,
 			double handle2X, double handle2Y, double toX, double toY) {
 		// First modify the current segment:
-		Segment current = getCurrentSegment();
+		Point current = getCurrentPoint();
 		// Convert to relative values:
-		current.handleOut.set(
-				handle1X - current.point.x,
-				handle1Y - current.point.y);
+		setCurrentHandleOut(handle1X - current.x, handle1Y - current.y);
 		// And add the new segment, with handleIn set to c2
-		add(new Segment(toX, toY, handle2X - toX, handle2Y - toY, 0, 0));
+		append(toX, toY, handle2X, handle2Y, toX, toY);
 	}
 
 	/**
@@ -453,9 +1056,9 @@ public class SegmentList extends AbstractFetchList<Segment> {
 		// and the cubic is A B C D,
 		// B = E + 1/3 (A - E)
 		// C = E + 1/3 (D - E)
-		Segment current = getCurrentSegment();
-		double x1 = current.point.x;
-		double y1 = current.point.y;
+		Point current = getCurrentPoint();
+		double x1 = current.x;
+		double y1 = current.y;
 		cubicCurveTo(handleX + (1f/3f) * (x1 - handleX),
 				handleY + (1f/3f) * (y1 - handleY), 
 				handleX + (1f/3f) * (toX - handleX),
@@ -465,7 +1068,7 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	}
 
 	public void curveTo(Point through, Point to, double parameter) {
-		Point current = getCurrentSegment().point;
+		Point current = getCurrentPoint();
 		// handle = (through - (1 - t)^2 * current - t^2 * to) / (2 * (1 - t) * t)
 		double t1 = 1 - parameter;
 		Point handle = through.subtract(
@@ -494,7 +1097,7 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	}
 
 	public void arcTo(Point point, boolean clockwise) {
-		Point current = getCurrentSegment().point;
+		Point current = getCurrentPoint();
 		Point middle = current.add(point).divide(2);
 		Point step = middle.subtract(current);
 		Point through = clockwise 
@@ -529,9 +1132,9 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	 */
 	public void arcTo(double throughX, double throughY, double toX, double toY) {
 		// Get the start point:
-		Segment current = getCurrentSegment();
-		double x1 = current.point.x, x2 = throughX, x3 = toX;
-		double y1 = current.point.y, y2 = throughY, y3 = toY;
+		Point current = getCurrentPoint();
+		double x1 = current.x, x2 = throughX, x3 = toX;
+		double y1 = current.y, y2 = throughY, y3 = toY;
 		
 		double f = x3 * x3 - x3 * x2 - x1 * x3 + x1 * x2 + y3 * y3 - y3 * y2
 				- y1 * y3 + y1 * y2;
@@ -590,13 +1193,17 @@ public class SegmentList extends AbstractFetchList<Segment> {
 					centerY + (rely + z * relx) * radius - pt.y);
 			if (i == 0) {
 				// Modify startSegment
-				current.handleOut.set(out);
+				if (out != null)
+					setCurrentHandleOut(out.x, out.y);
+				else
+					setCurrentHandleOut(0, 0);
 			} else {
 				// Add new Segment
-				Point in = new Point(
-						centerX + (relx + z * rely) * radius - pt.x,
-						centerY + (rely - z * relx) * radius - pt.y);
-				add(new Segment(pt, in, out));
+				append(pt.x, pt.y,
+						centerX + (relx + z * rely) * radius,
+						centerY + (rely - z * relx) * radius,
+						out != null ? pt.x + out.x : pt.x,
+						out != null ? pt.y + out.y : pt.y);
 			}
 			angle += inc;
 		}
@@ -612,7 +1219,7 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	}
 
 	public void lineBy(double x, double y) {
-		Point current = getCurrentSegment().point;
+		Point current = getCurrentPoint();
 		lineTo(current.add(x, y));
 	}
 
@@ -630,7 +1237,7 @@ public class SegmentList extends AbstractFetchList<Segment> {
 
 	public void curveBy(double throughX, double throughY,
 			double toX, double toY, double parameter) {
-		Point current = getCurrentSegment().point;
+		Point current = getCurrentPoint();
 		curveTo(current.add(throughX, throughY), current.add(toX, toY), parameter);
 	}
 
@@ -645,7 +1252,7 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	}
 
 	public void arcBy(double x, double y, boolean clockwise) {
-		Point current = getCurrentSegment().point;
+		Point current = getCurrentPoint();
 		arcTo(current.add(x, y), clockwise);
 	}
 
@@ -665,7 +1272,7 @@ public class SegmentList extends AbstractFetchList<Segment> {
 	 * point.
 	 */
 	public void arcBy(double throughX, double throughY, double toX, double toY) {
-		Point current = getCurrentSegment().point;
+		Point current = getCurrentPoint();
 		arcTo(current.add(throughX, throughY), current.add(toX, toY));
 	}
 
@@ -28,10 +28,11 @@ import com.scriptographer.CommitManager;
  */
 class TextStoryList extends DocumentObject implements ReadOnlyList<TextStory> {
 	ArrayList<TextStory> list;
-	protected int version = CommitManager.version;
+	protected int version;
 
 	TextStoryList(int handle, Document document) {
 		super(handle, document);
+		version = CommitManager.getVersion(document);
 		list = new ArrayList<TextStory>();
 	}
 
@@ -91,7 +92,7 @@ class TextStoryList extends DocumentObject implements ReadOnlyList<TextStory> {
 		if (handle != 0)
 			nativeRelease(handle); // Release old handle
 		handle = newHandle;
-		version = CommitManager.version;
+		version = CommitManager.getVersion(document);
 	}
 
 	public TextStory getFirst() {
@@ -14,8 +14,12 @@
 
 package com.scriptographer.ai;
 
+import java.util.HashMap;
+
 import com.scratchdisk.script.Callable;
 import com.scriptographer.ScriptographerEngine;
+import com.scriptographer.sg.ExecutionBudget;
+import com.scriptographer.sg.ExecutionStatistics;
 import com.scriptographer.sg.Script;
 
 /**
@@ -34,6 +38,9 @@ public class ToolHandler extends NativeObject {
 	protected int count;
 	protected int downCount;
 	protected double pressure;
+	private ExecutionBudget budget;
+	private HashMap<String, ExecutionStatistics> statistics =
+			new HashMap<String, ExecutionStatistics>();
 
 	protected ToolHandler(int handle) {
 		super(handle);
@@ -63,6 +70,8 @@ public class ToolHandler extends NativeObject {
 		onMouseUp = null;
 		onMouseDrag = null;
 		onMouseMove = null;
+		budget = null;
+		statistics.clear();
 		script = null;
 	}
 
@@ -126,6 +135,43 @@ public class ToolHandler extends NativeObject {
 		minDistance = threshold;
 	}
 
+	/**
+	 * The budget each call of the tool's event handlers may use. When it is
+	 * exceeded, the call is canceled. If it is {@code null}, the budget of the
+	 * script applies.
+	 * 
+	 * Sample code:
+	 * <code>
+	 * // Cancel handlers that take longer than 50 milliseconds:
+	 * tool.budget = { time: 50 };
+	 * </code>
+	 */
+	public ExecutionBudget getBudget() {
+		return budget;
+	}
+
+	public void setBudget(ExecutionBudget budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Returns the statistics of all calls of the given event handler, e.g.
+	 * {@code 'onMouseDrag'}, since the tool was assigned.
+	 */
+	public ExecutionStatistics getStatistics(String handler) {
+		ExecutionStatistics stats = statistics.get(handler);
+		if (stats == null) {
+			stats = new ExecutionStatistics();
+			statistics.put(handler, stats);
+		}
+		return stats;
+	}
+
+	private Object invoke(String name, Callable handler, Object... args) {
+		return ScriptographerEngine.invokeHandler(handler, budget,
+				getStatistics(name), this, args);
+	}
+
 	private Callable onMouseDown;
 
 	/**
@@ -153,7 +199,7 @@ public class ToolHandler extends NativeObject {
 	
 	protected void onMouseDown(ToolEvent event) {
 		if (onMouseDown != null)
-			ScriptographerEngine.invoke(onMouseDown, this, event);
+			invoke("onMouseDown", onMouseDown, event);
 	}
 
 	private Callable onMouseDrag;
@@ -184,7 +230,7 @@ public class ToolHandler extends NativeObject {
 	
 	protected void onMouseDrag(ToolEvent event) {
 		if (onMouseDrag != null)
-			ScriptographerEngine.invoke(onMouseDrag, this, event);
+			invoke("onMouseDrag", onMouseDrag, event);
 	}
 
 	private Callable onMouseMove;
@@ -213,7 +259,7 @@ public class ToolHandler extends NativeObject {
 	protected void onMouseMove(ToolEvent event) {
 		// Make sure the first move event initializes both delta and count.
 		if (onMouseMove != null)
-			ScriptographerEngine.invoke(onMouseMove, this, event);
+			invoke("onMouseMove", onMouseMove, event);
 	}
 
 	private Callable onMouseUp;
@@ -241,7 +287,7 @@ public class ToolHandler extends NativeObject {
 		
 	protected void onMouseUp(ToolEvent event) {
 		if (onMouseUp != null)
-			ScriptographerEngine.invoke(onMouseUp, this, event);
+			invoke("onMouseUp", onMouseUp, event);
 	}
 
 	/*
@@ -267,7 +313,7 @@ public class ToolHandler extends NativeObject {
 
 	protected void onEditOptions() {
 		if (onEditOptions != null)
-			ScriptographerEngine.invoke(onEditOptions, this);
+			invoke("onEditOptions", onEditOptions);
 	}
 
 	private Callable onSelect;
@@ -285,7 +331,7 @@ public class ToolHandler extends NativeObject {
 
 	protected void onSelect() {
 		if (onSelect != null)
-			ScriptographerEngine.invoke(onSelect, this);
+			invoke("onSelect", onSelect);
 	}
 	
 	private Callable onDeselect;
@@ -303,7 +349,7 @@ public class ToolHandler extends NativeObject {
 	
 	protected void onDeselect() {
 		if (onDeselect != null)
-			ScriptographerEngine.invoke(onDeselect, this);
+			invoke("onDeselect", onDeselect);
 	}
 
 	private Callable onReselect;
@@ -321,7 +367,7 @@ public class ToolHandler extends NativeObject {
 
 	protected void onReselect() {
 		if (onReselect != null)
-			ScriptographerEngine.invoke(onReselect, this);
+			invoke("onReselect", onReselect);
 	}
 
 	private boolean updateEvent(ToolEventType type, Point pt, int pressure,
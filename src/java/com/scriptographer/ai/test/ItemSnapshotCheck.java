@@ -0,0 +1,144 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 17, 2026.
+ */
+
+package com.scriptographer.ai.test;
+
+import com.scriptographer.ai.Item;
+import com.scriptographer.ai.ItemAttribute;
+import com.scriptographer.ai.ItemSnapshot;
+import com.scriptographer.ai.Layer;
+import com.scriptographer.ai.Path;
+
+/**
+ * Checks walking and searching snapshots on a synthetic tree of layers,
+ * groups and paths, and measures them, without the need for Illustrator:
+ *
+ * <pre>
+ * java com.scriptographer.ai.test.ItemSnapshotCheck [layers] [groups] [paths]
+ * </pre>
+ *
+ * The groups are created in each layer, the paths in each group. Every other
+ * path is hidden. Like all classes in test packages, it is not part of the
+ * runtime jar.
+ *
+ * @author lehni
+ */
+public class ItemSnapshotCheck {
+	/**
+	 * Don't let anyone instantiate this class.
+	 */
+	private ItemSnapshotCheck() {
+	}
+
+	// The layout of the values, see ItemSnapshot.VALUES_PER_NODE
+	private static final int VALUES_PER_NODE = 9;
+
+	private static final int
+		VALUE_PARENT = 0,
+		VALUE_TYPE = 1,
+		VALUE_HANDLE = 3,
+		VALUE_ATTRIBUTES = 4,
+		VALUE_BOUNDS = 5;
+
+	// The item types, see Item.TYPE_*
+	private static final int
+		TYPE_GROUP = 1,
+		TYPE_PATH = 2,
+		TYPE_LAYER = 100;
+
+	public static void main(String[] args) {
+		int layerCount = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int groupCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int pathCount = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+		int size = layerCount * (1 + groupCount * (1 + pathCount));
+		int[] values = new int[size * VALUES_PER_NODE];
+		int hiddenValue = ItemAttribute.HIDDEN.value();
+		int index = 0;
+		for (int i = 0; i < layerCount; i++) {
+			int layer = index;
+			setValues(values, index++, -1, TYPE_LAYER, 0);
+			for (int j = 0; j < groupCount; j++) {
+				int group = index;
+				setValues(values, index++, layer, TYPE_GROUP, 0);
+				for (int k = 0; k < pathCount; k++)
+					setValues(values, index++, group, TYPE_PATH,
+							k % 2 == 1 ? hiddenValue : 0);
+			}
+		}
+		long time = System.nanoTime();
+		ItemSnapshot snapshot = new ItemSnapshot(values);
+		int errors = 0;
+		for (int i = 0; i < size; i++) {
+			// All nodes up to the end are descendants, the one at the end is
+			// not.
+			int end = snapshot.getEnd(i);
+			for (int j = i + 1; j <= end && j < size; j++) {
+				if (isDescendant(snapshot, j, i) != (j < end))
+					errors++;
+			}
+			if (snapshot.indexOfHandle(snapshot.getHandle(i)) != i)
+				errors++;
+		}
+		if (layerCount > 0
+				&& snapshot.getChildIndices(0).length != groupCount)
+			errors++;
+		long walkTime = System.nanoTime() - time;
+		time = System.nanoTime();
+		int hidden = snapshot.find(getTypes(Path.class), hiddenValue,
+				hiddenValue, false).length;
+		int layers = snapshot.find(getTypes(Layer.class), 0, 0,
+				false).length;
+		// Only the groups are top-level, as layers need to be asked for.
+		int topLevel = snapshot.find(getTypes(Item.class), 0, 0,
+				true).length;
+		long findTime = System.nanoTime() - time;
+		if (hidden != layerCount * groupCount * (pathCount / 2))
+			errors++;
+		if (layers != layerCount)
+			errors++;
+		if (topLevel != layerCount * groupCount)
+			errors++;
+		System.out.println(size + " nodes, walked in " + walkTime / 1000000
+				+ " ms, searched in " + findTime / 1000000 + " ms, "
+				+ errors + " errors.");
+		if (errors > 0)
+			System.exit(1);
+	}
+
+	private static void setValues(int[] values, int index, int parent,
+			int type, int attributes) {
+		int offset = index * VALUES_PER_NODE;
+		values[offset + VALUE_PARENT] = parent;
+		values[offset + VALUE_TYPE] = type;
+		values[offset + VALUE_HANDLE] = index + 1;
+		values[offset + VALUE_ATTRIBUTES] = attributes;
+		for (int i = 0; i < 4; i++)
+			values[offset + VALUE_BOUNDS + i] = Float.floatToIntBits(index);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Class<? extends Item>[] getTypes(Class<? extends Item> type) {
+		return (Class<? extends Item>[]) new Class<?>[] { type };
+	}
+
+	private static boolean isDescendant(ItemSnapshot snapshot, int index,
+			int ancestor) {
+		for (int i = snapshot.getParentIndex(index); i != -1;
+				i = snapshot.getParentIndex(i)) {
+			if (i == ancestor)
+				return true;
+		}
+		return false;
+	}
+}
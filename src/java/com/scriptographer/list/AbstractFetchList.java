@@ -14,6 +14,8 @@
 
 package com.scriptographer.list;
 
+import java.util.Iterator;
+
 import com.scratchdisk.list.ExtendedList;
 import com.scratchdisk.list.ReadOnlyList;
 
@@ -48,6 +50,13 @@ public abstract class AbstractFetchList<E> extends AbstractNativeList<E> {
 		return super.lastIndexOf(element);
 	}
 
+	public Iterator<E> iterator() {
+		// Fetch all elements in one go rather than in small blocks while
+		// iterating.
+		fetch();
+		return super.iterator();
+	}
+
 	public E[] toArray(E[] array) {
 		fetch();
 		return super.toArray(array);
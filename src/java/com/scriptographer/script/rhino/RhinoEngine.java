@@ -63,6 +63,12 @@ public class RhinoEngine extends com.scratchdisk.script.rhino.RhinoEngine implem
 	}
 
 	protected void observeInstructionCount(Context cx, int instructionCount) {
+		// Scripts on worker threads do not show progress, they are canceled
+		// by interrupting their thread, e.g. through Future#cancel(true).
+		if (!ScriptographerEngine.isMainThreadActive()
+				&& Thread.currentThread().isInterrupted())
+			throw new ScriptCanceledException();
+		ScriptographerEngine.observeInstructions(instructionCount);
 		if (!ScriptographerEngine.updateProgress())
 			throw new ScriptCanceledException();
 	}
@@ -26,7 +26,6 @@ import com.scratchdisk.script.Scope;
 import com.scratchdisk.script.Script;
 import com.scratchdisk.script.ScriptEngine;
 import com.scratchdisk.script.ScriptException;
-import com.scratchdisk.script.rhino.ExtendedJavaClass;
 import com.scriptographer.adm.Border;
 import com.scriptographer.adm.Button;
 import com.scriptographer.adm.ChasingArrows;
@@ -234,18 +233,10 @@ public class TopLevel extends com.scratchdisk.script.rhino.TopLevel {
 	public TopLevel(Context context) {
 		super(context);
 
-		// define classes. the createPrototypes flag is set so
-		// the classes' constructors can now whether an object
-		// is created as prototype or as real object through
-		// isCreatingPrototypes()
-
-		for (int i = 0; i < classes.length; i++) {
-			ExtendedJavaClass cls = new ExtendedJavaClass(this, classes[i], true);
-			// Put it in the global scope:
-			ScriptableObject.defineProperty(this, cls.getClassName(), cls,
-				ScriptableObject.PERMANENT | ScriptableObject.READONLY
-					| ScriptableObject.DONTENUM);
-		}
+		// Expose the classes. Their wrappers are only created when they are
+		// accessed for the first time, as most scripts use only a few of them.
+		for (int i = 0; i < classes.length; i++)
+			exposeClass(classes[i]);
 
 		// Define some global functions and objects:
 		String[] names = { "include", "execute", "mapJavaClass" };
@@ -0,0 +1,102 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scriptographer.sg;
+
+import com.scratchdisk.script.ArgumentReader;
+
+/**
+ * An execution budget limits the amount of instructions a script or an event
+ * handler may execute, and the time it may take. When either is exceeded,
+ * the execution is canceled, so a runaway handler cannot freeze Illustrator.
+ * 
+ * Sample code:
+ * <code>
+ * // Cancel mouse drag handlers that take longer than a tenth of a second:
+ * tool.budget = { time: 100 };
+ * // Limit the whole script to 10 million instructions:
+ * script.budget = { instructions: 10000000 };
+ * </code>
+ * 
+ * @author lehni
+ */
+public class ExecutionBudget {
+	private long instructions;
+	private long time;
+
+	/**
+	 * Creates an unlimited budget.
+	 */
+	public ExecutionBudget() {
+	}
+
+	/**
+	 * Creates a budget with the given limits.
+	 * 
+	 * @param instructions the maximum amount of instructions, {@code 0} for
+	 *        no limit
+	 * @param time the maximum time in milliseconds, {@code 0} for no limit
+	 */
+	public ExecutionBudget(long instructions, long time) {
+		this.instructions = instructions;
+		this.time = time;
+	}
+
+	/**
+	 * @jshide
+	 */
+	public ExecutionBudget(ArgumentReader reader) {
+		reader.setProperties(this);
+	}
+
+	/**
+	 * The maximum amount of instructions that may be executed, {@code 0} for
+	 * no limit. Instructions are counted in steps of 20000.
+	 */
+	public long getInstructions() {
+		return instructions;
+	}
+
+	public void setInstructions(long instructions) {
+		this.instructions = instructions;
+	}
+
+	/**
+	 * The maximum time in milliseconds the execution may take, {@code 0} for
+	 * no limit. As it is checked together with the instructions, time spent
+	 * in a single call to Illustrator cannot be interrupted.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	public void setTime(long time) {
+		this.time = time;
+	}
+
+	/**
+	 * @jshide
+	 */
+	public boolean isExceeded(long instructions, long time) {
+		return this.instructions > 0 && instructions > this.instructions
+				|| this.time > 0 && time > this.time;
+	}
+
+	public String toString() {
+		StringBuffer buffer = new StringBuffer();
+		buffer.append("{ instructions: ").append(instructions);
+		buffer.append(", time: ").append(time).append(" }");
+		return buffer.toString();
+	}
+}
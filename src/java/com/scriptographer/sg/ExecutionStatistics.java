@@ -0,0 +1,110 @@
+/*
+ * Scriptographer
+ *
+ * This file is part of Scriptographer, a Scripting Plugin for Adobe Illustrator
+ * http://scriptographer.org/
+ *
+ * Copyright (c) 2002-2010, Juerg Lehni
+ * http://scratchdisk.com/
+ *
+ * All rights reserved. See LICENSE file for details.
+ *
+ * File created on Oct 16, 2026.
+ */
+
+package com.scriptographer.sg;
+
+import com.scriptographer.ScriptographerEngine;
+
+/**
+ * Statistics about the calls of an event handler, collected to find out which
+ * handlers are expensive.
+ * 
+ * Sample code:
+ * <code>
+ * function onMouseUp(event) {
+ *     print(tool.getStatistics('onMouseDrag'));
+ * }
+ * </code>
+ * 
+ * @author lehni
+ */
+public class ExecutionStatistics {
+	private int calls;
+	private long instructions;
+	private long time;
+	private int commits;
+	private int canceled;
+
+	/**
+	 * The amount of times the handler was called.
+	 */
+	public int getCalls() {
+		return calls;
+	}
+
+	/**
+	 * The amount of instructions executed in all calls, counted in steps of
+	 * 20000.
+	 */
+	public long getInstructions() {
+		return instructions;
+	}
+
+	/**
+	 * The time spent in all calls, in milliseconds.
+	 */
+	public double getTime() {
+		return time / 1000000.0;
+	}
+
+	/**
+	 * The amount of changed objects that were committed to Illustrator after
+	 * the calls.
+	 */
+	public int getCommits() {
+		return commits;
+	}
+
+	/**
+	 * The amount of calls that were canceled for exceeding their budget.
+	 */
+	public int getCanceled() {
+		return canceled;
+	}
+
+	/**
+	 * Resets all statistics to zero.
+	 */
+	public void reset() {
+		calls = 0;
+		instructions = 0;
+		time = 0;
+		commits = 0;
+		canceled = 0;
+	}
+
+	/**
+	 * @jshide
+	 */
+	public void add(long instructions, long time, int commits,
+			boolean canceled) {
+		calls++;
+		this.instructions += instructions;
+		this.time += time;
+		this.commits += commits;
+		if (canceled)
+			this.canceled++;
+	}
+
+	public String toString() {
+		StringBuffer buffer = new StringBuffer();
+		buffer.append("{ calls: ").append(calls);
+		buffer.append(", instructions: ").append(instructions);
+		buffer.append(", time: ").append(
+				ScriptographerEngine.numberFormat.format(getTime()));
+		buffer.append(", commits: ").append(commits);
+		buffer.append(", canceled: ").append(canceled).append(" }");
+		return buffer.toString();
+	}
+}
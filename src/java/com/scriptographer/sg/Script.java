@@ -33,6 +33,7 @@ public class Script {
 	protected boolean coreScript = false;
 	private Script parent = null;
 	private ToolHandler toolHandler;
+	private ExecutionBudget budget = null;
 
 	/**
 	 * @jshide
@@ -163,6 +164,29 @@ public class Script {
 		}
 	}
 
+	/**
+	 * The budget that the execution of the script and each call of its
+	 * event handlers may use, or {@code null} for no limit. Handlers can
+	 * define their own budget, e.g. through {@code tool.budget}.
+	 * 
+	 * Sample code:
+	 * <code>
+	 * script.budget = { instructions: 10000000, time: 2000 };
+	 * </code>
+	 */
+	public ExecutionBudget getBudget() {
+		if (parent != null)
+			return parent.getBudget();
+		return budget;
+	}
+
+	public void setBudget(ExecutionBudget budget) {
+		if (parent != null)
+			parent.setBudget(budget);
+		else
+			this.budget = budget;
+	}
+
 	/**
 	 * @jshide
 	 */
@@ -16,6 +16,7 @@ package com.scriptographer.sg;
 
 import java.io.File;
 
+import com.scratchdisk.script.Callable;
 import com.scriptographer.ScriptographerEngine;
 
 /**
@@ -53,6 +54,34 @@ public class Scriptographer {
 		return ScriptographerEngine.getPluginRevision();
 	}
 	
+	/**
+	 * Calls the function on a background thread, and then passes its result
+	 * to {@code onComplete}, which is called on the main thread again.
+	 * Several functions can run in the background at the same time.
+	 * 
+	 * The background function can perform computations, e.g. on points,
+	 * numbers and strings, but must not access or change documents. This is
+	 * left to {@code onComplete}.
+	 * 
+	 * Sample code:
+	 * <code>
+	 * scriptographer.invokeInBackground(function() {
+	 *     var points = [];
+	 *     for (var i = 0; i < 1000; i++)
+	 *         points.push(new Point(i, Math.sin(i / 100) * 100));
+	 *     return points;
+	 * }, function(points) {
+	 *     new Path(points);
+	 * });
+	 * </code>
+	 * 
+	 * @param function the function to call in the background
+	 * @param onComplete the function to receive the result
+	 */
+	public void invokeInBackground(Callable function, Callable onComplete) {
+		ScriptographerEngine.invokeInBackground(function, onComplete);
+	}
+
 	private static Scriptographer scriptographer = null;
 
 	/**
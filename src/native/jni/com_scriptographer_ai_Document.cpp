@@ -328,9 +328,9 @@ JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Document_getPageOrigin(
 }
 
 /*
- * void setPageOrigin(com.scriptographer.ai.Point origin)
+ * void nativeSetPageOrigin(com.scriptographer.ai.Point origin)
  */
-JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_setPageOrigin(
+JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_nativeSetPageOrigin(
 		JNIEnv *env, jobject obj, jobject origin) {
 	try {
 		// Cause the doc switch if necessary
@@ -360,9 +360,9 @@ JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Document_getRulerOrigin(
 }
 
 /*
- * void setRulerOrigin(com.scriptographer.ai.Point origin)
+ * void nativeSetRulerOrigin(com.scriptographer.ai.Point origin)
  */
-JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_setRulerOrigin(
+JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_nativeSetRulerOrigin(
 		JNIEnv *env, jobject obj, jobject origin) {
 	try {
 		// Cause the doc switch if necessary
@@ -395,9 +395,9 @@ JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Document_getSize(
 }
 
 /*
- * void setSize(double width, double height)
+ * void nativeSetSize(double width, double height)
  */
-JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_setSize(JNIEnv *env,
+JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_nativeSetSize(JNIEnv *env,
 		jobject obj, jdouble width, jdouble height) {
 	try {
 		// Cause the doc switch if necessary
@@ -586,9 +586,9 @@ JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_redraw(JNIEnv *env,
 }
 
 /*
- * void undo()
+ * void nativeUndo()
  */
-JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_undo(JNIEnv *env,
+JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_nativeUndo(JNIEnv *env,
 		jobject obj) {
 	try {
 #if kPluginInterfaceVersion >= kAI13
@@ -601,9 +601,9 @@ JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_undo(JNIEnv *env,
 }
 
 /*
- * void redo()
+ * void nativeRedo()
  */
-JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_redo(JNIEnv *env,
+JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_nativeRedo(JNIEnv *env,
 		jobject obj) {
 	try {
 #if kPluginInterfaceVersion >= kAI13
@@ -650,9 +650,9 @@ JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_copy(JNIEnv *env,
 }
 
 /*
- * void cut()
+ * void nativeCut()
  */
-JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_cut(JNIEnv *env,
+JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_nativeCut(JNIEnv *env,
 		jobject obj) {
 	try {
 		// Cause the doc switch if necessary
@@ -663,9 +663,9 @@ JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_cut(JNIEnv *env,
 }
 
 /*
- * void paste()
+ * void nativePaste()
  */
-JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_paste(JNIEnv *env,
+JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_nativePaste(JNIEnv *env,
 		jobject obj) {
 	try {
 		// Cause the doc switch if necessary
@@ -676,9 +676,9 @@ JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_paste(JNIEnv *env,
 }
 
 /*
- * com.scriptographer.ai.Item place(java.io.File file, boolean linked)
+ * com.scriptographer.ai.Item nativePlace(java.io.File file, boolean linked)
  */
-JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Document_place(JNIEnv *env,
+JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Document_nativePlace(JNIEnv *env,
 		jobject obj, jobject file, jboolean linked) {
 	try {
 		AIDocumentHandle doc = gEngine->getDocumentHandle(env, obj, true);
@@ -783,6 +783,91 @@ JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_nativeDeselectAll(
 	} EXCEPTION_CONVERT(env);
 }
 
+// The amount of values per node, see ItemSnapshot.VALUES_PER_NODE
+#define SNAPSHOT_VALUES_PER_NODE 9
+
+/*
+ * Adds the values of art and its descendants to values, in depth-first order.
+ * The bounds are left at 0 if getBounds is false.
+ */
+void Document_snapshot(AIArtHandle art, jint parent, bool getBounds, std::vector<jint> &values) {
+	short type = Item_getType(art);
+	if (type == kUnknownArt)
+		return;
+	AITextFrameType textType = kUnknownTextType;
+	// Determine the type just like ScriptographerEngine::wrapArtHandle
+	if (Item_isLayer(art)) {
+		type = com_scriptographer_ai_Item_TYPE_LAYER;
+	} else if (type == kTextFrameArt) {
+		sAITextFrame->GetType(art, &textType);
+	} else if (type == kPluginArt) {
+#if kPluginInterfaceVersion >= kAI12
+		if (sAITracing->IsTracing(art))
+			type = com_scriptographer_ai_Item_TYPE_TRACING;
+#endif
+	}
+	long attributes = 0;
+	sAIArt->GetArtUserAttr(art, 0xffffffff, &attributes);
+	jfloat bounds[4] = { 0, 0, 0, 0 };
+	if (getBounds) {
+		AIRealRect rt;
+		sAIArt->GetArtTransformBounds(art, NULL, kVisibleBounds | kNoStrokeBounds | kNoExtendedBounds | kExcludeGuideBounds, &rt);
+		gEngine->convertRectangle(kArtboardCoordinates, &rt, bounds);
+	}
+	jint index = (jint) (values.size() / SNAPSHOT_VALUES_PER_NODE);
+	values.push_back(parent);
+	values.push_back(type);
+	values.push_back(textType);
+	values.push_back((jint) art);
+	values.push_back((jint) attributes);
+	for (int i = 0; i < 4; i++) {
+		// Pass the floats as their bits, so all values fit into one array
+		jint bits;
+		memcpy(&bits, &bounds[i], sizeof(jint));
+		values.push_back(bits);
+	}
+	AIArtHandle child = NULL;
+	sAIArt->GetArtFirstChild(art, &child);
+	while (child != NULL) {
+		Document_snapshot(child, index, getBounds, values);
+		if (sAIArt->GetArtSibling(child, &child))
+			child = NULL;
+	}
+}
+
+/*
+ * int[] nativeGetSnapshot(int artHandle, boolean bounds)
+ */
+JNIEXPORT jintArray JNICALL Java_com_scriptographer_ai_Document_nativeGetSnapshot(
+		JNIEnv *env, jobject obj, jint artHandle, jboolean bounds) {
+	jintArray res = NULL;
+	try {
+		// Cause the doc switch if necessary
+		gEngine->getDocumentHandle(env, obj, true);
+		// Commit pending changes first, since they might influence the bounds
+		gEngine->commit(env);
+		std::vector<jint> values;
+		if (artHandle != 0) {
+			Document_snapshot((AIArtHandle) artHandle, -1, bounds, values);
+		} else {
+			ai::int32 count = 0;
+			sAILayer->CountLayers(&count);
+			for (ai::int32 i = 0; i < count; i++) {
+				AILayerHandle layer = NULL;
+				AIArtHandle art = NULL;
+				if (!sAILayer->GetNthLayer(i, &layer) && layer != NULL
+						&& !sAIArt->GetFirstArtOfLayer(layer, &art)
+						&& art != NULL)
+					Document_snapshot(art, -1, bounds, values);
+			}
+		}
+		res = env->NewIntArray(values.size());
+		if (values.size() > 0)
+			env->SetIntArrayRegion(res, 0, values.size(), &values[0]);
+	} EXCEPTION_CONVERT(env);
+	return res;
+}
+
 /*
  * com.scriptographer.ai.ItemList getMatchingItems(java.lang.Class typeClass,
  *		int whichAttrs, int attrs)
@@ -1071,9 +1156,9 @@ JNIEXPORT jint JNICALL Java_com_scriptographer_ai_Document_nativeGetStories(
 }
 
 /*
- * void reflowText()
+ * void nativeReflowText()
  */
-JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_reflowText(
+JNIEXPORT void JNICALL Java_com_scriptographer_ai_Document_nativeReflowText(
 		JNIEnv *env, jobject obj) {
 	try {
 		// Cause the doc switch if necessary
@@ -518,9 +518,9 @@ JNIEXPORT jbooleanArray JNICALL Java_com_scriptographer_ai_Item_nativeCheckItems
 }
 
 /*
- * com.scriptographer.ai.Item copyTo(com.scriptographer.ai.Document document)
+ * com.scriptographer.ai.Item nativeCopyTo(com.scriptographer.ai.Document document)
  */
-JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Item_copyTo__Lcom_scriptographer_ai_Document_2(JNIEnv *env, jobject obj, jobject document) {
+JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Item_nativeCopyTo__Lcom_scriptographer_ai_Document_2(JNIEnv *env, jobject obj, jobject document) {
 	try {
 		// dst: from insertion point
 		AIDocumentHandle docDst = gEngine->getDocumentHandle(env, document);
@@ -536,9 +536,9 @@ JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Item_copyTo__Lcom_scriptogr
 }
 
 /*
- * com.scriptographer.ai.Item copyTo(com.scriptographer.ai.Item item)
+ * com.scriptographer.ai.Item nativeCopyTo(com.scriptographer.ai.Item item)
  */
-JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Item_copyTo__Lcom_scriptographer_ai_Item_2(JNIEnv *env, jobject obj, jobject item) {
+JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Item_nativeCopyTo__Lcom_scriptographer_ai_Item_2(JNIEnv *env, jobject obj, jobject item) {
 	try {
 		// src & dst
 		AIDocumentHandle docDst;
@@ -642,56 +642,37 @@ JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Item_getLayer(JNIEnv *env,
 }
 
 /*
- * com.scriptographer.ai.Rectangle getBounds()
+ * com.scriptographer.ai.Rectangle nativeGetBounds(int type)
  */
-JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Item_getBounds(JNIEnv *env, jobject obj) {
+JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Item_nativeGetBounds(JNIEnv *env, jobject obj, jint type) {
 	try {
 		// TODO: Document activation needed?
 		AIArtHandle art = gEngine->getArtHandle(env, obj, true);
 		// Commit pending changes first, since they might influence the bounds
 		Item_commit(env, art);
+		long flags;
+		switch (type) {
+		case 1: // Stroke bounds
+			flags = kVisibleBounds | kExcludeGuideBounds;
+			break;
+		case 2: // Control bounds
+			// TODO: This does not seem to actually return control bounds!
+			flags = kControlBounds | kExcludeGuideBounds;
+			break;
+		default:
+			flags = kVisibleBounds | kNoStrokeBounds | kNoExtendedBounds | kExcludeGuideBounds;
+		}
 		AIRealRect rt;
-		sAIArt->GetArtTransformBounds(art, NULL, kVisibleBounds | kNoStrokeBounds | kNoExtendedBounds | kExcludeGuideBounds, &rt);
-		return gEngine->convertRectangle(env, kArtboardCoordinates, &rt);
-	} EXCEPTION_CONVERT(env);
-	return NULL;
-}
-
-/*
- * com.scriptographer.ai.Rectangle getStrokeBounds()
- */
-JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Item_getStrokeBounds(JNIEnv *env, jobject obj) {
-	try {
-		AIRealRect rt;
-		AIArtHandle art = gEngine->getArtHandle(env, obj, true);
-		// Commit pending changes first, since they might influence the bounds
-		Item_commit(env, art);
-		sAIArt->GetArtTransformBounds(art, NULL, kVisibleBounds | kExcludeGuideBounds, &rt);
-		return gEngine->convertRectangle(env, kArtboardCoordinates, &rt);
-	} EXCEPTION_CONVERT(env);
-	return NULL;
-}
-
-/*
- * com.scriptographer.ai.Rectangle getControlBounds()
- */
-JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Item_getControlBounds(JNIEnv *env, jobject obj) {
-	try {
-		AIRealRect rt;
-		AIArtHandle art = gEngine->getArtHandle(env, obj, true);
-		// Commit pending changes first, since they might influence the bounds
-		Item_commit(env, art);
-		// TODO: This does not seem to actually return control bounds!
-		sAIArt->GetArtTransformBounds(art, NULL, kControlBounds | kExcludeGuideBounds, &rt);
+		sAIArt->GetArtTransformBounds(art, NULL, flags, &rt);
 		return gEngine->convertRectangle(env, kArtboardCoordinates, &rt);
 	} EXCEPTION_CONVERT(env);
 	return NULL;
 }
 
 /*
- * com.scriptographer.ai.Point getPosition()
+ * com.scriptographer.ai.Point nativeGetPosition()
  */
-JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Item_getPosition(JNIEnv *env, jobject obj) {
+JNIEXPORT jobject JNICALL Java_com_scriptographer_ai_Item_nativeGetPosition(JNIEnv *env, jobject obj) {
 	try {
 		AIRealRect rt;
 		AIArtHandle art = gEngine->getArtHandle(env, obj, true);
@@ -809,9 +790,9 @@ JNIEXPORT void JNICALL Java_com_scriptographer_ai_Item_nativeSetBlendMode(JNIEnv
 }
 
 /*
- * float getOpacity()
+ * float nativeGetOpacity()
  */
-JNIEXPORT jfloat JNICALL Java_com_scriptographer_ai_Item_getOpacity(JNIEnv *env, jobject obj) {
+JNIEXPORT jfloat JNICALL Java_com_scriptographer_ai_Item_nativeGetOpacity(JNIEnv *env, jobject obj) {
 	try {
 		AIArtHandle art = gEngine->getArtHandle(env, obj);
 		return sAIBlendStyle->GetOpacity(art);
@@ -820,9 +801,9 @@ JNIEXPORT jfloat JNICALL Java_com_scriptographer_ai_Item_getOpacity(JNIEnv *env,
 }
 
 /*
- * void setOpacity(float opacity)
+ * void nativeSetOpacity(float opacity)
  */
-JNIEXPORT void JNICALL Java_com_scriptographer_ai_Item_setOpacity(JNIEnv *env, jobject obj, jfloat opacity) {
+JNIEXPORT void JNICALL Java_com_scriptographer_ai_Item_nativeSetOpacity(JNIEnv *env, jobject obj, jfloat opacity) {
 	try {
 		AIArtHandle art = gEngine->getArtHandle(env, obj, true);
 		sAIBlendStyle->SetOpacity(art, opacity);
@@ -893,9 +874,9 @@ JNIEXPORT void JNICALL Java_com_scriptographer_ai_Item_setAlphaIsShape(JNIEnv *e
 }
 
 /*
- * java.lang.String getName()
+ * java.lang.String nativeGetName()
  */
-JNIEXPORT jstring JNICALL Java_com_scriptographer_ai_Item_getName(JNIEnv *env, jobject obj) {
+JNIEXPORT jstring JNICALL Java_com_scriptographer_ai_Item_nativeGetName(JNIEnv *env, jobject obj) {
 	try {
 		AIArtHandle art = gEngine->getArtHandle(env, obj);
 		// Handle pseudo HANDLE_CURRENT_STYLE item which returns NULL, but
@@ -918,9 +899,9 @@ JNIEXPORT jstring JNICALL Java_com_scriptographer_ai_Item_getName(JNIEnv *env, j
 }
 
 /*
- * void setName(java.lang.String name)
+ * void nativeSetName(java.lang.String name)
  */
-JNIEXPORT void JNICALL Java_com_scriptographer_ai_Item_setName(JNIEnv *env, jobject obj, jstring name) {
+JNIEXPORT void JNICALL Java_com_scriptographer_ai_Item_nativeSetName(JNIEnv *env, jobject obj, jstring name) {
 	try {
 		// Intersting: setting name does not need document to be active
 		AIArtHandle art = gEngine->getArtHandle(env, obj);
@@ -936,9 +917,9 @@ JNIEXPORT void JNICALL Java_com_scriptographer_ai_Item_setName(JNIEnv *env, jobj
 }
 
 /*
- * boolean appendTop(com.scriptographer.ai.Item item)
+ * boolean nativeAppendTop(com.scriptographer.ai.Item item)
  */
-JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_appendTop(JNIEnv *env, jobject obj, jobject item) {
+JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_nativeAppendTop(JNIEnv *env, jobject obj, jobject item) {
 	try {
 		return Item_move(env, item, obj, kPlaceInsideOnTop);
 	} EXCEPTION_CONVERT(env);
@@ -946,9 +927,9 @@ JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_appendTop(JNIEnv *env
 }
 
 /*
- * boolean appendBottom(com.scriptographer.ai.Item item)
+ * boolean nativeAppendBottom(com.scriptographer.ai.Item item)
  */
-JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_appendBottom(JNIEnv *env, jobject obj, jobject item) {
+JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_nativeAppendBottom(JNIEnv *env, jobject obj, jobject item) {
 	try {
 		return Item_move(env, item, obj, kPlaceInsideOnBottom);
 	} EXCEPTION_CONVERT(env);
@@ -996,16 +977,16 @@ JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_isAncestor(JNIEnv *en
 }
 	
 /*
- * boolean moveAbove(com.scriptographer.ai.Item art)
+ * boolean nativeMoveAbove(com.scriptographer.ai.Item art)
  */
-JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_moveAbove(JNIEnv *env, jobject obj, jobject item) {
+JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_nativeMoveAbove(JNIEnv *env, jobject obj, jobject item) {
 	return Item_move(env, obj, item, kPlaceAbove);
 }
 
 /*
- * boolean moveBelow(com.scriptographer.ai.Item art)
+ * boolean nativeMoveBelow(com.scriptographer.ai.Item art)
  */
-JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_moveBelow(JNIEnv *env, jobject obj, jobject item) {
+JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_nativeMoveBelow(JNIEnv *env, jobject obj, jobject item) {
 	return Item_move(env, obj, item, kPlaceBelow);
 }
 
@@ -1383,9 +1364,9 @@ bool LiveEffect_removeIterator(JNIEnv *env, AIArtStyleHandle style, AIStyleParse
 }
 
 /*
- * boolean removeEffect(com.scriptographer.ai.LiveEffect effect, java.util.Map parameters)
+ * boolean nativeRemoveEffect(com.scriptographer.ai.LiveEffect effect, java.util.Map parameters)
  */
-JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_removeEffect(JNIEnv *env, jobject obj, jobject effect, jobject parameters) {
+JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_nativeRemoveEffect(JNIEnv *env, jobject obj, jobject effect, jobject parameters) {
 	try {
 		AIArtHandle art = gEngine->getArtHandle(env, obj, true);
 		LiveEffect_data effectData = {
@@ -1406,9 +1387,9 @@ bool LiveEffect_editIterator(JNIEnv *env, AIArtStyleHandle style, AIStyleParser
 }
 
 /*
- * boolean editEffect(com.scriptographer.ai.LiveEffect effect, java.util.Map parameters)
+ * boolean nativeEditEffect(com.scriptographer.ai.LiveEffect effect, java.util.Map parameters)
  */
-JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_editEffect(JNIEnv *env, jobject obj, jobject effect, jobject parameters) {
+JNIEXPORT jboolean JNICALL Java_com_scriptographer_ai_Item_nativeEditEffect(JNIEnv *env, jobject obj, jobject effect, jobject parameters) {
 	try {
 		AIArtHandle art = gEngine->getArtHandle(env, obj, true);
 		LiveEffect_data effectData = {
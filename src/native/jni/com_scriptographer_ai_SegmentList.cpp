@@ -68,6 +68,25 @@ JNIEXPORT void JNICALL Java_com_scriptographer_ai_SegmentList_nativeGet(JNIEnv *
 	} EXCEPTION_CONVERT(env);
 }
 
+/*
+ * void nativeGetBuffer(int handle, int index, int count, java.nio.ByteBuffer buffer)
+ */
+JNIEXPORT void JNICALL Java_com_scriptographer_ai_SegmentList_nativeGetBuffer(JNIEnv *env, jclass cls, jint handle, jint index, jint count, jobject buffer) {
+	try {
+		// The direct buffer uses the same layout as the float array in nativeGet,
+		// but can be written to without pinning or copying anything.
+		jfloat *data = (jfloat *) env->GetDirectBufferAddress(buffer);
+		jlong length = count * com_scriptographer_ai_SegmentList_VALUES_PER_SEGMENT;
+		if (data == NULL || env->GetDirectBufferCapacity(buffer) < length * (jlong) sizeof(jfloat))
+			throw new StringException("Invalid segment buffer");
+		// Clear the values first, so the 3 bytes after each corner flag are 0
+		memset(data, 0, length * sizeof(jfloat));
+		if (sAIPath->GetPathSegments((AIArtHandle) handle, index, count, (AIPathSegment *) data))
+			throw new StringException("Cannot get path segments");
+		gEngine->convertSegments(env, data, count, kArtboardCoordinates, true);
+	} EXCEPTION_CONVERT(env);
+}
+
 /*
  * void nativeSet(int handle, int docHandle, int index, float ptx, float pty, float inx, float iny, float outx, float outy, boolean corner)
  */
@@ -448,6 +448,7 @@ void ScriptographerEngine::initReflection(JNIEnv *env) {
 	mid_ScriptographerEngine_init = getStaticMethodID(env, cls_ScriptographerEngine, "init", "(Ljava/lang/String;)V");
 	mid_ScriptographerEngine_destroy = getStaticMethodID(env, cls_ScriptographerEngine, "destroy", "()V");
 	mid_ScriptographerEngine_reportError = getStaticMethodID(env, cls_ScriptographerEngine, "reportError", "(Ljava/lang/Throwable;)V");
+	mid_ScriptographerEngine_checkMainThread = getStaticMethodID(env, cls_ScriptographerEngine, "checkMainThread", "()V");
 	mid_ScriptographerEngine_onHandleEvent = getStaticMethodID(env, cls_ScriptographerEngine, "onHandleEvent", "(I)V");
 	mid_ScriptographerEngine_onHandleKeyEvent = getStaticMethodID(env, cls_ScriptographerEngine, "onHandleKeyEvent", "(IICI)Z");
 
@@ -1147,6 +1148,23 @@ void ScriptographerEngine::convertRectangle(JNIEnv *env,
 	EXCEPTION_CHECK(env);
 }
 
+void ScriptographerEngine::convertRectangle(CoordinateSystem system,
+		AIRealRect *rect, jfloat *res) {
+	// Same as the jobject version above, without creating the object
+	AIReal x = rect->left;
+	AIReal y = m_topDownCoordinates ? rect->top : rect->bottom;
+	if (system == kArtboardCoordinates) {
+		x -= m_artboardOrigin.h;
+		y -= m_artboardOrigin.v;
+	}
+	if (m_topDownCoordinates)
+		y = -y;
+	res[0] = (jfloat) x;
+	res[1] = (jfloat) y;
+	res[2] = (jfloat) (rect->right - rect->left);
+	res[3] = (jfloat) (rect->top - rect->bottom);
+}
+
 // com.scriptographer.ai.Size <-> AIRealPoint
 jobject ScriptographerEngine::convertSize(JNIEnv *env, float width,
 		float height, jobject res) {
@@ -1767,6 +1785,11 @@ int ScriptographerEngine::getAIObjectHandle(JNIEnv *env,
 	if (obj == NULL)
 		return NULL;
 	JNI_CHECK_ENV
+	// Wrappers may be reached from scripts on worker threads, e.g. through
+	// the scope of a background function. Illustrator may only be called
+	// from the main thread.
+	callStaticVoidMethod(env, cls_ScriptographerEngine,
+			mid_ScriptographerEngine_checkMainThread);
 	int handle = getIntField(env, obj, fid_ai_NativeObject_handle);
 	if (!handle)
 		throw new StringException("The %i is no longer valid. Use isValid()"
@@ -130,6 +130,7 @@ public:
 	jmethodID mid_ScriptographerEngine_init;
 	jmethodID mid_ScriptographerEngine_destroy;
 	jmethodID mid_ScriptographerEngine_reportError;
+	jmethodID mid_ScriptographerEngine_checkMainThread;
 	jmethodID mid_ScriptographerEngine_onHandleEvent;
 	jmethodID mid_ScriptographerEngine_onHandleKeyEvent;
 
@@ -462,6 +463,8 @@ public:
 		return convertRectangle(env, system, rect->left, rect->top, rect->right, rect->bottom, res);
 	}
 	void convertRectangle(JNIEnv *env, CoordinateSystem system, jobject rect, AIRealRect *res);	
+	// AIRealRect -> x, y, width, height, for bulk transfers
+	void convertRectangle(CoordinateSystem system, AIRealRect *rect, jfloat *res);
 
 	// com.scriptographer.ai.Size <-> AIRealPoint
 	jobject convertSize(JNIEnv *env, float width, float height, jobject res = NULL);